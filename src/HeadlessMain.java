@@ -0,0 +1,152 @@
+import game.Game;
+import game.PlayerInput;
+import game.RandomPlayerInput;
+import game.boids.FlockOptions;
+import game.random.GameRandom;
+import game.replay.ReplayPlayer;
+import game.render.FrameSnapshot;
+import game.render.SoftwareRenderer;
+import game.replay.ReplayRecorder;
+import game.vectors.Vector2;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Main class for running the game without a screen.
+ * The game is updated as fast as possible with seeded player inputs,
+ * then the speed of the simulation and the final state of the game are printed.
+ * Runs with the same seed always end in the same state.
+ * <p>
+ * Run with -Dflock.record=file to record the run, or -Dflock.replay=file to play back a recording instead.
+ * Run with -Dflock.capture=file.png to draw the final frame with the software renderer and save it.
+ * No windows are created, so this can run on servers.
+ * No images are loaded either, unless a frame is captured, which loads the player's sprite to draw it.
+ *
+ * @author tobymoszer
+ */
+public class HeadlessMain {
+  
+  private static final int SIZE_X = 1920;
+  private static final int SIZE_Y = 1080;
+  
+  /**
+   * The number of ticks to run when none is given
+   */
+  private static final long DEFAULT_TICKS = 100000;
+  
+  /**
+   * The number of ticks per second of game time
+   */
+  private static final int TICK_RATE = 120;
+  
+  /**
+   * Headless runnable method.
+   *
+   * @param args Command line args: the number of ticks to run, then the seed for the game and player inputs
+   * @throws IOException If the recording can't be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    
+    String replay = System.getProperty("flock.replay");
+    if (replay != null) {
+      ReplayPlayer player;
+      try (FileChannel channel = FileChannel.open(Paths.get(replay))) {
+        player = new ReplayPlayer(channel);
+      }
+      long start = System.nanoTime();
+      long ticks = player.play();
+      printResults(player.getGame(), ticks, (System.nanoTime() - start) / 1000000000.0);
+      capture(player.getGame());
+      return;
+    }
+    
+    long ticks = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_TICKS;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+    
+    Vector2 size = new Vector2(SIZE_X, SIZE_Y);
+    
+    //run with -Dflock.packed=true to store the flock in packed arrays, -Dflock.count for more than one flock,
+    //and any of the properties read by FlockOptions
+    GameRandom random = new GameRandom(seed);
+    Game game = new Game(
+        size,
+        Boolean.getBoolean("flock.packed"),
+        0,
+        Integer.getInteger("flock.count", 1),
+        random.nextLong(),
+        FlockOptions.fromSystemProperties()
+    );
+    PlayerInput input = new RandomPlayerInput(random.split(), size);
+    
+    String record = System.getProperty("flock.record");
+    ReplayRecorder recorder = null;
+    if (record != null) {
+      recorder = new ReplayRecorder(game, FileChannel.open(
+          Paths.get(record),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING
+      ));
+    }
+    
+    float tickTime = 1f / TICK_RATE;
+    long start = System.nanoTime();
+    for (long tick = 0; tick < ticks; tick++) {
+      input.apply(game, tick);
+      game.update(tickTime);
+    }
+    double seconds = (System.nanoTime() - start) / 1000000000.0;
+    
+    if (recorder != null) {
+      recorder.close();
+    }
+    printResults(game, ticks, seconds);
+    capture(game);
+  }
+  
+  /**
+   * Draw the current frame of the game offscreen and save it as a PNG, if -Dflock.capture is set.
+   *
+   * @param game The game to draw
+   * @throws IOException If the image can't be written
+   */
+  private static void capture(Game game) throws IOException {
+    String capture = System.getProperty("flock.capture");
+    if (capture == null) {
+      return;
+    }
+    FrameSnapshot frame = new FrameSnapshot();
+    game.writeFrame(frame);
+    Vector2 size = game.getSize();
+    SoftwareRenderer renderer = new SoftwareRenderer((int) size.x, (int) size.y);
+    renderer.render(frame, 1);
+    ImageIO.write(renderer.getImage(), "png", new File(capture));
+  }
+  
+  /**
+   * Print the speed of the simulation and the final state of the game.
+   *
+   * @param game The game that was run
+   * @param ticks The number of ticks that were run
+   * @param seconds The time it took to run the ticks in seconds
+   */
+  private static void printResults(Game game, long ticks, double seconds) {
+    Vector2 player = game.getPlayerPosition();
+    System.out.printf("ticks: %d in %.3fs (%.0f ticks/sec)%n", ticks, seconds, ticks / seconds);
+    System.out.printf("games over: %d%n", game.getGamesOver());
+    System.out.printf("flock size: %d%n", game.getFlockSize());
+    System.out.printf("player position: %.1f, %.1f%n", player.x, player.y);
+    System.out.printf(
+        "projectiles: %d player, %d flock%n",
+        game.getPlayerProjectileCount(),
+        game.getFlockProjectileCount()
+    );
+  }
+  
+}
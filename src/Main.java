@@ -1,8 +1,18 @@
 import game.Game;
+import game.GameLoop;
+import game.boids.FlockOptions;
+import game.render.FrameRenderer;
+import game.render.FrameSnapshot;
+import game.render.TripleBuffer;
+import game.replay.ReplayRecorder;
 import game.vectors.Vector2;
-import panel.MyPanel;
+import panel.GameCanvas;
 
 import javax.swing.JFrame;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Main class containing the main game loop.
@@ -14,14 +24,48 @@ public class Main {
   private static final int SIZE_X = 1920;
   private static final int SIZE_Y = 1080;
   
+  /**
+   * The maximum number of ticks run to catch up before rendering a frame
+   */
+  private static final int MAX_CATCH_UP_TICKS = 5;
+  
   /**
    * Main runnable method.
    *
    * @param args Command line args
+   * @throws IOException If the recording can't be written
    */
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
   
-    Game game = new Game(new Vector2(SIZE_X, SIZE_Y));
+    //run with -Dflock.packed=true to store the flock in packed arrays, -Dflock.count for more than one flock,
+    //-Dflock.seed to replay a seed, and any of the properties read by FlockOptions
+    Game game = new Game(
+        new Vector2(SIZE_X, SIZE_Y),
+        Boolean.getBoolean("flock.packed"),
+        0,
+        Integer.getInteger("flock.count", 1),
+        Long.getLong("flock.seed", System.nanoTime()),
+        FlockOptions.fromSystemProperties()
+    );
+    
+    //run with -Dflock.record=file to record the game, which is finished when the game is closed
+    String record = System.getProperty("flock.record");
+    if (record != null) {
+      ReplayRecorder recorder = new ReplayRecorder(game, FileChannel.open(
+          Paths.get(record),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING
+      ));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          recorder.close();
+        } catch (IOException e) {
+          System.err.println("Could not save recording");
+          e.printStackTrace();
+        }
+      }));
+    }
     
     //create frame
     JFrame frame = new JFrame("Flock Game");
@@ -29,26 +73,32 @@ public class Main {
     frame.setResizable(false);
     frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
   
-    //create panel
-    MyPanel panel = new MyPanel(game);
-    frame.add(panel);
-    frame.addKeyListener(panel);
-    frame.addMouseListener(panel);
+    //create canvas, which is rendered by its own thread instead of being repainted by Swing
+    TripleBuffer<FrameSnapshot> frames = new TripleBuffer<>(FrameSnapshot::new);
+    GameCanvas canvas = new GameCanvas(game, frames);
+    //run with -Dflock.software=true to draw frames without Java2D, and -Dflock.dirty=true to only repaint what changed
+    canvas.setSoftwareRendering(Boolean.getBoolean("flock.software"));
+    canvas.setDirtyRepaint(Boolean.getBoolean("flock.dirty"));
+    frame.setIgnoreRepaint(true);
+    frame.add(canvas);
+    canvas.addKeyListener(canvas);
+    canvas.addMouseListener(canvas);
     
-    panel.setVisible(true);
     frame.setVisible(true);
+    canvas.requestFocus();
     
-    frame.repaint();
-    panel.repaint();
+    //run with -Dflock.tickRate and -Dflock.frameRate to change how often it updates and renders
+    int tickRate = Integer.getInteger("flock.tickRate", 120);
+    int frameRate = Integer.getInteger("flock.frameRate", 60);
     
-    long time = System.currentTimeMillis();
+    //render thread, drawing the latest frame published by the game loop
+    Thread renderThread = new Thread(new FrameRenderer(canvas, frames, frameRate), "render");
+    renderThread.setDaemon(true);
+    renderThread.start();
     
-    //main game loop
-    while (true) {
-      float frameTime = (System.nanoTime() - time)/1000000000f;
-      time = System.nanoTime();
-      panel.update(frameTime);
-    }
+    //main game loop, publishing a frame after every tick so the renderer always has the latest one
+    GameLoop loop = new GameLoop(canvas, tickRate, tickRate, MAX_CATCH_UP_TICKS);
+    loop.run();
     
   }
   
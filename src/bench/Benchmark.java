@@ -0,0 +1,32 @@
+package bench;
+
+/**
+ * A piece of code to be timed by the BenchmarkRunner.
+ * Each benchmark is set up once for every combination of flock size and density,
+ * then run many times.
+ *
+ * @author tobymoszer
+ */
+public interface Benchmark {
+  
+  /**
+   * Get the name of the benchmark.
+   *
+   * @return The name of the benchmark
+   */
+  String getName();
+  
+  /**
+   * Set up the benchmark before it is run.
+   *
+   * @param flockSize The number of flock members
+   * @param density The number of flock members per million square pixels
+   */
+  void setup(int flockSize, double density);
+  
+  /**
+   * Run one operation of the benchmark.
+   */
+  void run();
+  
+}
@@ -0,0 +1,220 @@
+package bench;
+
+import game.vectors.Vector2;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs every benchmark for every combination of flock size and density,
+ * and prints the time and allocation of each operation.
+ * <p>
+ * The runner is configured with system properties:
+ * <ul>
+ *   <li>bench.sizes: comma separated flock sizes, default 80,1000,10000</li>
+ *   <li>bench.densities: comma separated flock members per million square pixels, default 100,400</li>
+ *   <li>bench.filter: only run benchmarks whose name contains this text</li>
+ *   <li>bench.warmup: milliseconds to run each benchmark before timing, default 1000</li>
+ *   <li>bench.time: milliseconds to time each benchmark, default 2000</li>
+ * </ul>
+ * Allocation is measured on the benchmark thread only,
+ * so work done on other threads, like the parallel flock forces, is not counted.
+ *
+ * @author tobymoszer
+ */
+public class BenchmarkRunner {
+  
+  /**
+   * Get the size of a square game that holds the given number of flock members at the given density.
+   *
+   * @param flockSize The number of flock members
+   * @param density The number of flock members per million square pixels
+   * @return The size of the game boundaries
+   */
+  static Vector2 getGameSize(int flockSize, double density) {
+    double side = Math.max(300, Math.sqrt(flockSize / density * 1000000));
+    return new Vector2(side, side);
+  }
+  
+  /**
+   * Benchmark runnable method.
+   *
+   * @param args Command line args
+   */
+  public static void main(String[] args) {
+    int[] sizes = parseInts(System.getProperty("bench.sizes", "80,1000,10000"));
+    double[] densities = parseDoubles(System.getProperty("bench.densities", "100,400"));
+    String filter = System.getProperty("bench.filter", "");
+    long warmup = Long.getLong("bench.warmup", 1000) * 1000000;
+    long time = Long.getLong("bench.time", 2000) * 1000000;
+    
+    List<Benchmark> benchmarks = new ArrayList<>();
+    benchmarks.add(new FlockUpdateBenchmark(FlockUpdateBenchmark.Mode.FLOCK));
+    benchmarks.add(new FlockUpdateBenchmark(FlockUpdateBenchmark.Mode.PACKED));
+    benchmarks.add(new FlockUpdateBenchmark(FlockUpdateBenchmark.Mode.LEVEL_OF_DETAIL));
+    benchmarks.add(new FlockUpdateBenchmark(FlockUpdateBenchmark.Mode.INCREMENTAL));
+    benchmarks.add(new FlockUpdateBenchmark(FlockUpdateBenchmark.Mode.NEAREST));
+    benchmarks.add(new PackedForceBenchmark());
+    benchmarks.add(new PackedForceBenchmark(true));
+    benchmarks.add(new ForceBenchmark(ForceBenchmark.Force.SEPARATION));
+    benchmarks.add(new ForceBenchmark(ForceBenchmark.Force.ALIGNMENT));
+    benchmarks.add(new ForceBenchmark(ForceBenchmark.Force.COHESION));
+    benchmarks.add(new GameUpdateBenchmark());
+    benchmarks.add(new GameUpdateBenchmark(16));
+    benchmarks.add(new VectorBenchmark(false));
+    benchmarks.add(new VectorBenchmark(true));
+    
+    System.out.printf(
+        "%-34s %8s %8s %14s %12s %14s %10s %8s%n",
+        "benchmark", "size", "density", "ns/op", "ops/s", "bytes/op", "MB/s", "gc"
+    );
+    for (Benchmark benchmark : benchmarks) {
+      if (!benchmark.getName().contains(filter)) {
+        continue;
+      }
+      for (int size : sizes) {
+        for (double density : densities) {
+          benchmark.setup(size, density);
+          measure(benchmark, warmup);
+          Result result = measure(benchmark, time);
+          System.out.printf(
+              "%-34s %8d %8.0f %14.1f %12.1f %14.1f %10.1f %8d%n",
+              benchmark.getName(),
+              size,
+              density,
+              result.getNanosPerOp(),
+              result.getOpsPerSecond(),
+              result.getBytesPerOp(),
+              result.getMegabytesPerSecond(),
+              result.gcCount
+          );
+        }
+      }
+    }
+  }
+  
+  /**
+   * Run a benchmark repeatedly for the given amount of time.
+   *
+   * @param benchmark The benchmark to run
+   * @param duration The amount of time to run for in nanoseconds
+   * @return The time, allocation, and garbage collections of all the runs
+   */
+  private static Result measure(Benchmark benchmark, long duration) {
+    Result result = new Result();
+    long gcCount = getGcCount();
+    long bytes = getAllocatedBytes();
+    long start = System.nanoTime();
+    long end = start + duration;
+    long now = start;
+    
+    //run in batches so the clock is not read after every operation
+    int batch = 1;
+    while (now < end) {
+      for (int i = 0; i < batch; i++) {
+        benchmark.run();
+      }
+      result.operations += batch;
+      now = System.nanoTime();
+      if (now - start < duration / 100) {
+        batch *= 2;
+      }
+    }
+    
+    result.nanos = now - start;
+    result.bytes = getAllocatedBytes() - bytes;
+    result.gcCount = getGcCount() - gcCount;
+    return result;
+  }
+  
+  /**
+   * Get the number of bytes allocated by the current thread.
+   *
+   * @return The number of bytes, or 0 if the JVM can't measure it
+   */
+  private static long getAllocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+  
+  /**
+   * Get the number of garbage collections since the JVM started.
+   *
+   * @return The number of garbage collections
+   */
+  private static long getGcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+  
+  /**
+   * Parse a comma separated list of integers.
+   *
+   * @param list The list to parse
+   * @return The integers in the list
+   */
+  private static int[] parseInts(String list) {
+    String[] parts = list.split(",");
+    int[] values = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      values[i] = Integer.parseInt(parts[i].trim());
+    }
+    return values;
+  }
+  
+  /**
+   * Parse a comma separated list of numbers.
+   *
+   * @param list The list to parse
+   * @return The numbers in the list
+   */
+  private static double[] parseDoubles(String list) {
+    String[] parts = list.split(",");
+    double[] values = new double[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      values[i] = Double.parseDouble(parts[i].trim());
+    }
+    return values;
+  }
+  
+  /**
+   * The measurements of a benchmark.
+   */
+  private static class Result {
+    
+    /**
+     * The number of operations run
+     */
+    private long operations;
+    
+    /**
+     * The total time, bytes allocated, and garbage collections of all the operations
+     */
+    private long nanos, bytes, gcCount;
+    
+    private double getNanosPerOp() {
+      return (double) nanos / operations;
+    }
+    
+    private double getOpsPerSecond() {
+      return operations / (nanos / 1000000000.0);
+    }
+    
+    private double getBytesPerOp() {
+      return (double) bytes / operations;
+    }
+    
+    private double getMegabytesPerSecond() {
+      return bytes / (nanos / 1000000000.0) / (1024 * 1024);
+    }
+  }
+  
+}
@@ -0,0 +1,135 @@
+package bench;
+
+import game.Player;
+import game.boids.Flock;
+import game.boids.FlockSimulation;
+import game.boids.PackedFlock;
+import game.random.GameRandom;
+import game.vectors.Vector2;
+
+/**
+ * Benchmark a single tick of a flock, including the forces, movement, and attacks of every member.
+ *
+ * @author tobymoszer
+ */
+public class FlockUpdateBenchmark implements Benchmark {
+  
+  /**
+   * The ways the flock can be run
+   */
+  public enum Mode {
+    
+    /**
+     * A flock of FlockMember objects with every option off
+     */
+    FLOCK("Flock.update"),
+    
+    /**
+     * A flock stored in packed arrays
+     */
+    PACKED("PackedFlock.update"),
+    
+    /**
+     * Members far from the player calculate approximate forces
+     */
+    LEVEL_OF_DETAIL("Flock.update.lod"),
+    
+    /**
+     * The grid only moves members that changed cells instead of being rebuilt
+     */
+    INCREMENTAL("Flock.update.incremental"),
+    
+    /**
+     * Each member calculates its forces from only its nearest neighbors
+     */
+    NEAREST("Flock.update.nearest" + NEAREST_NEIGHBORS);
+    
+    /**
+     * The name of the benchmark run in this mode
+     */
+    private final String name;
+    
+    /**
+     * Construct a new Mode.
+     *
+     * @param name The name of the benchmark run in this mode
+     */
+    Mode(String name) {
+      this.name = name;
+    }
+    
+  }
+  
+  /**
+   * The number of neighbors each member calculates its forces from in the NEAREST mode
+   */
+  private static final int NEAREST_NEIGHBORS = 7;
+  
+  /**
+   * The way the flock is run
+   */
+  private Mode mode;
+  
+  /**
+   * The flock being updated
+   */
+  private FlockSimulation flock;
+  
+  /**
+   * The amount of time for each update in seconds
+   */
+  private final float TICK_TIME = 1 / 120f;
+  
+  /**
+   * The number of ticks to run before timing, so the flock spreads out from where it started
+   */
+  private final int SETTLE_TICKS = 200;
+  
+  /**
+   * The distances from the player within which members calculate exact forces,
+   * and past which they only calculate approximate forces, when level of detail is on
+   */
+  private final double DETAIL_DISTANCE = 300, APPROXIMATE_DISTANCE = 500;
+  
+  /**
+   * Construct a new FlockUpdateBenchmark.
+   *
+   * @param mode The way the flock is run
+   */
+  public FlockUpdateBenchmark(Mode mode) {
+    this.mode = mode;
+  }
+  
+  @Override
+  public String getName() {
+    return mode.name;
+  }
+  
+  @Override
+  public void setup(int flockSize, double density) {
+    Vector2 gameSize = BenchmarkRunner.getGameSize(flockSize, density);
+    Vector2 center = gameSize.times(.5);
+    Player player = new Player();
+    NullListener listener = new NullListener();
+    if (mode == Mode.PACKED) {
+      flock = new PackedFlock(player, flockSize, gameSize, center, listener, listener, new GameRandom(flockSize));
+    } else {
+      Flock unpacked = new Flock(player, flockSize, gameSize, center, listener, listener, new GameRandom(flockSize));
+      if (mode == Mode.LEVEL_OF_DETAIL) {
+        unpacked.setLevelOfDetail(DETAIL_DISTANCE, APPROXIMATE_DISTANCE);
+      }
+      unpacked.setIncrementalGrid(mode == Mode.INCREMENTAL);
+      unpacked.setNearestNeighbors(mode == Mode.NEAREST ? NEAREST_NEIGHBORS : 0);
+      flock = unpacked;
+    }
+    for (int i = 0; i < SETTLE_TICKS; i++) {
+      flock.update(TICK_TIME);
+    }
+  }
+  
+  @Override
+  public void run() {
+    flock.update(TICK_TIME);
+  }
+  
+}
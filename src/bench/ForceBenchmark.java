@@ -0,0 +1,117 @@
+package bench;
+
+import game.boids.FlockMember;
+import game.boids.SpatialGrid;
+import game.random.GameRandom;
+import game.vectors.Vector2;
+
+import java.util.ArrayList;
+
+/**
+ * Benchmark one of the boids forces in isolation, calculated for every member of a flock.
+ * The members are spread evenly over the game, so the density controls how many neighbors each member has.
+ *
+ * @author tobymoszer
+ */
+public class ForceBenchmark implements Benchmark {
+  
+  /**
+   * The forces that can be benchmarked
+   */
+  public enum Force {
+    SEPARATION, ALIGNMENT, COHESION
+  }
+  
+  /**
+   * The force being calculated
+   */
+  private Force force;
+  
+  /**
+   * The flock members the force is calculated for
+   */
+  private ArrayList<FlockMember> members;
+  
+  /**
+   * The grid the neighbors of each member are found in
+   */
+  private SpatialGrid grid;
+  
+  /**
+   * The distances each force looks for neighbors within, matching Flock
+   */
+  private final float SEPARATION_DISTANCE = 50;
+  private final float ALIGNMENT_DISTANCE = 100;
+  private final float COHESION_DISTANCE = 150;
+  
+  /**
+   * The number of ticks to move the members before timing, so they have velocities to align to
+   */
+  private final int SETTLE_TICKS = 10;
+  
+  /**
+   * Construct a new ForceBenchmark.
+   *
+   * @param force The force to calculate
+   */
+  public ForceBenchmark(Force force) {
+    this.force = force;
+  }
+  
+  @Override
+  public String getName() {
+    switch (force) {
+      case SEPARATION:
+        return "FlockMember.calculateSeparation";
+      case ALIGNMENT:
+        return "FlockMember.calculateAlignment";
+      default:
+        return "FlockMember.calculateCohesion";
+    }
+  }
+  
+  @Override
+  public void setup(int flockSize, double density) {
+    Vector2 gameSize = BenchmarkRunner.getGameSize(flockSize, density);
+    GameRandom random = new GameRandom(flockSize);
+    members = new ArrayList<>();
+    for (int i = 0; i < flockSize; i++) {
+      Vector2 position = new Vector2(random.nextDouble() * gameSize.x, random.nextDouble() * gameSize.y);
+      members.add(new FlockMember(position, gameSize, true, random.split()));
+    }
+    grid = new SpatialGrid(gameSize, COHESION_DISTANCE);
+    
+    for (int tick = 0; tick < SETTLE_TICKS; tick++) {
+      grid.rebuild(members);
+      for (FlockMember member : members) {
+        member.calculateForces(grid, SEPARATION_DISTANCE, ALIGNMENT_DISTANCE, COHESION_DISTANCE);
+      }
+      for (FlockMember member : members) {
+        member.update(1 / 120f);
+      }
+    }
+    grid.rebuild(members);
+  }
+  
+  @Override
+  public void run() {
+    switch (force) {
+      case SEPARATION:
+        for (FlockMember member : members) {
+          member.calculateSeparation(grid, SEPARATION_DISTANCE);
+        }
+        break;
+      case ALIGNMENT:
+        for (FlockMember member : members) {
+          member.calculateAlignment(grid, ALIGNMENT_DISTANCE);
+        }
+        break;
+      case COHESION:
+        for (FlockMember member : members) {
+          member.calculateCohesion(grid, COHESION_DISTANCE);
+        }
+        break;
+    }
+  }
+  
+}
@@ -0,0 +1,86 @@
+package bench;
+
+import game.Game;
+import game.vectors.Vector2;
+
+/**
+ * Benchmark a full game tick in a scene full of projectiles.
+ * The player shoots in every direction each tick, so most of the time is spent on projectile collisions.
+ *
+ * @author tobymoszer
+ */
+public class GameUpdateBenchmark implements Benchmark {
+  
+  /**
+   * The game being updated
+   */
+  private Game game;
+  
+  /**
+   * The size of the game boundaries
+   */
+  private Vector2 gameSize;
+  
+  /**
+   * The number of ticks run so far, used to turn the aim of each shot
+   */
+  private int tick;
+  
+  /**
+   * The number of flocks the flock size is split between
+   */
+  private int flockCount;
+  
+  /**
+   * The amount of time for each update in seconds
+   */
+  private final float TICK_TIME = 1 / 120f;
+  
+  /**
+   * The number of projectiles the player shoots every tick
+   */
+  private final int SHOTS_PER_TICK = 8;
+  
+  /**
+   * Construct a new GameUpdateBenchmark with a single flock.
+   */
+  public GameUpdateBenchmark() {
+    this(1);
+  }
+  
+  /**
+   * Construct a new GameUpdateBenchmark.
+   *
+   * @param flockCount The number of flocks the flock size is split between
+   */
+  public GameUpdateBenchmark(int flockCount) {
+    this.flockCount = flockCount;
+  }
+  
+  @Override
+  public String getName() {
+    if (flockCount == 1) {
+      return "Game.update (projectiles)";
+    }
+    return "Game.update (projectiles, " + flockCount + " flocks)";
+  }
+  
+  @Override
+  public void setup(int flockSize, double density) {
+    gameSize = BenchmarkRunner.getGameSize(flockSize, density);
+    game = new Game(gameSize, false, Math.max(1, flockSize / flockCount), flockCount, flockSize);
+    tick = 0;
+  }
+  
+  @Override
+  public void run() {
+    Vector2 player = game.getPlayerPosition();
+    for (int i = 0; i < SHOTS_PER_TICK; i++) {
+      double angle = (tick + (double) i / SHOTS_PER_TICK) * 2 * Math.PI / 7;
+      game.playerShoot(player.x + Math.cos(angle), player.y + Math.sin(angle));
+    }
+    game.update(TICK_TIME);
+    tick++;
+  }
+  
+}
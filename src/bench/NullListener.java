@@ -0,0 +1,30 @@
+package bench;
+
+import game.GameListener;
+import game.ProjectileListener;
+import game.projectiles.Projectile;
+
+/**
+ * A listener that ignores all fired projectiles and game state changes,
+ * so a flock can be benchmarked without a game.
+ *
+ * @author tobymoszer
+ */
+class NullListener implements ProjectileListener, GameListener {
+  
+  @Override
+  public void addProjectile(Projectile projectile) {
+  
+  }
+  
+  @Override
+  public void addProjectile(double x, double y, double directionX, double directionY) {
+  
+  }
+  
+  @Override
+  public void isOver() {
+  
+  }
+  
+}
@@ -0,0 +1,83 @@
+package bench;
+
+import game.Player;
+import game.boids.PackedFlock;
+import game.random.GameRandom;
+import game.vectors.Vector2;
+
+/**
+ * Benchmark the force phase of a packed flock on its own, without moving the members,
+ * with the members either in the order they were created or sorted by position.
+ *
+ * @author tobymoszer
+ */
+public class PackedForceBenchmark implements Benchmark {
+  
+  /**
+   * If the members should be sorted by position before timing
+   */
+  private boolean sorted;
+  
+  /**
+   * The flock the forces are calculated for
+   */
+  private PackedFlock flock;
+  
+  /**
+   * The amount of time for each update in seconds
+   */
+  private final float TICK_TIME = 1 / 120f;
+  
+  /**
+   * The number of ticks to run before timing, so the flock spreads out from where it started
+   */
+  private final int SETTLE_TICKS = 200;
+  
+  /**
+   * Construct a new PackedForceBenchmark with the members in the order they were created.
+   */
+  public PackedForceBenchmark() {
+    this(false);
+  }
+  
+  /**
+   * Construct a new PackedForceBenchmark.
+   *
+   * @param sorted If the members should be sorted by position before timing
+   */
+  public PackedForceBenchmark(boolean sorted) {
+    this.sorted = sorted;
+  }
+  
+  @Override
+  public String getName() {
+    return sorted ? "PackedFlock.calculateForces.sorted" : "PackedFlock.calculateForces";
+  }
+  
+  @Override
+  public void setup(int flockSize, double density) {
+    Vector2 gameSize = BenchmarkRunner.getGameSize(flockSize, density);
+    NullListener listener = new NullListener();
+    flock = new PackedFlock(
+        new Player(),
+        flockSize,
+        gameSize,
+        gameSize.times(.5),
+        listener,
+        listener,
+        new GameRandom(flockSize)
+    );
+    for (int i = 0; i < SETTLE_TICKS; i++) {
+      flock.update(TICK_TIME);
+    }
+    if (sorted) {
+      flock.sortMembers();
+    }
+  }
+  
+  @Override
+  public void run() {
+    flock.calculateForces();
+  }
+  
+}
@@ -0,0 +1,99 @@
+package bench;
+
+import game.random.GameRandom;
+import game.vectors.Vector2;
+
+/**
+ * Benchmark the Vector2 operations used by the boids forces.
+ * The same math is done with the allocating operations or the in place operations,
+ * once for every flock member. The density has no effect on this benchmark.
+ *
+ * @author tobymoszer
+ */
+public class VectorBenchmark implements Benchmark {
+  
+  /**
+   * If the in place operations should be used instead of the allocating operations
+   */
+  private boolean inPlace;
+  
+  /**
+   * The positions and velocities the operations are done on
+   */
+  private Vector2[] positions, velocities;
+  
+  /**
+   * The vectors the in place operations store their results in
+   */
+  private Vector2 offset, total;
+  
+  /**
+   * The result of the last run, kept so the operations are not optimized away
+   */
+  private double result;
+  
+  /**
+   * Construct a new VectorBenchmark.
+   *
+   * @param inPlace If the in place operations should be used instead of the allocating operations
+   */
+  public VectorBenchmark(boolean inPlace) {
+    this.inPlace = inPlace;
+  }
+  
+  @Override
+  public String getName() {
+    return inPlace ? "Vector2 (in place)" : "Vector2 (allocating)";
+  }
+  
+  @Override
+  public void setup(int flockSize, double density) {
+    GameRandom random = new GameRandom(flockSize);
+    positions = new Vector2[flockSize];
+    velocities = new Vector2[flockSize];
+    for (int i = 0; i < flockSize; i++) {
+      positions[i] = new Vector2(random.nextDouble() * 1000, random.nextDouble() * 1000);
+      velocities[i] = new Vector2(random.nextDouble() - .5, random.nextDouble() - .5);
+    }
+    offset = new Vector2(0, 0);
+    total = new Vector2(0, 0);
+  }
+  
+  @Override
+  public void run() {
+    Vector2 center = positions[0];
+    if (inPlace) {
+      total.reset();
+      for (int i = 1; i < positions.length; i++) {
+        positions[i].minusInto(center, offset);
+        if (offset.lengthSqr() > 0) {
+          offset.normalize();
+        }
+        total.addScaled(offset, center.distanceSqTo(positions[i]));
+        total.addScaled(velocities[i], .5);
+      }
+    } else {
+      Vector2 sum = new Vector2(0, 0);
+      for (int i = 1; i < positions.length; i++) {
+        Vector2 direction = positions[i].minus(center);
+        if (direction.lengthSqr() > 0) {
+          direction = direction.normalized();
+        }
+        sum = sum.plus(direction.times(center.distanceSqTo(positions[i])));
+        sum = sum.plus(velocities[i].times(.5));
+      }
+      total = sum;
+    }
+    result += total.x + total.y;
+  }
+  
+  /**
+   * Get the result of all runs, so the operations are not optimized away.
+   *
+   * @return The sum of every run's result
+   */
+  public double getResult() {
+    return result;
+  }
+  
+}
@@ -0,0 +1,147 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A store of game entities owned by the game update.
+ * Spawns and despawns are queued and applied together at a defined point of the update.
+ *
+ * @param <T> The type of entity stored
+ * @author tobymoszer
+ */
+public class EntityStore<T> implements Iterable<T> {
+  
+  /**
+   * The entities currently in the store
+   */
+  private ArrayList<T> entities;
+  
+  /**
+   * The entities waiting to be spawned
+   */
+  private ArrayList<T> spawned;
+  
+  /**
+   * The entities waiting to be despawned
+   */
+  private Set<T> despawned;
+  
+  /**
+   * Called with every entity as it is despawned
+   */
+  private Consumer<T> despawnListener;
+  
+  /**
+   * Construct a new, empty EntityStore.
+   */
+  public EntityStore() {
+    this(null);
+  }
+  
+  /**
+   * Construct a new, empty EntityStore.
+   *
+   * @param despawnListener Called with every entity as it is despawned, or null
+   */
+  public EntityStore(Consumer<T> despawnListener) {
+    this.despawnListener = despawnListener;
+    entities = new ArrayList<>();
+    spawned = new ArrayList<>();
+    despawned = Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+  
+  /**
+   * Queue an entity to be spawned when changes are next applied.
+   *
+   * @param entity The entity to spawn
+   */
+  public void spawn(T entity) {
+    spawned.add(entity);
+  }
+  
+  /**
+   * Queue an entity to be despawned when changes are next applied.
+   *
+   * @param entity The entity to despawn
+   */
+  public void despawn(T entity) {
+    despawned.add(entity);
+  }
+  
+  /**
+   * Queue all entities, including ones waiting to be spawned, to be despawned when changes are next applied.
+   */
+  public void clear() {
+    despawned.addAll(entities);
+    despawned.addAll(spawned);
+  }
+  
+  /**
+   * Apply all queued spawns and despawns.
+   * Entities keep the order they were spawned in.
+   *
+   * @return If anything changed
+   */
+  public boolean applyChanges() {
+    if (spawned.isEmpty() && despawned.isEmpty()) {
+      return false;
+    }
+    
+    entities.addAll(spawned);
+    spawned.clear();
+    
+    if (!despawned.isEmpty()) {
+      int kept = 0;
+      for (int i = 0; i < entities.size(); i++) {
+        T entity = entities.get(i);
+        if (despawned.contains(entity)) {
+          if (despawnListener != null) {
+            despawnListener.accept(entity);
+          }
+        } else {
+          entities.set(kept++, entity);
+        }
+      }
+      for (int i = entities.size() - 1; i >= kept; i--) {
+        entities.remove(i);
+      }
+      despawned.clear();
+    }
+    return true;
+  }
+  
+  /**
+   * Get the entity at the given index.
+   *
+   * @param index The index of the entity
+   * @return The entity
+   */
+  public T get(int index) {
+    return entities.get(index);
+  }
+  
+  /**
+   * Get the number of entities, not including queued changes.
+   *
+   * @return The number of entities
+   */
+  public int size() {
+    return entities.size();
+  }
+  
+  /**
+   * Get an iterator over the entities, for use during the game update.
+   *
+   * @return An iterator over the entities
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return entities.iterator();
+  }
+  
+}
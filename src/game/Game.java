@@ -1,14 +1,22 @@
 package game;
 
-import game.boids.Flock;
+import game.boids.AttackType;
+import game.boids.FlockGroup;
+import game.boids.FlockOptions;
+import game.metrics.Counter;
+import game.metrics.Metrics;
+import game.metrics.Phase;
 import game.projectiles.Projectile;
+import game.projectiles.ProjectileManager;
+import game.projectiles.ProjectilePool;
+import game.random.GameRandom;
+import game.render.FrameSnapshot;
 import game.vectors.Vector2;
 
 import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Point;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The Game itself.
@@ -23,19 +31,29 @@ public class Game implements ProjectileListener, GameListener {
   private Player player;
   
   /**
-   * The flock in the game
+   * The flocks in the game
    */
-  private Flock flock;
+  private FlockGroup flocks;
   
   /**
    * All projectiles fired by the player
    */
-  private CopyOnWriteArrayList<Projectile> projectiles;
+  private ProjectileManager projectiles;
   
   /**
    * All projectiles fired by the flock
    */
-  private CopyOnWriteArrayList<Projectile> flockProjectiles;
+  private ProjectileManager flockProjectiles;
+  
+  /**
+   * The player projectiles that hit the flock during an update, reused every update
+   */
+  private ArrayList<Projectile> removeProjectiles;
+  
+  /**
+   * The direction the player aims when shooting, reused every shot
+   */
+  private Vector2 aim;
   
   /**
    * If the game is over
@@ -43,77 +61,247 @@ public class Game implements ProjectileListener, GameListener {
   private boolean gameOver;
   
   /**
-   * The size of the flock
+   * If the game should be reset at the start of the next update
+   */
+  private volatile boolean resetRequested;
+  
+  /**
+   * The number of games that have ended since the game was created
+   */
+  private int gamesOver;
+  
+  /**
+   * The seed the game's random numbers are generated from
+   */
+  private long seed;
+  
+  /**
+   * The size of the game boundaries
+   */
+  private Vector2 size;
+  
+  /**
+   * If the flock is stored in packed arrays instead of FlockMember objects
+   */
+  private boolean packedFlock;
+  
+  /**
+   * The number of members each flock starts with
+   */
+  private int flockSize;
+  
+  /**
+   * The number of flocks
+   */
+  private int flockCount;
+  
+  /**
+   * The optional ways the flocks are simulated
+   */
+  private FlockOptions flockOptions;
+  
+  /**
+   * The listener for the inputs given to the game, or null if the game is not being recorded
+   */
+  private InputListener inputListener;
+  
+  /**
+   * The size of each flock
    */
   private final int FLOCK_SIZE = 80;
   
+  /**
+   * The position the first flock starts around
+   */
+  private final Vector2 FLOCK_CENTER = new Vector2(500, 500);
+  
   /**
    * Construct a new game.
    *
    * @param size The size of the game boundaries. This is usually the size of the frame.
    */
   public Game(Vector2 size) {
+    this(size, false);
+  }
+  
+  /**
+   * Construct a new game.
+   *
+   * @param size The size of the game boundaries. This is usually the size of the frame.
+   * @param packedFlock If the flock should be stored in packed arrays instead of FlockMember objects
+   */
+  public Game(Vector2 size, boolean packedFlock) {
+    this(size, packedFlock, 0);
+  }
+  
+  /**
+   * Construct a new game.
+   *
+   * @param size The size of the game boundaries. This is usually the size of the frame.
+   * @param packedFlock If the flock should be stored in packed arrays instead of FlockMember objects
+   * @param flockSize The number of members in the flock, or 0 for the default size
+   */
+  public Game(Vector2 size, boolean packedFlock, int flockSize) {
+    this(size, packedFlock, flockSize, new GameRandom().nextLong());
+  }
+  
+  /**
+   * Construct a new game.
+   * Games with the same seed and the same player inputs always play out the same way.
+   *
+   * @param size The size of the game boundaries. This is usually the size of the frame.
+   * @param packedFlock If the flock should be stored in packed arrays instead of FlockMember objects
+   * @param flockSize The number of members in the flock, or 0 for the default size
+   * @param seed The seed to generate the game's random numbers from
+   */
+  public Game(Vector2 size, boolean packedFlock, int flockSize, long seed) {
+    this(size, packedFlock, flockSize, 1, seed);
+  }
+  
+  /**
+   * Construct a new game with any number of flocks, each with its own attack type behavior.
+   * Games with the same seed and the same player inputs always play out the same way.
+   *
+   * @param size The size of the game boundaries. This is usually the size of the frame.
+   * @param packedFlock If the flocks should be stored in packed arrays instead of FlockMember objects
+   * @param flockSize The number of members in each flock, or 0 for the default size
+   * @param flockCount The number of flocks, at least 1
+   * @param seed The seed to generate the game's random numbers from
+   */
+  public Game(Vector2 size, boolean packedFlock, int flockSize, int flockCount, long seed) {
+    this(size, packedFlock, flockSize, flockCount, seed, FlockOptions.DEFAULT);
+  }
+  
+  /**
+   * Construct a new game with any number of flocks, simulated with the given options.
+   * Games with the same seed, the same options, and the same player inputs always play out the same way.
+   *
+   * @param size The size of the game boundaries. This is usually the size of the frame.
+   * @param packedFlock If the flocks should be stored in packed arrays instead of FlockMember objects
+   * @param flockSize The number of members in each flock, or 0 for the default size
+   * @param flockCount The number of flocks, at least 1
+   * @param seed The seed to generate the game's random numbers from
+   * @param flockOptions The optional ways of simulating the flocks
+   */
+  public Game(Vector2 size, boolean packedFlock, int flockSize, int flockCount, long seed, FlockOptions flockOptions) {
+    this.seed = seed;
+    GameRandom random = new GameRandom(seed);
+    if (flockSize <= 0) {
+      flockSize = FLOCK_SIZE;
+    }
+    this.size = size;
+    this.packedFlock = packedFlock;
+    this.flockSize = flockSize;
+    this.flockCount = Math.max(1, flockCount);
+    this.flockOptions = flockOptions;
     player = new Player();
-    flock = new Flock(player, FLOCK_SIZE, size, this, this);
-    projectiles = new CopyOnWriteArrayList<>();
-    flockProjectiles = new CopyOnWriteArrayList<>();
+    ProjectilePool projectilePool = new ProjectilePool();
+    projectiles = new ProjectileManager(size, projectilePool);
+    flockProjectiles = new ProjectileManager(size, projectilePool);
+    flocks = new FlockGroup(
+        player,
+        this.flockCount,
+        flockSize,
+        size,
+        FLOCK_CENTER,
+        packedFlock,
+        flockOptions,
+        this,
+        this,
+        random
+    );
+    removeProjectiles = new ArrayList<>();
+    aim = new Vector2(0, 0);
     gameOver = false;
   }
   
   /**
-   * Update the player, flock, and all projectiles.
+   * Update the player, flocks, and all projectiles.
    * Check for all projectile collisions.
+   * Apply all spawned and despawned entities at once.
    * Check if the game state has changed.
    *
    * @param time The amount of time since the last update in seconds
    */
   public void update(float time) {
-    player.update(time);
-    flock.update(time);
-    
-    //check player projectiles
-    ArrayList<Projectile> removeProjectiles = new ArrayList<>();
+    long updateStart = Metrics.start();
+    long allocated = Metrics.getAllocatedBytes();
     
-    for (Projectile projectile : projectiles) {
-      projectile.update(time);
-      if (flock.checkProjectile(projectile)) {
-        removeProjectiles.add(projectile);
+    if (resetRequested) {
+      resetRequested = false;
+      if (inputListener != null) {
+        inputListener.reset();
       }
+      resetGame();
     }
     
+    player.update(time);
+    flocks.update(time);
+    
+    long start = Metrics.start();
+    projectiles.update(time);
+    flockProjectiles.update(time);
+    Metrics.record(Phase.PROJECTILE_UPDATE, start);
+    
+    //check player projectiles
+    start = Metrics.start();
+    flocks.checkProjectiles(projectiles, removeProjectiles);
+    
     //check flock projectiles
-    ArrayList<Projectile> removeFlockProjectiles = new ArrayList<>();
-  
     for (Projectile projectile : flockProjectiles) {
-      projectile.update(time);
-      if (player.checkProjectile(projectile)) {
-        removeFlockProjectiles.add(projectile);
+      if (!projectile.isRemoved() && player.checkProjectile(projectile)) {
+        flockProjectiles.remove(projectile);
         gameOver = true;
       }
     }
+    Metrics.record(Phase.COLLISION, start);
     
     //remove dead player projectiles
-    for (Projectile projectile : removeProjectiles) {
-      projectiles.remove(projectile);
+    start = Metrics.start();
+    if (!removeProjectiles.isEmpty()) {
+      projectiles.remove(removeProjectiles);
+      removeProjectiles.clear();
     }
     
-    //remove dead flock projectiles
-    for (Projectile projectile : removeFlockProjectiles) {
-      flockProjectiles.remove(projectile);
+    //apply all spawns and despawns from this update at once
+    applyChanges();
+    Metrics.record(Phase.REMOVAL, start);
+    
+    if (Metrics.ENABLED) {
+      Metrics.count(Counter.FLOCK_MEMBERS, flocks.getSize());
+      Metrics.count(Counter.PROJECTILES, projectiles.size() + flockProjectiles.size());
     }
     
-    //check if the game is won
-    if (flock.getSize() == 0) {
+    //check if the game is won, once every flock is gone
+    if (flocks.getSize() == 0) {
       gameOver = true;
     }
     
     //check if the game is over
     if (gameOver) {
-      reset();
-      gameOver = false;
+      gamesOver++;
+      resetGame();
+    }
+    
+    if (inputListener != null) {
+      inputListener.update(time);
+    }
+    
+    if (Metrics.ENABLED) {
+      Metrics.count(Counter.ALLOCATED_BYTES, Metrics.getAllocatedBytes() - allocated);
+      Metrics.record(Phase.GAME_UPDATE, updateStart);
     }
   }
   
+  /**
+   * Apply all queued spawns and despawns of flock members and projectiles.
+   */
+  private void applyChanges() {
+    flocks.applyChanges();
+    projectiles.applyChanges();
+    flockProjectiles.applyChanges();
+  }
+  
   /**
    * Set the direction that the player is traveling in.
    *
@@ -121,6 +309,9 @@ public class Game implements ProjectileListener, GameListener {
    */
   public void setPlayerDirection(Vector2 direction) {
     player.setPlayerDirection(direction);
+    if (inputListener != null) {
+      inputListener.setPlayerDirection(direction);
+    }
   }
   
   /**
@@ -129,43 +320,241 @@ public class Game implements ProjectileListener, GameListener {
    * @param point The point at which to aim the projectile at
    */
   public void playerShoot(Point point) {
-    projectiles.add(player.shoot(
-        new Vector2(
-        point.x - player.getPosition().x,
-        point.y - player.getPosition().y
-        ).normalized()
-    ));
+    playerShoot(point.x, point.y);
+  }
+  
+  /**
+   * Make the player shoot a projectile.
+   *
+   * @param x The x position to aim the projectile at
+   * @param y The y position to aim the projectile at
+   */
+  public void playerShoot(double x, double y) {
+    aim.set(x - player.getX(), y - player.getY()).normalize();
+    player.shoot(aim, projectiles);
+    if (inputListener != null) {
+      inputListener.playerShoot(x, y);
+    }
   }
   
   /**
-   * Reset the game, flock, player, and all projectiles.
+   * Set the listener for the inputs given to the game and the updates they are applied in.
+   *
+   * @param inputListener The input listener, or null to stop listening
+   */
+  public void setInputListener(InputListener inputListener) {
+    this.inputListener = inputListener;
+  }
+  
+  /**
+   * Write the state of the game to a buffer.
+   * This should only be called between updates.
+   *
+   * @param buffer The buffer to write to
+   */
+  public void writeState(ByteBuffer buffer) {
+    buffer.putInt(gamesOver);
+    player.writeState(buffer);
+    flocks.writeState(buffer);
+    projectiles.writeState(buffer);
+    flockProjectiles.writeState(buffer);
+  }
+  
+  /**
+   * Get the number of bytes {@link #writeState(ByteBuffer)} would write right now.
+   *
+   * @return The size of the state in bytes
+   */
+  public int getStateSize() {
+    return 4 + player.getStateSize() + flocks.getStateSize()
+        + projectiles.getStateSize() + flockProjectiles.getStateSize();
+  }
+  
+  /**
+   * Replace the state of the game with a state written by {@link #writeState(ByteBuffer)}.
+   * The game must have been constructed with the same size, flock storage, and flock count as the written game.
+   *
+   * @param buffer The buffer to read from
+   */
+  public void readState(ByteBuffer buffer) {
+    gamesOver = buffer.getInt();
+    player.readState(buffer);
+    flocks.readState(buffer);
+    projectiles.readState(buffer);
+    flockProjectiles.readState(buffer);
+    gameOver = false;
+    resetRequested = false;
+  }
+  
+  /**
+   * Get the size of the game boundaries.
+   *
+   * @return The size of the game boundaries
+   */
+  public Vector2 getSize() {
+    return size.copy();
+  }
+  
+  /**
+   * Check if the flock is stored in packed arrays instead of FlockMember objects.
+   *
+   * @return If the flock is packed
+   */
+  public boolean isPackedFlock() {
+    return packedFlock;
+  }
+  
+  /**
+   * Get the number of members each flock starts with.
+   *
+   * @return The initial size of each flock
+   */
+  public int getInitialFlockSize() {
+    return flockSize;
+  }
+  
+  /**
+   * Get the number of flocks.
+   *
+   * @return The number of flocks
+   */
+  public int getFlockCount() {
+    return flockCount;
+  }
+  
+  /**
+   * Get the optional ways the flocks are simulated.
+   *
+   * @return The flock options
+   */
+  public FlockOptions getFlockOptions() {
+    return flockOptions;
+  }
+  
+  /**
+   * Get the current attack type behavior of the first flock.
+   *
+   * @return The current attack type behavior
+   */
+  public AttackType getAttackType() {
+    return getAttackType(0);
+  }
+  
+  /**
+   * Get the current attack type behavior of one of the flocks.
+   *
+   * @param flock The index of the flock
+   * @return The current attack type behavior
+   */
+  public AttackType getAttackType(int flock) {
+    return flocks.getFlock(flock).getAttackType();
+  }
+  
+  /**
+   * Get the position of the player.
+   *
+   * @return The player's position
+   */
+  public Vector2 getPlayerPosition() {
+    return player.getPosition();
+  }
+  
+  /**
+   * Get the number of flock members remaining in every flock.
+   *
+   * @return The total size of the flocks
+   */
+  public int getFlockSize() {
+    return flocks.getSize();
+  }
+  
+  /**
+   * Get the number of projectiles fired by the player that are still in the game.
+   *
+   * @return The number of player projectiles
+   */
+  public int getPlayerProjectileCount() {
+    return projectiles.size();
+  }
+  
+  /**
+   * Get the number of projectiles fired by the flock that are still in the game.
+   *
+   * @return The number of flock projectiles
+   */
+  public int getFlockProjectileCount() {
+    return flockProjectiles.size();
+  }
+  
+  /**
+   * Get the seed the game's random numbers are generated from.
+   *
+   * @return The seed
+   */
+  public long getSeed() {
+    return seed;
+  }
+  
+  /**
+   * Get the number of games that have been won or lost since the game was created.
+   *
+   * @return The number of games that have ended
+   */
+  public int getGamesOver() {
+    return gamesOver;
+  }
+  
+  /**
+   * Reset the game, flocks, player, and all projectiles at the start of the next update.
+   * This can be called from any thread.
    */
   public void reset() {
-    flock.reset();
+    resetRequested = true;
+  }
+  
+  /**
+   * Reset the game, flocks, player, and all projectiles.
+   */
+  private void resetGame() {
+    flocks.reset();
     player.reset();
     projectiles.clear();
     flockProjectiles.clear();
+    applyChanges();
     gameOver = false;
   }
   
   /**
-   * Paint the game on the screen.
-   * This paints the flock, player, and all projectiles.
+   * Copy everything that is painted into a frame, to be drawn by the render thread.
+   * This must be called on the thread updating the game, between updates.
    *
-   * @param g The Graphics to paint to
+   * @param frame The frame to fill
    */
-  public void paint(Graphics g) {
-    flock.paint(g);
+  public void writeFrame(FrameSnapshot frame) {
+    long start = Metrics.start();
+    frame.clear(size);
+    flocks.writeFrame(frame);
     
+    frame.setProjectileColors(Color.WHITE, Color.ORANGE);
     for (Projectile projectile : projectiles) {
-      projectile.paint(g);
+      frame.addPlayerProjectile(
+          projectile.getPreviousX(),
+          projectile.getPreviousY(),
+          projectile.getX(),
+          projectile.getY()
+      );
     }
-    
     for (Projectile projectile : flockProjectiles) {
-      projectile.paint(g, Color.ORANGE);
+      frame.addFlockProjectile(
+          projectile.getPreviousX(),
+          projectile.getPreviousY(),
+          projectile.getX(),
+          projectile.getY()
+      );
     }
     
-    player.paint(g);
+    player.writeFrame(frame);
+    Metrics.record(Phase.FRAME_SNAPSHOT, start);
   }
   
   /**
@@ -175,7 +564,20 @@ public class Game implements ProjectileListener, GameListener {
    */
   @Override
   public void addProjectile(Projectile projectile) {
-    flockProjectiles.add(projectile);
+    flockProjectiles.addProjectile(projectile);
+  }
+  
+  /**
+   * Add a new flock projectile from the projectile pool.
+   *
+   * @param x The x position the projectile is fired from
+   * @param y The y position the projectile is fired from
+   * @param directionX The x direction for the projectile to travel in
+   * @param directionY The y direction for the projectile to travel in
+   */
+  @Override
+  public void addProjectile(double x, double y, double directionX, double directionY) {
+    flockProjectiles.addProjectile(x, y, directionX, directionY);
   }
   
   /**
@@ -1,14 +0,0 @@
-package game;
-
-import java.awt.Graphics;
-
-/**
- * Any Game element that can be drawn.
- *
- * @author tobymoszer
- */
-public interface GameDrawable {
-  
-  void paint(Graphics g);
-  
-}
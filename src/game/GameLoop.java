@@ -0,0 +1,104 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed timestep game loop.
+ * The game is updated in ticks of a fixed length, independent of how often frames are rendered.
+ * Each frame is told how far it is between the last tick and the next one,
+ * so positions can be interpolated between ticks.
+ *
+ * @author tobymoszer
+ */
+public class GameLoop implements Runnable {
+  
+  /**
+   * The listener that is updated every tick and rendered every frame
+   */
+  private LoopListener listener;
+  
+  /**
+   * The length of a tick in nanoseconds
+   */
+  private long tickLength;
+  
+  /**
+   * The minimum time between frames in nanoseconds
+   */
+  private long frameLength;
+  
+  /**
+   * The maximum number of ticks run to catch up before rendering a frame.
+   * Any time past this is dropped, so slow ticks can't keep falling further behind.
+   */
+  private int maxCatchUpTicks;
+  
+  /**
+   * If the loop should keep running
+   */
+  private volatile boolean running;
+  
+  /**
+   * Construct a new GameLoop.
+   *
+   * @param listener The listener that is updated every tick and rendered every frame
+   * @param tickRate The number of ticks per second
+   * @param frameRate The maximum number of frames per second
+   * @param maxCatchUpTicks The maximum number of ticks run to catch up before rendering a frame
+   */
+  public GameLoop(LoopListener listener, int tickRate, int frameRate, int maxCatchUpTicks) {
+    this.listener = listener;
+    this.tickLength = 1000000000L / tickRate;
+    this.frameLength = 1000000000L / frameRate;
+    this.maxCatchUpTicks = maxCatchUpTicks;
+  }
+  
+  /**
+   * Run the loop until it is stopped.
+   */
+  @Override
+  public void run() {
+    running = true;
+    float tickTime = tickLength / 1000000000f;
+    long accumulator = 0;
+    long previousTime = System.nanoTime();
+    long nextFrame = previousTime;
+    
+    while (running) {
+      long time = System.nanoTime();
+      accumulator += time - previousTime;
+      previousTime = time;
+      
+      //run every tick that has passed, up to the catch up limit
+      int ticks = 0;
+      while (accumulator >= tickLength && ticks < maxCatchUpTicks) {
+        listener.update(tickTime);
+        accumulator -= tickLength;
+        ticks++;
+      }
+      if (accumulator >= tickLength) {
+        accumulator %= tickLength;
+      }
+      
+      //render a frame interpolated between the last tick and the next one
+      if (time >= nextFrame) {
+        listener.render((float) accumulator / tickLength);
+        nextFrame = Math.max(nextFrame + frameLength, time);
+      }
+      
+      //wait for the next tick or frame, whichever comes first
+      long wait = Math.min(tickLength - accumulator, nextFrame - time) - (System.nanoTime() - time);
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+    }
+  }
+  
+  /**
+   * Stop the loop after the current tick or frame.
+   */
+  public void stop() {
+    running = false;
+  }
+  
+}
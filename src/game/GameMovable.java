@@ -1,11 +1,11 @@
 package game;
 
 /**
- * Any GameDrawable that can be moved.
+ * Any Game element that can be moved.
  *
  * @author tobymoszer
  */
-public interface GameMovable extends GameDrawable {
+public interface GameMovable {
   
   void update(float time);
   
@@ -0,0 +1,21 @@
+package game;
+
+import game.vectors.Vector2;
+
+/**
+ * An object that listens for the inputs given to the game and the updates they are applied in,
+ * so a game can be recorded.
+ *
+ * @author tobymoszer
+ */
+public interface InputListener {
+  
+  void setPlayerDirection(Vector2 direction);
+  
+  void playerShoot(double x, double y);
+  
+  void reset();
+  
+  void update(float time);
+  
+}
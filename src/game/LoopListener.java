@@ -0,0 +1,14 @@
+package game;
+
+/**
+ * An object that listens for the ticks and frames of a GameLoop.
+ *
+ * @author tobymoszer
+ */
+public interface LoopListener {
+  
+  void update(float time);
+  
+  void render(float alpha);
+  
+}
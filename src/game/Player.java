@@ -1,14 +1,15 @@
 package game;
 
 import game.projectiles.Projectile;
+import game.render.FrameSnapshot;
+import game.render.SpriteCache;
 import game.vectors.Vector2;
 
 import javax.imageio.ImageIO;
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.image.BufferedImage;
+import java.awt.Image;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * The Player in the Game.
@@ -22,6 +23,11 @@ public class Player implements GameMovable{
    */
   private Vector2 position;
   
+  /**
+   * The position of the player before the last update
+   */
+  private Vector2 previousPosition;
+  
   /**
    * The direction the player is facing
    */
@@ -38,25 +44,33 @@ public class Player implements GameMovable{
   public final int SIZE = 40;
   
   /**
-   * The color of the player when the sprite is not used
+   * The player sprite scaled to the player size, loaded the first time the player is written into a frame
    */
-  private Color color = Color.WHITE;
+  private Image image;
   
   /**
-   * The player sprite
+   * If loading the player sprite has already been attempted
    */
-  private BufferedImage image;
+  private boolean imageLoaded = false;
   
   /**
    * Constructs a new Player.
    */
   public Player() {
     position = new Vector2(800, 800);
+    previousPosition = position.copy();
     direction = new Vector2(0, 0);
+  }
   
-    //load the sprite image
+  /**
+   * Load the sprite image.
+   * This is only done once the player is written into a frame,
+   * so a game without a screen doesn't load it unless a frame of it is captured.
+   */
+  private void loadImage() {
+    imageLoaded = true;
     try {
-      image = ImageIO.read(new File("sprites/white_eye.png"));
+      image = SpriteCache.createScaled(ImageIO.read(new File("sprites/white_eye.png")), SIZE, SIZE);
     } catch (IOException e) {
       System.err.println("Could not load eye image");
       e.printStackTrace();
@@ -70,27 +84,28 @@ public class Player implements GameMovable{
    */
   @Override
   public void update(float time) {
-    position.add(direction.times(time).times(SPEED));
+    previousPosition.set(position);
+    position.addScaled(direction, time * SPEED);
   }
   
   /**
    * Set the direction that the player is traveling in.
+   * The direction is copied, so the given vector can be reused.
    *
    * @param direction The direction for the player to travel in
    */
   public void setPlayerDirection(Vector2 direction) {
-    this.direction = direction;
+    this.direction.set(direction);
   }
   
   /**
    * Fire a projectile from the player.
    *
    * @param aim The direction the projectile will be shot
-   * @return The shot projectile
+   * @param projectileListener The projectile listener to add the shot projectile to
    */
-  public Projectile shoot(Vector2 aim) {
-    Projectile projectile = new Projectile(position.copy(), aim);
-    return projectile;
+  public void shoot(Vector2 aim, ProjectileListener projectileListener) {
+    projectileListener.addProjectile(position.x, position.y, aim.x, aim.y);
   }
   
   /**
@@ -102,6 +117,24 @@ public class Player implements GameMovable{
     return position.copy();
   }
   
+  /**
+   * Get the x position of the player.
+   *
+   * @return The player's x position
+   */
+  public double getX() {
+    return position.x;
+  }
+  
+  /**
+   * Get the y position of the player.
+   *
+   * @return The player's y position
+   */
+  public double getY() {
+    return position.y;
+  }
+  
   /**
    * Check if the given projectile is intersecting the player.
    *
@@ -109,8 +142,39 @@ public class Player implements GameMovable{
    * @return If the projectile intersects the player
    */
   public boolean checkProjectile(Projectile projectile) {
-    return position.minus(projectile.getPosition()).length() <
-        SIZE + projectile.SIZE;
+    return position.distanceSqTo(projectile.getX(), projectile.getY()) <
+        (SIZE + Projectile.SIZE) * (SIZE + Projectile.SIZE);
+  }
+  
+  /**
+   * Write the state of the player to a buffer.
+   *
+   * @param buffer The buffer to write to
+   */
+  public void writeState(ByteBuffer buffer) {
+    position.write(buffer);
+    previousPosition.write(buffer);
+    direction.write(buffer);
+  }
+  
+  /**
+   * Get the number of bytes {@link #writeState(ByteBuffer)} writes.
+   *
+   * @return The size of the state in bytes
+   */
+  public int getStateSize() {
+    return 48;
+  }
+  
+  /**
+   * Read a state written by {@link #writeState(ByteBuffer)} from a buffer.
+   *
+   * @param buffer The buffer to read from
+   */
+  public void readState(ByteBuffer buffer) {
+    position.read(buffer);
+    previousPosition.read(buffer);
+    direction.read(buffer);
   }
   
   /**
@@ -120,19 +184,18 @@ public class Player implements GameMovable{
   public void reset() {
     position.x = 800;
     position.y = 800;
+    previousPosition.set(position);
   }
   
   /**
-   * Paint the player on the screen.
+   * Copy the player into a frame to be drawn by the render thread.
    *
-   * @param g The Graphics to paint to
+   * @param frame The frame being filled
    */
-  @Override
-  public void paint(Graphics g) {
-    g.setColor(color);
-    //g.fillOval((int) position.x, (int) position.y, SIZE, SIZE);
-    
-    g.drawImage(image, (int) position.x, (int) position.y, SIZE, SIZE, null);
-    
+  public void writeFrame(FrameSnapshot frame) {
+    if (!imageLoaded) {
+      loadImage();
+    }
+    frame.setPlayer(image, previousPosition.x, previousPosition.y, position.x, position.y);
   }
 }
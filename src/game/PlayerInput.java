@@ -0,0 +1,19 @@
+package game;
+
+/**
+ * A source of player inputs that can drive a game without a keyboard or mouse.
+ *
+ * @author tobymoszer
+ */
+public interface PlayerInput {
+  
+  /**
+   * Apply the player inputs for the given tick to the game.
+   * This is called before the game is updated for the tick.
+   *
+   * @param game The game to apply the inputs to
+   * @param tick The number of the tick, starting at 0
+   */
+  void apply(Game game, long tick);
+  
+}
@@ -11,4 +11,6 @@ public interface ProjectileListener {
   
   void addProjectile(Projectile projectile);
   
+  void addProjectile(double x, double y, double directionX, double directionY);
+  
 }
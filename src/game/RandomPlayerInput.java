@@ -0,0 +1,74 @@
+package game;
+
+import game.random.GameRandom;
+import game.vectors.Vector2;
+
+/**
+ * Player inputs chosen at random from a seed.
+ * The player changes direction every so often and shoots at random points in the game,
+ * so the same random number generator state always produces the same inputs.
+ *
+ * @author tobymoszer
+ */
+public class RandomPlayerInput implements PlayerInput {
+  
+  /**
+   * The random number generator the inputs are chosen from
+   */
+  private GameRandom random;
+  
+  /**
+   * The size of the game boundaries
+   */
+  private Vector2 gameSize;
+  
+  /**
+   * The direction the player is traveling in, reused every change of direction
+   */
+  private Vector2 direction;
+  
+  /**
+   * The number of ticks between changes of direction
+   */
+  private final int DIRECTION_TICKS = 60;
+  
+  /**
+   * The chance of shooting on any tick
+   */
+  private final float SHOOT_CHANCE = .05f;
+  
+  /**
+   * Construct a new RandomPlayerInput.
+   *
+   * @param random The random number generator to choose the inputs from
+   * @param gameSize The size of the game boundaries
+   */
+  public RandomPlayerInput(GameRandom random, Vector2 gameSize) {
+    this.random = random;
+    this.gameSize = gameSize;
+    direction = new Vector2(0, 0);
+  }
+  
+  /**
+   * Change the player's direction every few ticks, and randomly shoot.
+   *
+   * @param game The game to apply the inputs to
+   * @param tick The number of the tick, starting at 0
+   */
+  @Override
+  public void apply(Game game, long tick) {
+    if (tick % DIRECTION_TICKS == 0) {
+      //move in one of the eight directions, or stand still
+      direction.set(random.nextInt(3) - 1, random.nextInt(3) - 1);
+      if (direction.x != 0 && direction.y != 0) {
+        direction.normalize();
+      }
+      game.setPlayerDirection(direction);
+    }
+    
+    if (random.nextFloat() < SHOOT_CHANCE) {
+      game.playerShoot(random.nextDouble() * gameSize.x, random.nextDouble() * gameSize.y);
+    }
+  }
+  
+}
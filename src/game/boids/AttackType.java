@@ -0,0 +1,159 @@
+package game.boids;
+
+import game.Player;
+import game.random.GameRandom;
+
+import java.awt.Color;
+
+/**
+ * Attack type behavior enum.
+ *
+ * @author tobymoszer
+ */
+public enum AttackType {
+  
+  /**
+   * Default blue behavior.
+   * No forces due to the player.
+   */
+  DEFAULT {
+    @Override
+    void addForces(Iterable<FlockMember> members, Player player) {
+      //nothing added for default
+    }
+    
+    @Override
+    void addForces(PackedFlock flock, Player player) {
+      //nothing added for default
+    }
+    
+    @Override
+    float getProjectileChance() {
+      return 2;
+    }
+    
+    @Override
+    float getSpeed() {
+      return 170;
+    }
+    
+    @Override
+    Color getColor() {
+      return Color.BLUE;
+    }
+  },
+  
+  /**
+   * Swarm behavior.
+   * All members are attracted to the player, no projectiles can be fired.
+   */
+  SWARM {
+    @Override
+    void addForces(Iterable<FlockMember> members, Player player) {
+      for (FlockMember member : members) {
+        member.addForceToPlayer(player);
+      }
+    }
+    
+    @Override
+    void addForces(PackedFlock flock, Player player) {
+      flock.addForceToPlayer(player);
+    }
+    
+    @Override
+    float getProjectileChance() {
+      return 0;
+    }
+    
+    @Override
+    float getSpeed() {
+      return 250;
+    }
+    
+    @Override
+    Color getColor() {
+      return Color.RED;
+    }
+  },
+  
+  /**
+   * Avoid behavior.
+   * All members avoid the player within a certain range, increased number of projectiles.
+   */
+  AVOID {
+    @Override
+    void addForces(Iterable<FlockMember> members, Player player) {
+      for (FlockMember member : members) {
+        member.addForceAwayFromPlayer(player);
+      }
+    }
+    
+    @Override
+    void addForces(PackedFlock flock, Player player) {
+      flock.addForceAwayFromPlayer(player);
+    }
+    
+    @Override
+    float getProjectileChance() {
+      return 5;
+    }
+    
+    @Override
+    float getSpeed() {
+      return 170;
+    }
+    
+    @Override
+    Color getColor() {
+      return Color.YELLOW;
+    }
+  },
+  ;
+  
+  /**
+   * Add forces to the flock members based on the player.
+   *
+   * @param members All flock members
+   * @param player The player
+   */
+  abstract void addForces(Iterable<FlockMember> members, Player player);
+  
+  /**
+   * Add forces to the members of a packed flock based on the player.
+   *
+   * @param flock The packed flock
+   * @param player The player
+   */
+  abstract void addForces(PackedFlock flock, Player player);
+  
+  /**
+   * Get the chance for a projectile to be fired.
+   *
+   * @return The chance for a projectile to be fired
+   */
+  abstract float getProjectileChance();
+  
+  /**
+   * Get the speed of the flock members.
+   *
+   * @return The speed of the flock members
+   */
+  abstract float getSpeed();
+  
+  /**
+   * Get the color of the flock members.
+   *
+   * @return The color of the flock members
+   */
+  abstract Color getColor();
+  
+  /**
+   * Get a random attack type behavior.
+   *
+   * @param random The random number generator to choose with
+   * @return A random attack type behavior
+   */
+  static AttackType randomType(GameRandom random) {
+    return values()[random.nextInt(values().length)];
+  }
+}
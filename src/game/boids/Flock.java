@@ -1,28 +1,36 @@
 package game.boids;
 
+import game.EntityStore;
 import game.GameListener;
-import game.GameMovable;
 import game.Player;
 import game.ProjectileListener;
+import game.metrics.Counter;
+import game.metrics.Metrics;
+import game.metrics.Phase;
 import game.projectiles.Projectile;
+import game.random.GameRandom;
+import game.render.FrameSnapshot;
 import game.vectors.Vector2;
 
-import java.awt.Color;
-import java.awt.Graphics;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * An entire flock.
  *
  * @author tobymoszer
  */
-public class Flock implements GameMovable {
+public class Flock implements FlockSimulation {
   
   /**
    * All members of the flock
    */
-  private CopyOnWriteArrayList<FlockMember> members;
+  private EntityStore<FlockMember> members;
   
   /**
    * The AttackType behavior of the flock
@@ -59,6 +67,103 @@ public class Flock implements GameMovable {
    */
   private final float COHESION_DISTANCE = 150;
   
+  /**
+   * The grid used to find nearby flock members, with cells the size of the largest force distance
+   */
+  private SpatialGrid grid;
+  
+  /**
+   * If members have moved, been added, or been removed since the grid was last rebuilt
+   */
+  private boolean gridStale = true;
+  
+  /**
+   * If members have been added, removed, or replaced since the grid was last rebuilt,
+   * so an incremental grid has to be rebuilt instead of only moving the members that changed cells
+   */
+  private boolean membersChanged = true;
+  
+  /**
+   * The members that crossed into another grid cell during the last update, in the order they were updated
+   */
+  private ArrayList<FlockMember> cellMovers = new ArrayList<>();
+  
+  /**
+   * If the grid is shared with the other flocks in a FlockGroup, which rebuilds it and calculates the forces
+   */
+  private boolean sharedGrid = false;
+  
+  /**
+   * The index of the flock in its FlockGroup, or 0 if it isn't in a group
+   */
+  private int groupIndex = 0;
+  
+  /**
+   * The size of the largest flock member
+   */
+  private int memberSize = 0;
+  
+  /**
+   * The pool used to calculate forces in parallel
+   */
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+  
+  /**
+   * The number of members below which forces are calculated on the calling thread
+   */
+  private int parallelThreshold = 1000;
+  
+  /**
+   * The number of members each parallel task calculates forces for without splitting further
+   */
+  private final int PARALLEL_CHUNK_SIZE = 256;
+  
+  /**
+   * If members far from the player and projectiles calculate approximate forces from the grid's cell totals
+   */
+  private boolean levelOfDetail = false;
+  
+  /**
+   * The distance from the player or a projectile within which members calculate exact forces
+   */
+  private double detailDistance;
+  
+  /**
+   * The distance from the player and every projectile past which members only calculate approximate forces.
+   * Members between the two distances blend the exact and approximate forces.
+   */
+  private double approximateDistance;
+  
+  /**
+   * The positions members need detail around: the player, then the projectiles last checked against the flock
+   */
+  private double[] focusX = new double[1], focusY = new double[1];
+  
+  /**
+   * The number of positions members need detail around
+   */
+  private int focusCount = 1;
+  
+  /**
+   * If every member in each grid cell is far enough from every focus to only calculate approximate forces
+   */
+  private boolean[] approximateCells;
+  
+  /**
+   * The most neighbors each member calculates its forces from, or 0 to use every member within the force distances
+   */
+  private int nearestNeighbors = 0;
+  
+  /**
+   * The most members each member checks while searching for its nearest neighbors
+   */
+  private int maxCandidates;
+  
+  /**
+   * The number of members checked for each nearest neighbor when searching crowded cells
+   */
+  private final int CANDIDATES_PER_NEIGHBOR = 8;
+  
   /**
    * The player in the game
    */
@@ -79,6 +184,11 @@ public class Flock implements GameMovable {
    */
   private GameListener gameListener;
   
+  /**
+   * The random number generator for the flock, which each flock member is split from
+   */
+  private GameRandom random;
+  
   /**
    * Construct a new Flock.
    *
@@ -116,13 +226,38 @@ public class Flock implements GameMovable {
       ProjectileListener projectileListener,
       GameListener gameListener
   ) {
-    members = new CopyOnWriteArrayList<>();
+    this(player, size, gameSize, center, projectileListener, gameListener, new GameRandom());
+  }
+  
+  /**
+   * Construct a new Flock.
+   *
+   * @param player The player in the game
+   * @param size The initial size of the flock
+   * @param gameSize The size of the game boundaries
+   * @param center The position the flock starts around
+   * @param projectileListener The projectile listener that will listen for new projectiles to be fired
+   * @param gameListener The game listener that will listen for changes in game states
+   * @param random The random number generator for the flock, which should not be shared
+   */
+  public Flock(
+      Player player,
+      int size,
+      Vector2 gameSize,
+      Vector2 center,
+      ProjectileListener projectileListener,
+      GameListener gameListener,
+      GameRandom random
+  ) {
+    members = new EntityStore<>();
+    this.random = random;
     this.player = player;
     this.gameSize = gameSize;
     this.projectileListener = projectileListener;
     this.gameListener = gameListener;
     originalSize = size;
     origin = center;
+    grid = new SpatialGrid(gameSize, COHESION_DISTANCE);
     setupFlock(center, size);
   }
   
@@ -134,8 +269,14 @@ public class Flock implements GameMovable {
    */
   private void setupFlock(Vector2 center, int size) {
     for (int i = 0; i <size; i++) {
-      members.add(new FlockMember(center.copy(), gameSize, false));
+      FlockMember member = new FlockMember(center.copy(), gameSize, false, random.split());
+      member.setFlock(groupIndex);
+      memberSize = Math.max(memberSize, member.getSize());
+      members.spawn(member);
     }
+    members.applyChanges();
+    gridStale = true;
+    membersChanged = true;
     randomBehavior();
   }
   
@@ -143,39 +284,53 @@ public class Flock implements GameMovable {
    * Update the flock.
    * This also updates all flock members.
    * Update the attack type behavior if necessary.
+   * A flock sharing its grid has its forces calculated by its FlockGroup before it is updated.
    *
    * @param time The amount of time since the last update in seconds
    */
   @Override
   public void update(float time) {
     
-    calculateForces();
+    long start;
+    if (!sharedGrid) {
+      start = Metrics.start();
+      calculateForces();
+      Metrics.record(Phase.FLOCK_FORCES, start);
+    }
     
-    if (Math.random()/time < CHANGE_BEHAVIOR_CHANCE) {
+    if (random.nextDouble()/time < CHANGE_BEHAVIOR_CHANCE) {
       randomBehavior();
     }
   
-    if (Math.random()/time < attackType.getProjectileChance()) {
+    if (random.nextDouble()/time < attackType.getProjectileChance()) {
       fireProjectile();
     }
     
     //add force based on attack type
+    start = Metrics.start();
     attackType.addForces(members, player);
+    Metrics.record(Phase.FLOCK_ATTACK, start);
     
     //update all members
+    start = Metrics.start();
     for (FlockMember member : members) {
       member.update(time);
       if (member.hits(player)) {
         gameListener.isOver();
       }
+      if (member.hasChangedCell()) {
+        cellMovers.add(member);
+      }
     }
+    gridStale = true;
+    Metrics.record(Phase.FLOCK_INTEGRATE, start);
   }
   
   /**
    * Set the attack type behavior to a random attack type.
    */
   private void randomBehavior() {
-    attackType = AttackType.randomType();
+    attackType = AttackType.randomType(random);
     
     for (FlockMember member : members) {
       member.setSpeed(attackType.getSpeed());
@@ -186,35 +341,117 @@ public class Flock implements GameMovable {
    * Fire a projectile from a random flock member.
    */
   private void fireProjectile() {
-    Projectile projectile =
-        members.get((int)(Math.random() * members.size())).fireProjectile(player);
-    projectileListener.addProjectile(projectile);
+    if (members.size() == 0) {
+      return;
+    }
+    members.get(random.nextInt(members.size())).fireProjectile(player, projectileListener);
   }
   
   /**
    * Check if the given projectile intersects any flock members.
+   * Hit members are removed when changes are next applied.
    *
    * @param projectile The projectile to check against all flock members
    * @return If the given projectile intersects any flock member
    */
+  @Override
   public boolean checkProjectile(Projectile projectile) {
-    ArrayList<FlockMember> removeMembers = new ArrayList<>();
     boolean hit = false;
     
     for (FlockMember member : members) {
-      if (member.isHit(projectile)) {
-        removeMembers.add(member);
+      if (!member.isRemoved() && member.isHit(projectile)) {
+        member.remove();
+        members.despawn(member);
         hit = true;
       }
     }
     
-    for (FlockMember member : removeMembers) {
-      members.remove(member);
+    return hit;
+  }
+  
+  /**
+   * Check all the given projectiles against the flock members.
+   * Each projectile is only checked against the members in the grid cells it overlaps.
+   * Projectiles already removed this tick, for being too old or out of bounds, are skipped.
+   * Hit members are removed together when changes are next applied.
+   *
+   * @param projectiles The projectiles to check against the flock members
+   * @param hits The collection to add the projectiles that hit a flock member to
+   * @return If any projectile intersects a flock member
+   */
+  @Override
+  public boolean checkProjectiles(Iterable<Projectile> projectiles, Collection<Projectile> hits) {
+    updateGrid();
+    boolean hit = false;
+    int checks = 0;
+    
+    clearFocus();
+    for (Projectile projectile : projectiles) {
+      if (projectile.isRemoved()) {
+        continue;
+      }
+      addFocus(projectile.getX(), projectile.getY());
+      
+      double radius = memberSize + Projectile.SIZE;
+      int firstColumn = grid.getColumn(projectile.getX() - radius);
+      int lastColumn = Math.min(
+          grid.getColumn(projectile.getX() + radius),
+          firstColumn + grid.getColumns() - 1
+      );
+      int firstRow = grid.getRow(projectile.getY() - radius);
+      int lastRow = Math.min(
+          grid.getRow(projectile.getY() + radius),
+          firstRow + grid.getRows() - 1
+      );
+      
+      boolean projectileHit = false;
+      for (int row = firstRow; row <= lastRow; row++) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+          int cell = grid.getCell(column, row);
+          checks += grid.getCellEnd(cell) - grid.getCellStart(cell);
+          for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++) {
+            FlockMember member = grid.getMember(i);
+            if (grid.getFlock(i) == groupIndex && !member.isRemoved() && member.isHit(projectile)) {
+              member.remove();
+              members.despawn(member);
+              projectileHit = true;
+            }
+          }
+        }
+      }
+      
+      if (projectileHit) {
+        hits.add(projectile);
+        hit = true;
+      }
     }
     
+    Metrics.count(Counter.COLLISION_CHECKS, checks);
     return hit;
   }
   
+  /**
+   * Apply all queued member changes at once.
+   */
+  @Override
+  public void applyChanges() {
+    applyMemberChanges();
+  }
+  
+  /**
+   * Apply all queued member changes at once.
+   *
+   * @return If any members were added or removed
+   */
+  boolean applyMemberChanges() {
+    if (members.applyChanges()) {
+      gridStale = true;
+      membersChanged = true;
+      return true;
+    }
+    return false;
+  }
+  
   /**
    * Reset the flock and all it's members.
    */
@@ -226,184 +463,446 @@ public class Flock implements GameMovable {
   
   /**
    * Calculate the main three boids forces.
+   * The grid is rebuilt first so each member only checks the members in its surrounding cells,
+   * and all three forces are calculated in the same pass over those members.
+   * Large flocks are split into chunks calculated in parallel.
+   * Each member only reads the positions and velocities copied into the grid and only writes its own forces,
+   * so the result is the same as calculating them in order.
    */
   private void calculateForces() {
-    calculateSeparation();
-    calculateAlignment();
-    calculateCohesion();
+    updateGrid();
+    if (levelOfDetail) {
+      updateApproximateCells();
+    }
+    if (grid.getMemberCount() < parallelThreshold) {
+      calculateForces(0, grid.getMemberCount());
+    } else {
+      pool.invoke(new ForceTask(0, grid.getMemberCount()));
+    }
   }
   
   /**
-   * Calculate the separation force on all flock members.
+   * Rebuild the grid if members have changed since it was last rebuilt.
+   * The grid built for projectile checks after an update is reused by the next force calculation.
    */
-  private void calculateSeparation() {
-    for (FlockMember member : members) {
-      member.calculateSeparation(members, SEPARATION_DISTANCE);
+  private void updateGrid() {
+    if (gridStale && !sharedGrid) {
+      if (grid.isTracking() && !membersChanged) {
+        for (int i = 0; i < cellMovers.size(); i++) {
+          grid.move(cellMovers.get(i));
+        }
+        grid.refresh();
+      } else {
+        grid.rebuild(members);
+      }
+      cellMovers.clear();
+      gridStale = false;
+      membersChanged = false;
     }
   }
   
   /**
-   * Calculate the alignment force on all flock members.
+   * Calculate the main three boids forces for a range of members in the grid.
+   *
+   * @param start The index of the first member in the grid
+   * @param end The index after the last member in the grid
    */
-  private void calculateAlignment() {
-    for (FlockMember member : members) {
-      member.calculateAlignment(members, ALIGNMENT_DISTANCE);
+  private void calculateForces(int start, int end) {
+    for (int i = start; i < end; i++) {
+      calculateForces(i);
     }
   }
   
   /**
-   * Calculate the cohesion force on all flock members.
+   * Calculate the main three boids forces for one member in the grid,
+   * which must be a member of this flock.
+   *
+   * @param index The index of the member in the grid
    */
-  private void calculateCohesion() {
-    for (FlockMember member : members) {
-      member.calculateCohesion(members, COHESION_DISTANCE);
+  void calculateForces(int index) {
+    double detail = levelOfDetail ? getDetail(grid.getX(index), grid.getY(index)) : 1;
+    if (nearestNeighbors > 0) {
+      FlockMember member = grid.getMember(index);
+      if (detail > 0) {
+        member.calculateNearestForces(
+            grid,
+            index,
+            nearestNeighbors,
+            maxCandidates,
+            SEPARATION_DISTANCE,
+            ALIGNMENT_DISTANCE,
+            COHESION_DISTANCE
+        );
+      }
+      if (detail < 1) {
+        member.blendApproximateForces(grid, SEPARATION_DISTANCE, ALIGNMENT_DISTANCE, COHESION_DISTANCE, detail);
+      }
+    } else if (detail == 1) {
+      grid.getMember(index).calculateForces(
+          grid,
+          SEPARATION_DISTANCE,
+          ALIGNMENT_DISTANCE,
+          COHESION_DISTANCE
+      );
+    } else {
+      grid.getMember(index).calculateApproximateForces(
+          grid,
+          SEPARATION_DISTANCE,
+          ALIGNMENT_DISTANCE,
+          COHESION_DISTANCE,
+          detail
+      );
     }
   }
   
   /**
-   * Get the current number of flock members.
-   * @return The current number of flock members
+   * Get ready to calculate forces from a grid rebuilt by the FlockGroup sharing it.
    */
-  public int getSize() {
-    return members.size();
+  void prepareForces() {
+    if (levelOfDetail) {
+      updateApproximateCells();
+    }
   }
   
   /**
-   * Paint the flock on the screen.
+   * Share a grid with the other flocks in a FlockGroup.
+   * The group rebuilds the grid, calculates the forces, and checks projectiles from then on.
    *
-   * @param g The Graphics to paint to
+   * @param grid The grid shared by every flock in the group
+   * @param groupIndex The index of the flock in the group
    */
-  public void paint(Graphics g) {
+  void shareGrid(SpatialGrid grid, int groupIndex) {
+    this.grid = grid;
+    this.groupIndex = groupIndex;
+    sharedGrid = true;
     for (FlockMember member : members) {
-      g.setColor(attackType.getColor());
-      member.paint(g);
+      member.setFlock(groupIndex);
     }
   }
   
   /**
-   * Attack type behavior enum.
+   * Get the grid used to find nearby flock members.
+   *
+   * @return The grid
    */
-  private enum AttackType {
-    
-    /**
-     * Default blue behavior.
-     * No forces due to the player.
-     */
-    DEFAULT {
-      @Override
-      void addForces(CopyOnWriteArrayList<FlockMember> members, Player player) {
-        //nothing added for default
-      }
+  SpatialGrid getGrid() {
+    return grid;
+  }
   
-      @Override
-      float getProjectileChance() {
-        return 2;
-      }
+  /**
+   * Get the members that crossed into another grid cell during the last update, in the order they were updated.
+   * A FlockGroup sharing the grid moves them and clears the list when it updates the grid.
+   *
+   * @return The members that changed cells
+   */
+  List<FlockMember> getCellMovers() {
+    return cellMovers;
+  }
   
-      @Override
-      float getSpeed() {
-        return 170;
-      }
+  /**
+   * Check if members far from the player and projectiles calculate approximate forces.
+   *
+   * @return If level of detail is on
+   */
+  boolean isLevelOfDetail() {
+    return levelOfDetail;
+  }
   
-      @Override
-      Color getColor() {
-        return Color.BLUE;
-      }
-    },
-    
-    /**
-     * Swarm behavior.
-     * All members are attracted to the player, no projectiles can be fired.
-     */
-    SWARM {
-      @Override
-      void addForces(CopyOnWriteArrayList<FlockMember> members, Player player) {
-        for (FlockMember member : members) {
-          member.addForceToPlayer(player);
-        }
-      }
+  /**
+   * Get all members of the flock.
+   *
+   * @return The members of the flock
+   */
+  Iterable<FlockMember> getMembers() {
+    return members;
+  }
   
-      @Override
-      float getProjectileChance() {
-        return 0;
-      }
+  /**
+   * Get the size of the largest flock member.
+   *
+   * @return The size of the largest member
+   */
+  int getMemberSize() {
+    return memberSize;
+  }
   
-      @Override
-      float getSpeed() {
-        return 250;
-      }
+  /**
+   * Remove a member that was hit, when changes are next applied.
+   *
+   * @param member The member to remove
+   */
+  void remove(FlockMember member) {
+    member.remove();
+    members.despawn(member);
+  }
   
-      @Override
-      Color getColor() {
-        return Color.RED;
-      }
-    },
+  /**
+   * Forget the projectiles members needed detail around, keeping only the player.
+   */
+  void clearFocus() {
+    focusCount = 1;
+  }
+  
+  /**
+   * Add a position members need detail around, if level of detail is on.
+   *
+   * @param x The x position
+   * @param y The y position
+   */
+  void addFocus(double x, double y) {
+    if (!levelOfDetail) {
+      return;
+    }
+    if (focusCount == focusX.length) {
+      focusX = Arrays.copyOf(focusX, focusCount * 2);
+      focusY = Arrays.copyOf(focusY, focusCount * 2);
+    }
+    focusX[focusCount] = x;
+    focusY[focusCount] = y;
+    focusCount++;
+  }
+  
+  /**
+   * Find the grid cells that are entirely past the approximate distance from every focus,
+   * so their members skip measuring the distance to each focus.
+   * The player is always the first focus.
+   */
+  private void updateApproximateCells() {
+    focusX[0] = player.getX();
+    focusY[0] = player.getY();
     
-    /**
-     * Avoid behavior.
-     * All members avoid the player within a certain range, increased number of projectiles.
-     */
-    AVOID {
-      @Override
-      void addForces(CopyOnWriteArrayList<FlockMember> members, Player player) {
-        for (FlockMember member : members) {
-          member.addForceAwayFromPlayer(player);
+    if (approximateCells == null || approximateCells.length != grid.getCellCount()) {
+      approximateCells = new boolean[grid.getCellCount()];
+    }
+    double approximateDistanceSqr = approximateDistance * approximateDistance;
+    for (int cell = 0; cell < grid.getCellCount(); cell++) {
+      approximateCells[cell] = true;
+      for (int i = 0; i < focusCount; i++) {
+        double dx = Math.max(0, Math.abs(grid.wrapX(focusX[i] - grid.getCellCenterX(cell))) - grid.getCellWidth() / 2);
+        double dy = Math.max(0, Math.abs(grid.wrapY(focusY[i] - grid.getCellCenterY(cell))) - grid.getCellHeight() / 2);
+        if (dx*dx + dy*dy < approximateDistanceSqr) {
+          approximateCells[cell] = false;
+          break;
         }
       }
+    }
+  }
   
-      @Override
-      float getProjectileChance() {
-        return 5;
-      }
+  /**
+   * Get how much detail a member at the given position needs, from the distance to the closest focus.
+   * The detail eases in and out between the detail and approximate distances,
+   * so members don't suddenly change how they move.
+   *
+   * @param x The x position of the member
+   * @param y The y position of the member
+   * @return How much of the exact forces to use, from 0 for only the approximation to 1 for only the exact forces
+   */
+  private double getDetail(double x, double y) {
+    if (approximateCells[grid.getCell(x, y)]) {
+      return 0;
+    }
+    
+    double closestSqr = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < focusCount; i++) {
+      double dx = grid.wrapX(focusX[i] - x);
+      double dy = grid.wrapY(focusY[i] - y);
+      closestSqr = Math.min(closestSqr, dx*dx + dy*dy);
+    }
+    
+    double closest = Math.sqrt(closestSqr);
+    if (closest <= detailDistance) {
+      return 1;
+    }
+    if (closest >= approximateDistance) {
+      return 0;
+    }
+    double t = (approximateDistance - closest) / (approximateDistance - detailDistance);
+    return t * t * (3 - 2 * t);
+  }
   
-      @Override
-      float getSpeed() {
-        return 170;
-      }
+  /**
+   * Turn on level of detail, so members far from the player and projectiles calculate approximate forces.
+   * Approximate forces treat each surrounding grid cell as a single member, so they cost the same in any crowd.
+   *
+   * @param detailDistance The distance from the player or a projectile within which members calculate exact forces
+   * @param approximateDistance The distance past which members only calculate approximate forces
+   */
+  public void setLevelOfDetail(double detailDistance, double approximateDistance) {
+    levelOfDetail = true;
+    this.detailDistance = detailDistance;
+    this.approximateDistance = Math.max(approximateDistance, detailDistance);
+  }
+  
+  /**
+   * Turn off level of detail, so every member calculates exact forces.
+   */
+  public void disableLevelOfDetail() {
+    levelOfDetail = false;
+  }
+  
+  /**
+   * Calculate each member's forces from only its nearest neighbors, instead of every member within the force distances.
+   * This caps the work for each member when the whole flock crowds together, like when it swarms the player.
+   * Crowded cells are only sampled, so the neighbors found there are close but not always the very nearest.
+   *
+   * @param neighbors The most neighbors each member calculates its forces from, or 0 to use every nearby member
+   */
+  public void setNearestNeighbors(int neighbors) {
+    nearestNeighbors = Math.max(0, neighbors);
+    maxCandidates = nearestNeighbors * CANDIDATES_PER_NEIGHBOR;
+  }
+  
+  /**
+   * Set if the grid keeps members in the buckets of their cells between ticks,
+   * so only the members that crossed into another cell are moved instead of rebuilding the whole grid.
+   * Forces add up in a different order, so games set it through FlockOptions, which recordings and snapshots save.
+   *
+   * @param incremental If the grid should be kept incrementally
+   */
+  public void setIncrementalGrid(boolean incremental) {
+    grid.setIncremental(incremental);
+    gridStale = true;
+  }
+  
+  /**
+   * Set the number of members below which forces are calculated on the calling thread.
+   *
+   * @param parallelThreshold The number of members, or Integer.MAX_VALUE to never calculate in parallel
+   */
+  public void setParallelThreshold(int parallelThreshold) {
+    this.parallelThreshold = parallelThreshold;
+  }
+  
+  /**
+   * Set the pool used to calculate forces in parallel.
+   *
+   * @param pool The pool to calculate forces in
+   */
+  public void setForkJoinPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+  
+  /**
+   * Get the current number of flock members.
+   * @return The current number of flock members
+   */
+  @Override
+  public int getSize() {
+    return members.size();
+  }
+  
+  /**
+   * Get the current attack type behavior.
+   *
+   * @return The current attack type behavior
+   */
+  @Override
+  public AttackType getAttackType() {
+    return attackType;
+  }
+  
+  /**
+   * Write the state of the flock and all it's members to a buffer.
+   * This should only be called between updates, after changes have been applied.
+   *
+   * @param buffer The buffer to write to
+   */
+  @Override
+  public void writeState(ByteBuffer buffer) {
+    buffer.put((byte) attackType.ordinal());
+    random.writeState(buffer);
+    buffer.putInt(members.size());
+    for (FlockMember member : members) {
+      member.writeState(buffer);
+    }
+  }
+  
+  /**
+   * Get the number of bytes {@link #writeState(ByteBuffer)} would write right now.
+   *
+   * @return The size of the state in bytes
+   */
+  @Override
+  public int getStateSize() {
+    return 1 + GameRandom.STATE_SIZE + 4 + members.size() * FlockMember.STATE_SIZE;
+  }
   
-      @Override
-      Color getColor() {
-        return Color.YELLOW;
+  /**
+   * Replace the flock and all it's members with a state written by {@link #writeState(ByteBuffer)}.
+   * The current members are reused, so only members past the current size of the flock are constructed.
+   *
+   * @param buffer The buffer to read from
+   */
+  @Override
+  public void readState(ByteBuffer buffer) {
+    attackType = AttackType.values()[buffer.get()];
+    random.readState(buffer);
+    int count = buffer.getInt();
+    FlockMember[] restored = new FlockMember[count];
+    for (int i = 0; i < count; i++) {
+      if (i < members.size()) {
+        restored[i] = members.get(i);
+      } else {
+        restored[i] = new FlockMember(new Vector2(0, 0), gameSize, true, new GameRandom(0));
       }
-    },
-    ;
-    
-    /**
-     * Add forces to the flock members based on the player.
-     *
-     * @param members All flock members
-     * @param player The player
-     */
-    abstract void addForces(CopyOnWriteArrayList<FlockMember> members, Player player);
+      restored[i].readState(buffer);
+      restored[i].setFlock(groupIndex);
+    }
     
-    /**
-     * Get the chance for a projectile to be fired.
-     *
-     * @return The chance for a projectile to be fired
-     */
-    abstract float getProjectileChance();
+    members.clear();
+    members.applyChanges();
+    for (FlockMember member : restored) {
+      members.spawn(member);
+    }
+    members.applyChanges();
+    gridStale = true;
+    membersChanged = true;
+  }
+  
+  /**
+   * Copy the flock into a frame to be drawn by the render thread.
+   *
+   * @param frame The frame being filled
+   */
+  @Override
+  public void writeFrame(FrameSnapshot frame) {
+    frame.setFlock(attackType.getColor(), memberSize);
+    for (FlockMember member : members) {
+      member.writeFrame(frame);
+    }
+  }
+  
+  /**
+   * A task calculating the forces for a range of members in the grid,
+   * split in half until the range is small enough.
+   */
+  @SuppressWarnings("serial")
+  private class ForceTask extends RecursiveAction {
     
     /**
-     * Get the speed of the flock members.
-     *
-     * @return The speed of the flock members
+     * The range of members in the grid
      */
-    abstract float getSpeed();
+    private int start, end;
     
     /**
-     * Get the color of the flock members.
+     * Construct a new ForceTask.
      *
-     * @return The color of the flock members
+     * @param start The index of the first member in the grid
+     * @param end The index after the last member in the grid
      */
-    abstract Color getColor();
+    ForceTask(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
     
-    /**
-     * Get a random attack type behavior.
-     *
-     * @return A random attack type behavior
-     */
-    static AttackType randomType() {
-      return values()[(int)(Math.random() * values().length)];
+    @Override
+    protected void compute() {
+      if (end - start <= PARALLEL_CHUNK_SIZE) {
+        calculateForces(start, end);
+      } else {
+        int middle = (start + end) >>> 1;
+        invokeAll(new ForceTask(start, middle), new ForceTask(middle, end));
+      }
     }
   }
   
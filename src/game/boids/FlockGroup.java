@@ -0,0 +1,617 @@
+package game.boids;
+
+import game.GameListener;
+import game.GameMovable;
+import game.Player;
+import game.ProjectileListener;
+import game.metrics.Counter;
+import game.metrics.Metrics;
+import game.metrics.Phase;
+import game.projectiles.Projectile;
+import game.random.GameRandom;
+import game.render.FrameSnapshot;
+import game.vectors.Vector2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * All the flocks in a game, each with its own attack type behavior, updated together.
+ * <p>
+ * Flocks of FlockMember objects share one grid, rebuilt once per update from every member.
+ * Forces are calculated in one pass over that grid, so members keep apart from every flock,
+ * and each projectile is checked once against the members of all flocks near it.
+ * Packed flocks keep their own grids, since they group their arrays by cell themselves,
+ * so packed flocks only keep apart from their own members and pass through each other.
+ * <p>
+ * Flocks are then updated in parallel. Each flock only changes its own members and random numbers,
+ * and the projectiles it fires and the game overs it causes are queued and passed on in flock order,
+ * so the result doesn't depend on which thread updates which flock.
+ *
+ * @author tobymoszer
+ */
+public class FlockGroup implements GameMovable {
+  
+  /**
+   * All flocks in the group
+   */
+  private ArrayList<FlockSimulation> flocks;
+  
+  /**
+   * The flocks sharing the grid, by their index in the group, or null if the flocks are packed
+   */
+  private Flock[] sharedFlocks;
+  
+  /**
+   * The members of each flock sharing the grid
+   */
+  private ArrayList<Iterable<FlockMember>> sharedMembers;
+  
+  /**
+   * The grid shared by every flock, or null if the flocks are packed
+   */
+  private SpatialGrid grid;
+  
+  /**
+   * If members have moved, been added, or been removed since the grid was last rebuilt
+   */
+  private boolean gridStale = true;
+  
+  /**
+   * If members have been added, removed, or replaced since the grid was last rebuilt,
+   * so an incremental grid has to be rebuilt instead of only moving the members that changed cells
+   */
+  private boolean membersChanged = true;
+  
+  /**
+   * The size of the largest member of any flock sharing the grid
+   */
+  private int memberSize;
+  
+  /**
+   * The queued events of each flock, passed on after every flock has been updated
+   */
+  private FlockEvents[] events;
+  
+  /**
+   * The flocks with level of detail on, found again every time projectiles are checked
+   */
+  private ArrayList<Flock> detailFlocks;
+  
+  /**
+   * The ProjectileListener listening for new projectiles to be fired by any flock
+   */
+  private ProjectileListener projectileListener;
+  
+  /**
+   * The GameListener listening for the game state to be changed
+   */
+  private GameListener gameListener;
+  
+  /**
+   * The pool used to update flocks and calculate forces in parallel
+   */
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+  
+  /**
+   * The total number of members below which everything is updated on the calling thread
+   */
+  private int parallelThreshold = 1000;
+  
+  /**
+   * The number of members each parallel task calculates forces for without splitting further
+   */
+  private final int PARALLEL_CHUNK_SIZE = 256;
+  
+  /**
+   * Construct a new FlockGroup.
+   * The first flock starts around the given center, and the others start around random positions.
+   *
+   * @param player The player in the game
+   * @param flockCount The number of flocks
+   * @param flockSize The initial size of each flock
+   * @param gameSize The size of the game boundaries
+   * @param center The position the first flock starts around
+   * @param packed If the flocks should be stored in packed arrays instead of FlockMember objects
+   * @param options The optional ways of simulating the flocks
+   * @param projectileListener The projectile listener that will listen for new projectiles to be fired
+   * @param gameListener The game listener that will listen for changes in game states
+   * @param random The random number generator each flock's is split from, which should not be shared
+   */
+  public FlockGroup(
+      Player player,
+      int flockCount,
+      int flockSize,
+      Vector2 gameSize,
+      Vector2 center,
+      boolean packed,
+      FlockOptions options,
+      ProjectileListener projectileListener,
+      GameListener gameListener,
+      GameRandom random
+  ) {
+    this.projectileListener = projectileListener;
+    this.gameListener = gameListener;
+    flocks = new ArrayList<>(flockCount);
+    events = new FlockEvents[flockCount];
+    detailFlocks = new ArrayList<>();
+    
+    for (int i = 0; i < flockCount; i++) {
+      GameRandom flockRandom = random.split();
+      Vector2 start = center;
+      if (i > 0) {
+        start = new Vector2(flockRandom.nextDouble() * gameSize.x, flockRandom.nextDouble() * gameSize.y);
+      }
+      events[i] = new FlockEvents();
+      if (packed) {
+        PackedFlock flock = new PackedFlock(player, flockSize, gameSize, start, events[i], events[i], flockRandom);
+        options.applyTo(flock);
+        flocks.add(flock);
+      } else {
+        Flock flock = new Flock(player, flockSize, gameSize, start, events[i], events[i], flockRandom);
+        options.applyTo(flock);
+        flocks.add(flock);
+      }
+    }
+    
+    if (!packed) {
+      sharedFlocks = new Flock[flockCount];
+      sharedMembers = new ArrayList<>(flockCount);
+      for (int i = 0; i < flockCount; i++) {
+        sharedFlocks[i] = (Flock) flocks.get(i);
+        if (i == 0) {
+          grid = sharedFlocks[i].getGrid();
+        }
+        sharedFlocks[i].shareGrid(grid, i);
+        sharedMembers.add(sharedFlocks[i].getMembers());
+        memberSize = Math.max(memberSize, sharedFlocks[i].getMemberSize());
+      }
+    }
+  }
+  
+  /**
+   * Update every flock.
+   * Forces for flocks sharing the grid are calculated first, all together.
+   * Flocks are updated in parallel once there are enough members,
+   * and their queued projectiles and game overs are passed on afterwards.
+   *
+   * @param time The amount of time since the last update in seconds
+   */
+  @Override
+  public void update(float time) {
+    boolean parallel = getSize() >= parallelThreshold;
+    
+    if (grid != null) {
+      long start = Metrics.start();
+      calculateForces(parallel);
+      Metrics.record(Phase.FLOCK_FORCES, start);
+    }
+    
+    if (parallel && flocks.size() > 1) {
+      pool.invoke(new UpdateTask(0, flocks.size(), time));
+    } else {
+      for (FlockSimulation flock : flocks) {
+        flock.update(time);
+      }
+    }
+    gridStale = true;
+    
+    for (FlockEvents flockEvents : events) {
+      flockEvents.flush();
+    }
+  }
+  
+  /**
+   * Calculate the main three boids forces for every flock sharing the grid.
+   * Each member only reads the positions and velocities copied into the grid and only writes its own forces,
+   * so the result is the same as calculating them in order.
+   *
+   * @param parallel If the forces should be calculated in parallel
+   */
+  private void calculateForces(boolean parallel) {
+    updateGrid();
+    for (Flock flock : sharedFlocks) {
+      flock.prepareForces();
+    }
+    if (parallel) {
+      pool.invoke(new ForceTask(0, grid.getMemberCount()));
+    } else {
+      calculateForces(0, grid.getMemberCount());
+    }
+  }
+  
+  /**
+   * Calculate the main three boids forces for a range of members in the shared grid,
+   * each with the settings of its own flock.
+   *
+   * @param start The index of the first member in the grid
+   * @param end The index after the last member in the grid
+   */
+  private void calculateForces(int start, int end) {
+    for (int i = start; i < end; i++) {
+      sharedFlocks[grid.getFlock(i)].calculateForces(i);
+    }
+  }
+  
+  /**
+   * Rebuild the shared grid if members have changed since it was last rebuilt.
+   * An incremental grid only moves the members that changed cells, one flock at a time in order,
+   * so the buckets end up the same however the flocks were updated.
+   */
+  private void updateGrid() {
+    if (gridStale) {
+      boolean incremental = grid.isTracking() && !membersChanged;
+      for (Flock flock : sharedFlocks) {
+        List<FlockMember> movers = flock.getCellMovers();
+        if (incremental) {
+          for (int i = 0; i < movers.size(); i++) {
+            grid.move(movers.get(i));
+          }
+        }
+        movers.clear();
+      }
+      if (incremental) {
+        grid.refresh();
+      } else {
+        grid.rebuildAll(sharedMembers);
+      }
+      gridStale = false;
+      membersChanged = false;
+    }
+  }
+  
+  /**
+   * Check all the given projectiles against the members of every flock.
+   * With a shared grid, each projectile is only checked against the members in the grid cells it overlaps,
+   * whichever flock they are in. Packed flocks each check the projectiles against their own grid.
+   * Projectiles already removed this tick, for being too old or out of bounds, are skipped.
+   * Hit members are removed together when changes are next applied.
+   *
+   * @param projectiles The projectiles to check against the flock members
+   * @param hits The collection to add the projectiles that hit a flock member to
+   * @return If any projectile intersects a flock member
+   */
+  public boolean checkProjectiles(Iterable<Projectile> projectiles, Collection<Projectile> hits) {
+    if (grid == null) {
+      boolean hit = false;
+      for (FlockSimulation flock : flocks) {
+        hit |= flock.checkProjectiles(projectiles, hits);
+      }
+      return hit;
+    }
+    
+    updateGrid();
+    boolean hit = false;
+    int checks = 0;
+    
+    detailFlocks.clear();
+    for (Flock flock : sharedFlocks) {
+      flock.clearFocus();
+      if (flock.isLevelOfDetail()) {
+        detailFlocks.add(flock);
+      }
+    }
+    
+    for (Projectile projectile : projectiles) {
+      if (projectile.isRemoved()) {
+        continue;
+      }
+      for (int i = 0; i < detailFlocks.size(); i++) {
+        detailFlocks.get(i).addFocus(projectile.getX(), projectile.getY());
+      }
+      
+      double radius = memberSize + Projectile.SIZE;
+      int firstColumn = grid.getColumn(projectile.getX() - radius);
+      int lastColumn = Math.min(
+          grid.getColumn(projectile.getX() + radius),
+          firstColumn + grid.getColumns() - 1
+      );
+      int firstRow = grid.getRow(projectile.getY() - radius);
+      int lastRow = Math.min(
+          grid.getRow(projectile.getY() + radius),
+          firstRow + grid.getRows() - 1
+      );
+      
+      boolean projectileHit = false;
+      for (int row = firstRow; row <= lastRow; row++) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+          int cell = grid.getCell(column, row);
+          checks += grid.getCellEnd(cell) - grid.getCellStart(cell);
+          for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++) {
+            FlockMember member = grid.getMember(i);
+            if (!member.isRemoved() && member.isHit(projectile)) {
+              sharedFlocks[grid.getFlock(i)].remove(member);
+              projectileHit = true;
+            }
+          }
+        }
+      }
+      
+      if (projectileHit) {
+        hits.add(projectile);
+        hit = true;
+      }
+    }
+    
+    Metrics.count(Counter.COLLISION_CHECKS, checks);
+    return hit;
+  }
+  
+  /**
+   * Apply all queued member changes of every flock at once.
+   */
+  public void applyChanges() {
+    if (grid == null) {
+      for (FlockSimulation flock : flocks) {
+        flock.applyChanges();
+      }
+      return;
+    }
+    
+    for (Flock flock : sharedFlocks) {
+      if (flock.applyMemberChanges()) {
+        gridStale = true;
+        membersChanged = true;
+      }
+    }
+  }
+  
+  /**
+   * Reset every flock and all their members.
+   */
+  @Override
+  public void reset() {
+    for (FlockSimulation flock : flocks) {
+      flock.reset();
+    }
+    gridStale = true;
+    membersChanged = true;
+  }
+  
+  /**
+   * Set the total number of members below which everything is updated on the calling thread.
+   *
+   * @param parallelThreshold The number of members, or Integer.MAX_VALUE to never update in parallel
+   */
+  public void setParallelThreshold(int parallelThreshold) {
+    this.parallelThreshold = parallelThreshold;
+  }
+  
+  /**
+   * Set the pool used to update flocks and calculate forces in parallel.
+   *
+   * @param pool The pool to update flocks in
+   */
+  public void setForkJoinPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+  
+  /**
+   * Get the number of flocks.
+   *
+   * @return The number of flocks
+   */
+  public int getFlockCount() {
+    return flocks.size();
+  }
+  
+  /**
+   * Get one of the flocks.
+   *
+   * @param index The index of the flock
+   * @return The flock
+   */
+  public FlockSimulation getFlock(int index) {
+    return flocks.get(index);
+  }
+  
+  /**
+   * Get the total number of members in every flock.
+   *
+   * @return The total number of flock members
+   */
+  public int getSize() {
+    int size = 0;
+    for (FlockSimulation flock : flocks) {
+      size += flock.getSize();
+    }
+    return size;
+  }
+  
+  /**
+   * Write the state of every flock to a buffer, in order.
+   * This should only be called between updates, after changes have been applied.
+   *
+   * @param buffer The buffer to write to
+   */
+  public void writeState(ByteBuffer buffer) {
+    for (FlockSimulation flock : flocks) {
+      flock.writeState(buffer);
+    }
+  }
+  
+  /**
+   * Get the number of bytes {@link #writeState(ByteBuffer)} would write right now.
+   *
+   * @return The size of the state in bytes
+   */
+  public int getStateSize() {
+    int size = 0;
+    for (FlockSimulation flock : flocks) {
+      size += flock.getStateSize();
+    }
+    return size;
+  }
+  
+  /**
+   * Replace every flock with a state written by {@link #writeState(ByteBuffer)}.
+   * The group must have the same number of flocks as the written group.
+   *
+   * @param buffer The buffer to read from
+   */
+  public void readState(ByteBuffer buffer) {
+    for (FlockSimulation flock : flocks) {
+      flock.readState(buffer);
+    }
+    gridStale = true;
+    membersChanged = true;
+  }
+  
+  /**
+   * Copy every flock into a frame to be drawn by the render thread.
+   *
+   * @param frame The frame being filled
+   */
+  public void writeFrame(FrameSnapshot frame) {
+    for (FlockSimulation flock : flocks) {
+      flock.writeFrame(frame);
+    }
+  }
+  
+  /**
+   * The projectiles fired and game overs caused by one flock during an update,
+   * queued so flocks can be updated on any thread.
+   */
+  private class FlockEvents implements ProjectileListener, GameListener {
+    
+    /**
+     * The projectiles fired as objects
+     */
+    private ArrayList<Projectile> projectiles = new ArrayList<>();
+    
+    /**
+     * The projectiles fired from the pool, as x, y, x direction, and y direction
+     */
+    private double[] shots = new double[16];
+    
+    /**
+     * The number of projectiles fired from the pool
+     */
+    private int shotCount;
+    
+    /**
+     * If the flock ended the game
+     */
+    private boolean over;
+    
+    @Override
+    public void addProjectile(Projectile projectile) {
+      projectiles.add(projectile);
+    }
+    
+    @Override
+    public void addProjectile(double x, double y, double directionX, double directionY) {
+      if (shotCount * 4 == shots.length) {
+        shots = Arrays.copyOf(shots, shots.length * 2);
+      }
+      shots[shotCount * 4] = x;
+      shots[shotCount * 4 + 1] = y;
+      shots[shotCount * 4 + 2] = directionX;
+      shots[shotCount * 4 + 3] = directionY;
+      shotCount++;
+    }
+    
+    @Override
+    public void isOver() {
+      over = true;
+    }
+    
+    /**
+     * Pass the queued events on to the group's listeners, and clear them.
+     */
+    void flush() {
+      for (Projectile projectile : projectiles) {
+        projectileListener.addProjectile(projectile);
+      }
+      projectiles.clear();
+      for (int i = 0; i < shotCount * 4; i += 4) {
+        projectileListener.addProjectile(shots[i], shots[i + 1], shots[i + 2], shots[i + 3]);
+      }
+      shotCount = 0;
+      if (over) {
+        over = false;
+        gameListener.isOver();
+      }
+    }
+  }
+  
+  /**
+   * A task updating a range of flocks, split in half until it is a single flock.
+   */
+  @SuppressWarnings("serial")
+  private class UpdateTask extends RecursiveAction {
+    
+    /**
+     * The range of flocks in the group
+     */
+    private int start, end;
+    
+    /**
+     * The amount of time since the last update in seconds
+     */
+    private float time;
+    
+    /**
+     * Construct a new UpdateTask.
+     *
+     * @param start The index of the first flock
+     * @param end The index after the last flock
+     * @param time The amount of time since the last update in seconds
+     */
+    UpdateTask(int start, int end, float time) {
+      this.start = start;
+      this.end = end;
+      this.time = time;
+    }
+    
+    @Override
+    protected void compute() {
+      if (end - start == 1) {
+        flocks.get(start).update(time);
+      } else {
+        int middle = (start + end) >>> 1;
+        invokeAll(new UpdateTask(start, middle, time), new UpdateTask(middle, end, time));
+      }
+    }
+  }
+  
+  /**
+   * A task calculating the forces for a range of members in the shared grid,
+   * split in half until the range is small enough.
+   */
+  @SuppressWarnings("serial")
+  private class ForceTask extends RecursiveAction {
+    
+    /**
+     * The range of members in the grid
+     */
+    private int start, end;
+    
+    /**
+     * Construct a new ForceTask.
+     *
+     * @param start The index of the first member in the grid
+     * @param end The index after the last member in the grid
+     */
+    ForceTask(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+    
+    @Override
+    protected void compute() {
+      if (end - start <= PARALLEL_CHUNK_SIZE) {
+        calculateForces(start, end);
+      } else {
+        int middle = (start + end) >>> 1;
+        invokeAll(new ForceTask(start, middle), new ForceTask(middle, end));
+      }
+    }
+  }
+  
+}
@@ -2,11 +2,13 @@ package game.boids;
 
 import game.GameMovable;
 import game.Player;
+import game.ProjectileListener;
 import game.projectiles.Projectile;
+import game.random.GameRandom;
+import game.render.FrameSnapshot;
 import game.vectors.Vector2;
 
-import java.awt.Graphics;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.nio.ByteBuffer;
 
 /**
  * A single member of a Flock.
@@ -35,6 +37,11 @@ public class FlockMember implements GameMovable {
    */
   private Vector2 position;
   
+  /**
+   * The position of the flock member before the last update
+   */
+  private Vector2 previousPosition;
+  
   /**
    * The velocity of the flock member
    */
@@ -45,6 +52,30 @@ public class FlockMember implements GameMovable {
    */
   private Vector2 gameSize;
   
+  /**
+   * Scratch vectors reused every update so the flock member does not allocate
+   */
+  private Vector2 force, randomForce, offset, average;
+  
+  /**
+   * The grid indices and squared distances of the nearest neighbors found so far,
+   * kept as a heap with the farthest of them first, and reused by every search.
+   * They are only created once the member first looks for its nearest neighbors.
+   */
+  private int[] nearestIndices;
+  private double[] nearestDistances;
+  
+  /**
+   * The number of nearest neighbors found so far
+   */
+  private int nearestCount;
+  
+  /**
+   * The surrounding cells and how close they come to the member, in the order they are searched
+   */
+  private int[] searchCells;
+  private double[] searchDistances;
+  
   /**
    * The weight of the separation force
    */
@@ -80,50 +111,91 @@ public class FlockMember implements GameMovable {
    */
   private int size = 20;
   
+  /**
+   * If the flock member has been hit and is waiting to be removed from the flock
+   */
+  private boolean removed = false;
+  
+  /**
+   * The index of the member's flock in its FlockGroup, or 0 if the flock isn't in a group
+   */
+  private int flock = 0;
+  
+  /**
+   * The incremental grid keeping the member in the bucket of its cell, or null if it isn't kept in one
+   */
+  private SpatialGrid cellGrid;
+  
+  /**
+   * The cell whose bucket the member is kept in, and the member's index in that bucket
+   */
+  private int cell = -1, cellSlot;
+  
+  /**
+   * The cell the member was in after its last update, which differs from cell until it's moved into that bucket
+   */
+  private int nextCell = -1;
+  
+  /**
+   * The random number generator for this flock member only, so members can be updated on any thread
+   */
+  private GameRandom random;
+  
   /**
    * Construct a FlockMember.
    *
    * @param position The position of the flock member
    * @param gameSize The size of the game boundaries
    * @param exactPosition If the flock member should be placed at that exact position, or just nearby
+   * @param random The random number generator for the flock member, which should not be shared
    */
-  public FlockMember(Vector2 position, Vector2 gameSize, boolean exactPosition) {
+  public FlockMember(Vector2 position, Vector2 gameSize, boolean exactPosition, GameRandom random) {
     this.position = position;
+    this.random = random;
     if (!exactPosition) {
       scatter();
     }
     this.gameSize = gameSize;
+    previousPosition = position.copy();
     separation = new Vector2(0, 0);
     alignment = new Vector2(0, 0);
     cohesion = new Vector2(0, 0);
     attackForce = new Vector2(0, 0);
     acceleration = new Vector2(0, 0);
     velocity = new Vector2(0, 0);
+    force = new Vector2(0, 0);
+    randomForce = new Vector2(0, 0);
+    offset = new Vector2(0, 0);
+    average = new Vector2(0, 0);
   }
   
   /**
    * Scatter the flock members to nearby locations
    */
   private void scatter() {
-    position.x += (int) (Math.random() * 100);
-    position.y += (int) (Math.random() * 100);
+    position.x += (int) (random.nextDouble() * 100);
+    position.y += (int) (random.nextDouble() * 100);
   }
   
   /**
    * Calculate the separation force on the flock member.
    *
-   * @param members The other flock members
-   * @param distance The distance to check for other flock members
-   */
-  public void calculateSeparation(CopyOnWriteArrayList<FlockMember> members, float distance) {
-    for (FlockMember other : members) {
-      if (!other.equals(this)) {
-        if (position.minus(other.position).length() < distance) {
-          Vector2 currentSeparation = position.minus(other.position).normalized();
-          currentSeparation.setToLength(
-              200f/Math.pow(currentSeparation.length(), 2)
-          );
-          separation.add(currentSeparation);
+   * @param grid The grid containing all flock members
+   * @param distance The distance to check for other flock members, no larger than a grid cell
+   */
+  public void calculateSeparation(SpatialGrid grid, float distance) {
+    for (int cell : grid.getNeighborCells(grid.getCell(position.x, position.y))) {
+      for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++) {
+        FlockMember other = grid.getMember(i);
+        if (!other.equals(this)) {
+          grid.offsetInto(other.position, position, offset);
+          if (offset.lengthSqr() < distance * distance) {
+            offset.normalize();
+            offset.setToLength(
+                200f/Math.pow(offset.length(), 2)
+            );
+            separation.add(offset);
+          }
         }
       }
     }
@@ -132,55 +204,447 @@ public class FlockMember implements GameMovable {
   /**
    * Calculate the alignment force on the flock member.
    *
-   * @param members The other flock members
-   * @param distance The distance to check for other flock members
+   * @param grid The grid containing all flock members
+   * @param distance The distance to check for other flock members, no larger than a grid cell
    */
-  public void calculateAlignment(CopyOnWriteArrayList<FlockMember> members, float distance) {
-    Vector2 averageVelocity = new Vector2(0, 0);
+  public void calculateAlignment(SpatialGrid grid, float distance) {
+    average.reset();
     int neighbors = 0;
     
-    for (FlockMember other : members) {
-      if (!other.equals(this)) {
-        if (position.minus(other.position).length() < distance) {
-          averageVelocity.add(other.velocity);
-          neighbors++;
+    for (int cell : grid.getNeighborCells(grid.getCell(position.x, position.y))) {
+      for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++) {
+        FlockMember other = grid.getMember(i);
+        if (!other.equals(this)) {
+          if (grid.offsetInto(position, other.position, offset).lengthSqr() < distance * distance) {
+            average.add(other.velocity);
+            neighbors++;
+          }
         }
       }
     }
     
     if (neighbors != 0) {
-      averageVelocity.over(neighbors);
-      alignment = averageVelocity.minus(velocity);
+      average.over(neighbors);
+      average.minusInto(velocity, alignment);
     } else {
-      alignment = Vector2.zero();
+      alignment.reset();
     }
   }
   
   /**
    * Calculate the cohesion force on the flock member.
+   * Neighbors across the edge of the game are averaged at their wrapped positions.
    *
-   * @param members The other flock members
-   * @param distance The distance to check for other flock members
+   * @param grid The grid containing all flock members
+   * @param distance The distance to check for other flock members, no larger than a grid cell
    */
-  public void calculateCohesion(CopyOnWriteArrayList<FlockMember> members, float distance) {
+  public void calculateCohesion(SpatialGrid grid, float distance) {
     
-    Vector2 averagePosition = new Vector2(0, 0);
+    average.reset();
     int neighbors = 0;
     
-    for (FlockMember other : members) {
-      if (!other.equals(this)) {
-        if (position.minus(other.position).length() < distance) {
-          averagePosition.add(other.position);
-          neighbors ++;
+    for (int cell : grid.getNeighborCells(grid.getCell(position.x, position.y))) {
+      for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++) {
+        FlockMember other = grid.getMember(i);
+        if (!other.equals(this)) {
+          grid.offsetInto(position, other.position, offset);
+          if (offset.lengthSqr() < distance * distance) {
+            average.add(offset);
+            neighbors ++;
+          }
         }
       }
     }
     
     if (neighbors != 0) {
-      averagePosition.over(neighbors);
-      cohesion = averagePosition.minus(position);
+      average.divideInto(neighbors, cohesion);
+    }
+    
+  }
+  
+  /**
+   * Calculate all three boids forces on the flock member in a single pass over the nearby members.
+   * The squared distance to each neighbor is computed once and compared against all three distances.
+   * Neighbors are read from the positions and velocities copied into the grid,
+   * so this can run on many members at once while only writing this member's forces.
+   * When several flocks share the grid, members keep apart from every flock
+   * but only align with and move towards their own.
+   *
+   * @param grid The grid containing all flock members
+   * @param separationDistance The distance to apply the separation force
+   * @param alignmentDistance The distance to apply the alignment force
+   * @param cohesionDistance The distance to apply the cohesion force, no larger than a grid cell
+   */
+  public void calculateForces(
+      SpatialGrid grid,
+      float separationDistance,
+      float alignmentDistance,
+      float cohesionDistance
+  ) {
+    double separationDistanceSqr = separationDistance * separationDistance;
+    double alignmentDistanceSqr = alignmentDistance * alignmentDistance;
+    double cohesionDistanceSqr = cohesionDistance * cohesionDistance;
+    
+    double separationX = 0, separationY = 0;
+    double velocityX = 0, velocityY = 0;
+    double offsetX = 0, offsetY = 0;
+    int alignmentNeighbors = 0;
+    int cohesionNeighbors = 0;
+    
+    for (int cell : grid.getNeighborCells(grid.getCell(position.x, position.y))) {
+      for (int i = grid.getCellStart(cell); i < grid.getCellEnd(cell); i++) {
+        if (grid.getMember(i) == this) {
+          continue;
+        }
+        
+        double dx = grid.wrapX(grid.getX(i) - position.x);
+        double dy = grid.wrapY(grid.getY(i) - position.y);
+        double distanceSqr = dx*dx + dy*dy;
+        
+        if (distanceSqr < separationDistanceSqr) {
+          double distance = Math.sqrt(distanceSqr);
+          separationX -= dx / distance * 200;
+          separationY -= dy / distance * 200;
+        }
+        if (grid.getFlock(i) != flock) {
+          continue;
+        }
+        if (distanceSqr < alignmentDistanceSqr) {
+          velocityX += grid.getVelocityX(i);
+          velocityY += grid.getVelocityY(i);
+          alignmentNeighbors++;
+        }
+        if (distanceSqr < cohesionDistanceSqr) {
+          offsetX += dx;
+          offsetY += dy;
+          cohesionNeighbors++;
+        }
+      }
+    }
+    
+    separation.x += separationX;
+    separation.y += separationY;
+    
+    if (alignmentNeighbors != 0) {
+      alignment.x = velocityX / alignmentNeighbors - velocity.x;
+      alignment.y = velocityY / alignmentNeighbors - velocity.y;
+    } else {
+      alignment.reset();
+    }
+    
+    if (cohesionNeighbors != 0) {
+      cohesion.x = offsetX / cohesionNeighbors;
+      cohesion.y = offsetY / cohesionNeighbors;
+    }
+  }
+  
+  /**
+   * Calculate all three boids forces on the flock member from only its nearest neighbors,
+   * like starlings that keep track of a few birds around them however dense the flock gets.
+   * The surrounding cells are searched from the closest one out, and cells farther away than the farthest
+   * neighbor found so far are skipped. Every neighbor goes through a heap that only keeps the nearest ones,
+   * and the search stops after checking the given number of members, so crowded cells are only sampled.
+   * Each crowded cell is sampled from a different starting point for each member, so members don't all pick the same ones.
+   * The forces from the nearest neighbors are then calculated the same as {@link #calculateForces}.
+   *
+   * @param grid The grid containing all flock members
+   * @param index The index of this member in the grid
+   * @param neighbors The most neighbors the forces are calculated from
+   * @param maxCandidates The most members checked while searching, at least as many as the neighbors
+   * @param separationDistance The distance to apply the separation force
+   * @param alignmentDistance The distance to apply the alignment force
+   * @param cohesionDistance The distance to apply the cohesion force, no larger than a grid cell
+   */
+  public void calculateNearestForces(
+      SpatialGrid grid,
+      int index,
+      int neighbors,
+      int maxCandidates,
+      float separationDistance,
+      float alignmentDistance,
+      float cohesionDistance
+  ) {
+    if (nearestIndices == null || nearestIndices.length < neighbors) {
+      nearestIndices = new int[neighbors];
+      nearestDistances = new double[neighbors];
+      searchCells = new int[9];
+      searchDistances = new double[9];
+    }
+    double range = Math.max(separationDistance, Math.max(alignmentDistance, cohesionDistance));
+    double rangeSqr = range * range;
+    
+    //sort the surrounding cells by how close they come to the member, closest first
+    int ownCell = grid.getCell(position.x, position.y);
+    int cellCount = 0;
+    for (int cell : grid.getNeighborCells(ownCell)) {
+      double dx = Math.max(0, Math.abs(grid.wrapX(grid.getCellCenterX(cell) - position.x)) - grid.getCellWidth() / 2);
+      double dy = Math.max(0, Math.abs(grid.wrapY(grid.getCellCenterY(cell) - position.y)) - grid.getCellHeight() / 2);
+      double distanceSqr = dx*dx + dy*dy;
+      int i = cellCount++;
+      while (i > 0 && searchDistances[i - 1] > distanceSqr) {
+        searchCells[i] = searchCells[i - 1];
+        searchDistances[i] = searchDistances[i - 1];
+        i--;
+      }
+      searchCells[i] = cell;
+      searchDistances[i] = distanceSqr;
+    }
+    
+    nearestCount = 0;
+    int candidates = 0;
+    for (int c = 0; c < cellCount && candidates < maxCandidates; c++) {
+      double cellDistanceSqr = searchDistances[c];
+      if (cellDistanceSqr >= rangeSqr || (nearestCount == neighbors && cellDistanceSqr >= nearestDistances[0])) {
+        break;
+      }
+      int start = grid.getCellStart(searchCells[c]);
+      int count = grid.getCellMemberCount(searchCells[c]);
+      for (int j = 0; j < count && candidates < maxCandidates; j++) {
+        int i = start + (index + j) % count;
+        if (i == index) {
+          continue;
+        }
+        candidates++;
+        double dx = grid.wrapX(grid.getX(i) - position.x);
+        double dy = grid.wrapY(grid.getY(i) - position.y);
+        double distanceSqr = dx*dx + dy*dy;
+        if (distanceSqr < rangeSqr) {
+          addNearest(i, distanceSqr, neighbors);
+        }
+      }
+    }
+    
+    double separationDistanceSqr = separationDistance * separationDistance;
+    double alignmentDistanceSqr = alignmentDistance * alignmentDistance;
+    double cohesionDistanceSqr = cohesionDistance * cohesionDistance;
+    
+    double separationX = 0, separationY = 0;
+    double velocityX = 0, velocityY = 0;
+    double offsetX = 0, offsetY = 0;
+    int alignmentNeighbors = 0;
+    int cohesionNeighbors = 0;
+    
+    for (int n = 0; n < nearestCount; n++) {
+      int i = nearestIndices[n];
+      double dx = grid.wrapX(grid.getX(i) - position.x);
+      double dy = grid.wrapY(grid.getY(i) - position.y);
+      double distanceSqr = nearestDistances[n];
+      
+      if (distanceSqr < separationDistanceSqr) {
+        double distance = Math.sqrt(distanceSqr);
+        separationX -= dx / distance * 200;
+        separationY -= dy / distance * 200;
+      }
+      if (grid.getFlock(i) != flock) {
+        continue;
+      }
+      if (distanceSqr < alignmentDistanceSqr) {
+        velocityX += grid.getVelocityX(i);
+        velocityY += grid.getVelocityY(i);
+        alignmentNeighbors++;
+      }
+      if (distanceSqr < cohesionDistanceSqr) {
+        offsetX += dx;
+        offsetY += dy;
+        cohesionNeighbors++;
+      }
+    }
+    
+    separation.x += separationX;
+    separation.y += separationY;
+    
+    if (alignmentNeighbors != 0) {
+      alignment.x = velocityX / alignmentNeighbors - velocity.x;
+      alignment.y = velocityY / alignmentNeighbors - velocity.y;
+    } else {
+      alignment.reset();
+    }
+    
+    if (cohesionNeighbors != 0) {
+      cohesion.x = offsetX / cohesionNeighbors;
+      cohesion.y = offsetY / cohesionNeighbors;
+    }
+  }
+  
+  /**
+   * Offer a neighbor to the heap of nearest neighbors.
+   * It is kept if the heap isn't full yet, or if it's nearer than the farthest neighbor, which it replaces.
+   *
+   * @param index The index of the neighbor in the grid
+   * @param distanceSqr The squared distance to the neighbor
+   * @param neighbors The most neighbors the heap holds
+   */
+  private void addNearest(int index, double distanceSqr, int neighbors) {
+    int slot;
+    if (nearestCount < neighbors) {
+      //move farther parents down until the new neighbor fits
+      slot = nearestCount++;
+      while (slot > 0) {
+        int parent = (slot - 1) / 2;
+        if (nearestDistances[parent] >= distanceSqr) {
+          break;
+        }
+        nearestIndices[slot] = nearestIndices[parent];
+        nearestDistances[slot] = nearestDistances[parent];
+        slot = parent;
+      }
+    } else if (distanceSqr < nearestDistances[0]) {
+      //replace the farthest neighbor, moving farther children up until the new neighbor fits
+      slot = 0;
+      while (true) {
+        int child = slot * 2 + 1;
+        if (child >= nearestCount) {
+          break;
+        }
+        if (child + 1 < nearestCount && nearestDistances[child + 1] > nearestDistances[child]) {
+          child++;
+        }
+        if (nearestDistances[child] <= distanceSqr) {
+          break;
+        }
+        nearestIndices[slot] = nearestIndices[child];
+        nearestDistances[slot] = nearestDistances[child];
+        slot = child;
+      }
+    } else {
+      return;
+    }
+    nearestIndices[slot] = index;
+    nearestDistances[slot] = distanceSqr;
+  }
+  
+  /**
+   * Calculate the three boids forces from the totals of the surrounding cells instead of every nearby member,
+   * blended with the exact forces by how much detail the flock member needs.
+   * Each surrounding cell is treated as a single member at the average position of its members,
+   * so the cost doesn't depend on how crowded the cells are.
+   * The cell totals include every flock sharing the grid, so far away flocks blur together.
+   * Forces are only used as directions once they are normalized, so the normalized forces are blended,
+   * and a flock member moving between levels of detail turns gradually instead of jumping.
+   *
+   * @param grid The grid containing all flock members
+   * @param separationDistance The distance to apply the separation force
+   * @param alignmentDistance The distance to apply the alignment force
+   * @param cohesionDistance The distance to apply the cohesion force, no larger than a grid cell
+   * @param detail How much of the exact forces to use, from 0 for only the approximation to 1 for only the exact forces
+   */
+  public void calculateApproximateForces(
+      SpatialGrid grid,
+      float separationDistance,
+      float alignmentDistance,
+      float cohesionDistance,
+      double detail
+  ) {
+    if (detail > 0) {
+      calculateForces(grid, separationDistance, alignmentDistance, cohesionDistance);
+    }
+    blendApproximateForces(grid, separationDistance, alignmentDistance, cohesionDistance, detail);
+  }
+  
+  /**
+   * Blend the three boids forces calculated from the totals of the surrounding cells
+   * into the exact forces already calculated, by how much detail the flock member needs.
+   *
+   * @param grid The grid containing all flock members
+   * @param separationDistance The distance to apply the separation force
+   * @param alignmentDistance The distance to apply the alignment force
+   * @param cohesionDistance The distance to apply the cohesion force, no larger than a grid cell
+   * @param detail How much of the exact forces to use, from 0 for only the approximation to 1 for only the exact forces
+   */
+  void blendApproximateForces(
+      SpatialGrid grid,
+      float separationDistance,
+      float alignmentDistance,
+      float cohesionDistance,
+      double detail
+  ) {
+    double separationDistanceSqr = separationDistance * separationDistance;
+    double alignmentDistanceSqr = alignmentDistance * alignmentDistance;
+    double cohesionDistanceSqr = cohesionDistance * cohesionDistance;
+    
+    double separationX = 0, separationY = 0;
+    double velocityX = 0, velocityY = 0;
+    double offsetX = 0, offsetY = 0;
+    int alignmentNeighbors = 0;
+    int cohesionNeighbors = 0;
+    
+    int ownCell = grid.getCell(position.x, position.y);
+    for (int cell : grid.getNeighborCells(ownCell)) {
+      int count = grid.getCellMemberCount(cell);
+      double totalX = grid.getCellTotalX(cell);
+      double totalY = grid.getCellTotalY(cell);
+      double totalVelocityX = grid.getCellTotalVelocityX(cell);
+      double totalVelocityY = grid.getCellTotalVelocityY(cell);
+      
+      //leave this member out of its own cell
+      if (cell == ownCell) {
+        count--;
+        totalX -= grid.wrapX(position.x - grid.getCellCenterX(cell));
+        totalY -= grid.wrapY(position.y - grid.getCellCenterY(cell));
+        totalVelocityX -= velocity.x;
+        totalVelocityY -= velocity.y;
+      }
+      if (count <= 0) {
+        continue;
+      }
+      
+      double dx = grid.wrapX(grid.getCellCenterX(cell) + totalX / count - position.x);
+      double dy = grid.wrapY(grid.getCellCenterY(cell) + totalY / count - position.y);
+      double distanceSqr = dx*dx + dy*dy;
+      
+      if (distanceSqr < separationDistanceSqr && distanceSqr > 0) {
+        double distance = Math.sqrt(distanceSqr);
+        separationX -= dx / distance * count;
+        separationY -= dy / distance * count;
+      }
+      if (distanceSqr < alignmentDistanceSqr) {
+        velocityX += totalVelocityX;
+        velocityY += totalVelocityY;
+        alignmentNeighbors += count;
+      }
+      if (distanceSqr < cohesionDistanceSqr) {
+        offsetX += dx * count;
+        offsetY += dy * count;
+        cohesionNeighbors += count;
+      }
     }
     
+    blend(separation, separationX, separationY, detail);
+    if (alignmentNeighbors != 0) {
+      blend(
+          alignment,
+          velocityX / alignmentNeighbors - velocity.x,
+          velocityY / alignmentNeighbors - velocity.y,
+          detail
+      );
+    } else {
+      blend(alignment, 0, 0, detail);
+    }
+    if (cohesionNeighbors != 0) {
+      blend(cohesion, offsetX / cohesionNeighbors, offsetY / cohesionNeighbors, detail);
+    } else {
+      blend(cohesion, 0, 0, detail);
+    }
+  }
+  
+  /**
+   * Blend an exact force with an approximate force, as directions.
+   *
+   * @param exact The exact force, which is set to the blended force
+   * @param approximateX The x of the approximate force
+   * @param approximateY The y of the approximate force
+   * @param detail How much of the exact force to use, from 0 to 1
+   */
+  private static void blend(Vector2 exact, double approximateX, double approximateY, double detail) {
+    if (!exact.isZero()) {
+      exact.normalize();
+      exact.mul(detail);
+    }
+    double length = Math.sqrt(approximateX*approximateX + approximateY*approximateY);
+    if (length > 0) {
+      exact.x += approximateX / length * (1 - detail);
+      exact.y += approximateY / length * (1 - detail);
+    }
   }
   
   /**
@@ -189,7 +653,7 @@ public class FlockMember implements GameMovable {
    * @param player The player
    */
   public void addForceToPlayer(Player player) {
-    attackForce = player.getPosition().minus(position);
+    attackForce.set(player.getX() - position.x, player.getY() - position.y);
   }
   
   /**
@@ -198,11 +662,10 @@ public class FlockMember implements GameMovable {
    * @param player The player
    */
   public void addForceAwayFromPlayer(Player player) {
-    if (position.minus(player.getPosition()).length() < 600) {
-      attackForce = position.minus(player.getPosition());
-      attackForce.setToLength(
-          200/(Math.pow(position.minus(player.getPosition()).length(), 2))
-      );
+    double distanceSqr = position.distanceSqTo(player.getX(), player.getY());
+    if (distanceSqr < 600 * 600) {
+      attackForce.set(position.x - player.getX(), position.y - player.getY());
+      attackForce.setToLength(200/distanceSqr);
     }
   }
   
@@ -216,7 +679,8 @@ public class FlockMember implements GameMovable {
   @Override
   public void update(float time) {
     
-    Vector2 force = Vector2.zero();
+    previousPosition.set(position);
+    force.reset();
   
     //check if the forces exist
     if (!separation.isZero()) {
@@ -233,11 +697,11 @@ public class FlockMember implements GameMovable {
     }
   
     //add all forces with their weights
-    force.add(separation.times(SEPARATION_WEIGHT));
-    force.add(alignment.times(ALIGNMENT_WEIGHT));
-    force.add(cohesion.times(COHESION_WEIGHT));
-    force.add(attackForce.times(ATTACK_WEIGHT));
-    force.add(Vector2.randomVector(1));
+    force.addScaled(separation, SEPARATION_WEIGHT);
+    force.addScaled(alignment, ALIGNMENT_WEIGHT);
+    force.addScaled(cohesion, COHESION_WEIGHT);
+    force.addScaled(attackForce, ATTACK_WEIGHT);
+    force.add(randomForce.setToRandom(1, random));
     
     //make sure the max force is not exceeded
     force.clampToLength(MAX_FORCE);
@@ -248,8 +712,8 @@ public class FlockMember implements GameMovable {
     }
     
     //update position and velocity
-    position.add(velocity.times(time));
-    velocity.add(acceleration.times(time));
+    position.addScaled(velocity, time);
+    velocity.addScaled(acceleration, time);
     velocity.clampToLength(speed);
     
     //check if the flock member is out of bounds
@@ -279,6 +743,11 @@ public class FlockMember implements GameMovable {
     if (position.y < 0) {
       position.y += gameSize.y;
     }
+    
+    //members kept in a bucket only have to be moved if they crossed into another cell
+    if (cellGrid != null) {
+      nextCell = cellGrid.getCell(position.x, position.y);
+    }
   }
   
   /**
@@ -288,8 +757,8 @@ public class FlockMember implements GameMovable {
    * @return If the flock member intersects the player
    */
   public boolean hits(Player player) {
-    return position.minus(player.getPosition()).length() <
-        size + player.SIZE;
+    return position.distanceSqTo(player.getX(), player.getY()) <
+        (size + player.SIZE) * (size + player.SIZE);
   }
   
   /**
@@ -299,24 +768,195 @@ public class FlockMember implements GameMovable {
    * @return If the flock member is hit by the projectile
    */
   public boolean isHit(Projectile projectile) {
-    return position.minus(projectile.getPosition()).length() <
-        size + projectile.SIZE;
+    return position.distanceSqTo(projectile.getX(), projectile.getY()) <
+        (size + Projectile.SIZE) * (size + Projectile.SIZE);
   }
   
   /**
    * Fire a projectile at the given player.
    *
    * @param player The player to aim at
-   * @return The fired projectile
+   * @param projectileListener The projectile listener to add the fired projectile to
+   */
+  public void fireProjectile(Player player, ProjectileListener projectileListener) {
+    double aimX = player.getX() - position.x;
+    double aimY = player.getY() - position.y;
+    double length = Math.sqrt(aimX*aimX + aimY*aimY);
+    projectileListener.addProjectile(position.x, position.y, aimX/length, aimY/length);
+  }
+  
+  /**
+   * Get the x position of the flock member.
+   *
+   * @return The x position
+   */
+  public double getX() {
+    return position.x;
+  }
+  
+  /**
+   * Get the y position of the flock member.
+   *
+   * @return The y position
+   */
+  public double getY() {
+    return position.y;
+  }
+  
+  /**
+   * Get the x velocity of the flock member.
+   *
+   * @return The x velocity
+   */
+  public double getVelocityX() {
+    return velocity.x;
+  }
+  
+  /**
+   * Get the y velocity of the flock member.
+   *
+   * @return The y velocity
+   */
+  public double getVelocityY() {
+    return velocity.y;
+  }
+  
+  /**
+   * Get the size of the flock member on the screen.
+   *
+   * @return The size of the flock member
+   */
+  public int getSize() {
+    return size;
+  }
+  
+  /**
+   * Get the index of the member's flock in its FlockGroup.
+   *
+   * @return The index of the flock, or 0 if the flock isn't in a group
+   */
+  int getFlock() {
+    return flock;
+  }
+  
+  /**
+   * Set the index of the member's flock in its FlockGroup.
+   *
+   * @param flock The index of the flock
+   */
+  void setFlock(int flock) {
+    this.flock = flock;
+  }
+  
+  /**
+   * Keep the member in the bucket of a cell in an incremental grid.
+   *
+   * @param grid The grid, or null if the member is no longer kept in one
+   * @param cell The index of the cell
+   * @param slot The member's index in the cell's bucket
+   */
+  void keepInCell(SpatialGrid grid, int cell, int slot) {
+    cellGrid = grid;
+    this.cell = cell;
+    nextCell = cell;
+    cellSlot = slot;
+  }
+  
+  /**
+   * Check if the member crossed into another cell during its last update,
+   * and has to be moved into that cell's bucket.
+   *
+   * @return If the member changed cells
+   */
+  boolean hasChangedCell() {
+    return nextCell != cell;
+  }
+  
+  /**
+   * Get the cell whose bucket the member is kept in.
+   *
+   * @return The index of the cell, or -1 if the member isn't kept in a bucket
+   */
+  int getGridCell() {
+    return cell;
+  }
+  
+  /**
+   * Get the cell the member was in after its last update.
+   *
+   * @return The index of the cell
    */
-  public Projectile fireProjectile(Player player) {
-    return new Projectile(
-        position.copy(),
-        new Vector2(
-            player.getPosition().x - position.x,
-            player.getPosition().y - position.y
-        ).normalized()
-    );
+  int getNextCell() {
+    return nextCell;
+  }
+  
+  /**
+   * Get the member's index in the bucket it's kept in.
+   *
+   * @return The index in the bucket
+   */
+  int getCellSlot() {
+    return cellSlot;
+  }
+  
+  /**
+   * Set the member's index in the bucket it's kept in, after another member was swapped out of the bucket.
+   *
+   * @param slot The index in the bucket
+   */
+  void setCellSlot(int slot) {
+    cellSlot = slot;
+  }
+  
+  /**
+   * Check if the flock member has been hit and is waiting to be removed from the flock.
+   *
+   * @return If the flock member is waiting to be removed
+   */
+  public boolean isRemoved() {
+    return removed;
+  }
+  
+  /**
+   * Mark the flock member as hit, so it is removed from the flock.
+   */
+  void remove() {
+    removed = true;
+  }
+  
+  /**
+   * The number of bytes written by {@link #writeState(ByteBuffer)}
+   */
+  static final int STATE_SIZE = 4 * 16 + 4 + GameRandom.STATE_SIZE;
+  
+  /**
+   * Write the state of the flock member to a buffer.
+   * The boids forces are not written, since they are calculated again every update.
+   *
+   * @param buffer The buffer to write to
+   */
+  void writeState(ByteBuffer buffer) {
+    position.write(buffer);
+    previousPosition.write(buffer);
+    velocity.write(buffer);
+    acceleration.write(buffer);
+    buffer.putFloat(speed);
+    random.writeState(buffer);
+  }
+  
+  /**
+   * Read a state written by {@link #writeState(ByteBuffer)} from a buffer.
+   *
+   * @param buffer The buffer to read from
+   */
+  void readState(ByteBuffer buffer) {
+    position.read(buffer);
+    previousPosition.read(buffer);
+    velocity.read(buffer);
+    acceleration.read(buffer);
+    speed = buffer.getFloat();
+    random.readState(buffer);
+    removed = false;
   }
   
   /**
@@ -343,26 +983,16 @@ public class FlockMember implements GameMovable {
   
     position = new Vector2(500, 500);
     scatter();
+    previousPosition.set(position);
   }
   
   /**
-   * Paint the flock member on the screen.
-   * This also paints a small circle in front of the flock member indicating it's direction.
+   * Copy the flock member into a frame to be drawn by the render thread.
    *
-   * @param g The Graphics to paint to
+   * @param frame The frame being filled
    */
-  public void paint(Graphics g) {
-    g.fillOval((int) position.x, (int) position.y, size, size);
-    
-    Vector2 direction = velocity.normalized();
-    direction.setToLength(size * 1.5);
-    g.fillOval(
-        (int) (position.x + direction.x) + size/2,
-        (int) (position.y + direction.y) + size/2,
-        size/3,
-        size/3
-    );
-    
+  void writeFrame(FrameSnapshot frame) {
+    frame.addMember(previousPosition.x, previousPosition.y, position.x, position.y, velocity.x, velocity.y);
   }
   
 }
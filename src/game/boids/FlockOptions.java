@@ -0,0 +1,368 @@
+package game.boids;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The optional ways of simulating flocks that change how a game plays out.
+ * <p>
+ * Every option changes which numbers the flocks add up, or in what order,
+ * so a game has to be played back with the same options it was recorded with.
+ * Recordings and snapshots write them with {@link #write(ByteBuffer)}.
+ * Only options that differ from the default are written, each as its id and its value,
+ * so adding an option doesn't change how games without it are saved.
+ * <p>
+ * Options are immutable, and each one is changed by making a copy.
+ *
+ * @author tobymoszer
+ */
+public final class FlockOptions {
+  
+  /**
+   * The options every game uses unless it is given others
+   */
+  public static final FlockOptions DEFAULT = new FlockOptions(false, 0, 0, 0, 0);
+  
+  /**
+   * The id each option is written with
+   */
+  private static final int INCREMENTAL_GRID = 1, REORDER_INTERVAL = 2, NEAREST_NEIGHBORS = 3,
+      DETAIL_DISTANCE = 4, APPROXIMATE_DISTANCE = 5;
+  
+  /**
+   * The number of bytes each written option takes: its id and its value as a double
+   */
+  private static final int OPTION_SIZE = 1 + Double.BYTES;
+  
+  /**
+   * If the grid keeps members in their cells between ticks instead of being rebuilt every tick
+   */
+  private final boolean incrementalGrid;
+  
+  /**
+   * The average number of ticks between sorting packed members by position, or 0 to never sort them
+   */
+  private final int reorderInterval;
+  
+  /**
+   * The most neighbors each member calculates its forces from, or 0 to use every nearby member
+   */
+  private final int nearestNeighbors;
+  
+  /**
+   * The distance from the player or a projectile within which members calculate exact forces
+   */
+  private final double detailDistance;
+  
+  /**
+   * The distance past which members only calculate approximate forces, or 0 if level of detail is off
+   */
+  private final double approximateDistance;
+  
+  /**
+   * Construct new FlockOptions.
+   *
+   * @param incrementalGrid If the grid is kept between ticks
+   * @param reorderInterval The average number of ticks between sorting packed members
+   * @param nearestNeighbors The most neighbors each member calculates its forces from
+   * @param detailDistance The distance within which members calculate exact forces
+   * @param approximateDistance The distance past which members only calculate approximate forces, or 0
+   */
+  private FlockOptions(
+      boolean incrementalGrid,
+      int reorderInterval,
+      int nearestNeighbors,
+      double detailDistance,
+      double approximateDistance
+  ) {
+    this.incrementalGrid = incrementalGrid;
+    this.reorderInterval = Math.max(0, reorderInterval);
+    this.nearestNeighbors = Math.max(0, nearestNeighbors);
+    if (approximateDistance > 0) {
+      this.detailDistance = Math.max(0, detailDistance);
+      this.approximateDistance = Math.max(approximateDistance, this.detailDistance);
+    } else {
+      this.detailDistance = 0;
+      this.approximateDistance = 0;
+    }
+  }
+  
+  /**
+   * Read the options from the system properties given on the command line.
+   * Run with -Dflock.incremental=true to only move members that changed cells instead of rebuilding the grid,
+   * -Dflock.reorder=ticks to sort packed members by position every so many ticks on average,
+   * -Dflock.neighbors=7 to calculate each member's forces from only its 7 nearest neighbors,
+   * and -Dflock.lod=300,500 to turn on level of detail with exact forces within 300 of the player or a projectile
+   * and only approximate forces past 500.
+   *
+   * @return The options
+   */
+  public static FlockOptions fromSystemProperties() {
+    FlockOptions options = DEFAULT
+        .withIncrementalGrid(Boolean.getBoolean("flock.incremental"))
+        .withReorderInterval(Integer.getInteger("flock.reorder", 0))
+        .withNearestNeighbors(Integer.getInteger("flock.neighbors", 0));
+    
+    String levelOfDetail = System.getProperty("flock.lod");
+    if (levelOfDetail != null) {
+      String[] distances = levelOfDetail.split(",");
+      double detail = Double.parseDouble(distances[0].trim());
+      double approximate = distances.length > 1 ? Double.parseDouble(distances[1].trim()) : detail;
+      options = options.withLevelOfDetail(detail, approximate);
+    }
+    return options;
+  }
+  
+  /**
+   * Copy these options with the grid kept between ticks or not.
+   * Only flocks of FlockMember objects use it.
+   *
+   * @param incrementalGrid If the grid should only move members that changed cells instead of being rebuilt
+   * @return The new options
+   */
+  public FlockOptions withIncrementalGrid(boolean incrementalGrid) {
+    return new FlockOptions(incrementalGrid, reorderInterval, nearestNeighbors, detailDistance, approximateDistance);
+  }
+  
+  /**
+   * Copy these options with packed members sorted by position every so many ticks.
+   * Only packed flocks use it.
+   *
+   * @param reorderInterval The average number of ticks between sorts, or 0 to never sort
+   * @return The new options
+   */
+  public FlockOptions withReorderInterval(int reorderInterval) {
+    return new FlockOptions(incrementalGrid, reorderInterval, nearestNeighbors, detailDistance, approximateDistance);
+  }
+  
+  /**
+   * Copy these options with each member's forces calculated from only its nearest neighbors.
+   * Only flocks of FlockMember objects use it.
+   *
+   * @param nearestNeighbors The most neighbors each member calculates its forces from, or 0 to use every nearby member
+   * @return The new options
+   */
+  public FlockOptions withNearestNeighbors(int nearestNeighbors) {
+    return new FlockOptions(incrementalGrid, reorderInterval, nearestNeighbors, detailDistance, approximateDistance);
+  }
+  
+  /**
+   * Copy these options with level of detail on, so members far from the player and projectiles
+   * calculate approximate forces. Only flocks of FlockMember objects use it.
+   *
+   * @param detailDistance The distance from the player or a projectile within which members calculate exact forces
+   * @param approximateDistance The distance past which members only calculate approximate forces, or 0 to turn it off
+   * @return The new options
+   */
+  public FlockOptions withLevelOfDetail(double detailDistance, double approximateDistance) {
+    return new FlockOptions(incrementalGrid, reorderInterval, nearestNeighbors, detailDistance, approximateDistance);
+  }
+  
+  /**
+   * Check if the grid keeps members in their cells between ticks.
+   *
+   * @return If the grid is incremental
+   */
+  public boolean isIncrementalGrid() {
+    return incrementalGrid;
+  }
+  
+  /**
+   * Get the average number of ticks between sorting packed members by position.
+   *
+   * @return The interval, or 0 if members are never sorted
+   */
+  public int getReorderInterval() {
+    return reorderInterval;
+  }
+  
+  /**
+   * Get the most neighbors each member calculates its forces from.
+   *
+   * @return The number of neighbors, or 0 if every nearby member is used
+   */
+  public int getNearestNeighbors() {
+    return nearestNeighbors;
+  }
+  
+  /**
+   * Check if level of detail is on.
+   *
+   * @return If members far from the player and projectiles calculate approximate forces
+   */
+  public boolean isLevelOfDetail() {
+    return approximateDistance > 0;
+  }
+  
+  /**
+   * Get the distance from the player or a projectile within which members calculate exact forces.
+   *
+   * @return The detail distance, or 0 if level of detail is off
+   */
+  public double getDetailDistance() {
+    return detailDistance;
+  }
+  
+  /**
+   * Get the distance past which members only calculate approximate forces.
+   *
+   * @return The approximate distance, or 0 if level of detail is off
+   */
+  public double getApproximateDistance() {
+    return approximateDistance;
+  }
+  
+  /**
+   * Apply these options to a flock of FlockMember objects.
+   *
+   * @param flock The flock
+   */
+  void applyTo(Flock flock) {
+    flock.setIncrementalGrid(incrementalGrid);
+    flock.setNearestNeighbors(nearestNeighbors);
+    if (isLevelOfDetail()) {
+      flock.setLevelOfDetail(detailDistance, approximateDistance);
+    } else {
+      flock.disableLevelOfDetail();
+    }
+  }
+  
+  /**
+   * Apply these options to a flock stored in packed arrays.
+   *
+   * @param flock The flock
+   */
+  void applyTo(PackedFlock flock) {
+    flock.setReorderInterval(reorderInterval);
+  }
+  
+  /**
+   * Get the number of bytes {@link #write(ByteBuffer)} writes.
+   *
+   * @return The size of the written options
+   */
+  public int getSize() {
+    return 1 + countChanged() * OPTION_SIZE;
+  }
+  
+  /**
+   * Write the number of options that differ from the default, then the id and value of each one.
+   *
+   * @param buffer The buffer to write to
+   */
+  public void write(ByteBuffer buffer) {
+    buffer.put((byte) countChanged());
+    if (incrementalGrid != DEFAULT.incrementalGrid) {
+      buffer.put((byte) INCREMENTAL_GRID);
+      buffer.putDouble(incrementalGrid ? 1 : 0);
+    }
+    if (reorderInterval != DEFAULT.reorderInterval) {
+      buffer.put((byte) REORDER_INTERVAL);
+      buffer.putDouble(reorderInterval);
+    }
+    if (nearestNeighbors != DEFAULT.nearestNeighbors) {
+      buffer.put((byte) NEAREST_NEIGHBORS);
+      buffer.putDouble(nearestNeighbors);
+    }
+    if (detailDistance != DEFAULT.detailDistance) {
+      buffer.put((byte) DETAIL_DISTANCE);
+      buffer.putDouble(detailDistance);
+    }
+    if (approximateDistance != DEFAULT.approximateDistance) {
+      buffer.put((byte) APPROXIMATE_DISTANCE);
+      buffer.putDouble(approximateDistance);
+    }
+  }
+  
+  /**
+   * Read options written by {@link #write(ByteBuffer)}. Options that weren't written keep their default.
+   *
+   * @param buffer The buffer to read from
+   * @return The options read
+   * @throws IllegalArgumentException If an option isn't known, because it was written by a newer version
+   */
+  public static FlockOptions read(ByteBuffer buffer) {
+    FlockOptions options = DEFAULT;
+    double detailDistance = DEFAULT.detailDistance;
+    double approximateDistance = DEFAULT.approximateDistance;
+    int count = buffer.get() & 0xff;
+    for (int i = 0; i < count; i++) {
+      int id = buffer.get() & 0xff;
+      double value = buffer.getDouble();
+      switch (id) {
+        case INCREMENTAL_GRID:
+          options = options.withIncrementalGrid(value != 0);
+          break;
+        case REORDER_INTERVAL:
+          options = options.withReorderInterval((int) value);
+          break;
+        case NEAREST_NEIGHBORS:
+          options = options.withNearestNeighbors((int) value);
+          break;
+        case DETAIL_DISTANCE:
+          detailDistance = value;
+          break;
+        case APPROXIMATE_DISTANCE:
+          approximateDistance = value;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown flock option " + id);
+      }
+    }
+    //the distances only make sense together, so they are set once both are read
+    return options.withLevelOfDetail(detailDistance, approximateDistance);
+  }
+  
+  /**
+   * Count the options that differ from the default.
+   *
+   * @return The number of changed options
+   */
+  private int countChanged() {
+    int count = 0;
+    if (incrementalGrid != DEFAULT.incrementalGrid) {
+      count++;
+    }
+    if (reorderInterval != DEFAULT.reorderInterval) {
+      count++;
+    }
+    if (nearestNeighbors != DEFAULT.nearestNeighbors) {
+      count++;
+    }
+    if (detailDistance != DEFAULT.detailDistance) {
+      count++;
+    }
+    if (approximateDistance != DEFAULT.approximateDistance) {
+      count++;
+    }
+    return count;
+  }
+  
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof FlockOptions)) {
+      return false;
+    }
+    FlockOptions options = (FlockOptions) other;
+    return incrementalGrid == options.incrementalGrid
+        && reorderInterval == options.reorderInterval
+        && nearestNeighbors == options.nearestNeighbors
+        && detailDistance == options.detailDistance
+        && approximateDistance == options.approximateDistance;
+  }
+  
+  @Override
+  public int hashCode() {
+    int hash = (31 * Boolean.hashCode(incrementalGrid) + reorderInterval) * 31 + nearestNeighbors;
+    hash = 31 * hash + Double.hashCode(detailDistance);
+    return 31 * hash + Double.hashCode(approximateDistance);
+  }
+  
+  @Override
+  public String toString() {
+    return "FlockOptions[incrementalGrid=" + incrementalGrid + ", reorderInterval=" + reorderInterval
+        + ", nearestNeighbors=" + nearestNeighbors
+        + ", detailDistance=" + detailDistance
+        + ", approximateDistance=" + approximateDistance + "]";
+  }
+  
+}
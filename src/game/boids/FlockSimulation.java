@@ -0,0 +1,35 @@
+package game.boids;
+
+import game.GameMovable;
+import game.projectiles.Projectile;
+import game.render.FrameSnapshot;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * A flock that can be simulated and drawn by the Game.
+ *
+ * @author tobymoszer
+ */
+public interface FlockSimulation extends GameMovable {
+  
+  boolean checkProjectile(Projectile projectile);
+  
+  boolean checkProjectiles(Iterable<Projectile> projectiles, Collection<Projectile> hits);
+  
+  void applyChanges();
+  
+  int getSize();
+  
+  AttackType getAttackType();
+  
+  int getStateSize();
+  
+  void writeState(ByteBuffer buffer);
+  
+  void readState(ByteBuffer buffer);
+  
+  void writeFrame(FrameSnapshot frame);
+  
+}
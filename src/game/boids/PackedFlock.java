@@ -0,0 +1,980 @@
+package game.boids;
+
+import game.GameListener;
+import game.Player;
+import game.ProjectileListener;
+import game.metrics.Counter;
+import game.metrics.Metrics;
+import game.metrics.Phase;
+import game.projectiles.Projectile;
+import game.random.GameRandom;
+import game.render.FrameSnapshot;
+import game.vectors.Vector2;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An entire flock stored in packed arrays instead of FlockMember objects.
+ * Member i is described by index i of every array,
+ * so every phase of the update is a linear sweep over primitive values.
+ * <p>
+ * The members can be sorted every so often by the Morton code of their position,
+ * which interleaves the bits of the x and y position so members close together on the screen
+ * are mostly close together in the arrays. Consecutive members then have mostly the same neighbors,
+ * so the force phase keeps sweeping the same few ranges of the cell grouped arrays instead of jumping around them.
+ *
+ * @author tobymoszer
+ */
+public class PackedFlock implements FlockSimulation {
+  
+  /**
+   * The number of members currently in the flock
+   */
+  private int size;
+  
+  /**
+   * The positions of the flock members
+   */
+  private double[] x, y;
+  
+  /**
+   * The positions of the flock members before the last update
+   */
+  private double[] previousX, previousY;
+  
+  /**
+   * The velocities of the flock members
+   */
+  private double[] velocityX, velocityY;
+  
+  /**
+   * The accelerations of the flock members
+   */
+  private double[] accelerationX, accelerationY;
+  
+  /**
+   * The three main boids forces on the flock members
+   */
+  private double[] separationX, separationY, alignmentX, alignmentY, cohesionX, cohesionY;
+  
+  /**
+   * The force to attack or avoid the player on the flock members
+   */
+  private double[] attackX, attackY;
+  
+  /**
+   * The cell of each flock member
+   */
+  private int[] memberCell;
+  
+  /**
+   * The index of the first member of each cell in the cell grouped arrays
+   */
+  private int[] cellStart;
+  
+  /**
+   * The member indices, positions, and velocities grouped by cell,
+   * so the members of one cell can be swept in order
+   */
+  private int[] cellIndex;
+  private double[] cellX, cellY, cellVelocityX, cellVelocityY;
+  
+  /**
+   * The grid layout used to find the cells surrounding each member
+   */
+  private SpatialGrid grid;
+  
+  /**
+   * If members have moved, been added, or been removed since they were last grouped by cell
+   */
+  private boolean gridStale = true;
+  
+  /**
+   * If each flock member has been hit and is waiting to be removed
+   */
+  private boolean[] removed;
+  
+  /**
+   * The average number of ticks between sorting the members by Morton code, or 0 to never sort them
+   */
+  private int reorderInterval = 0;
+  
+  /**
+   * The Morton code of each member and the order the members sort into, with a second copy of each for the radix sort
+   */
+  private int[] mortonCodes = new int[0], sortedCodes = new int[0], order = new int[0], sortedOrder = new int[0];
+  
+  /**
+   * The number of values of each digit of a radix sort pass, which is one byte of the Morton code
+   */
+  private static final int RADIX = 256;
+  
+  /**
+   * The number of members with each digit during a radix sort pass, turned into start indices
+   */
+  private final int[] radixCounts = new int[RADIX + 1];
+  
+  /**
+   * A member array reordered into sorted order, before being copied back
+   */
+  private double[] sortedValues = new double[0];
+  
+  /**
+   * The AttackType behavior of the flock
+   */
+  private AttackType attackType;
+  
+  /**
+   * The speed of the flock members
+   */
+  private float speed;
+  
+  /**
+   * The number of members the flock starts with
+   */
+  private int originalSize;
+  
+  /**
+   * The position that the flock starts around
+   */
+  private Vector2 origin;
+  
+  /**
+   * The size of the game boundaries
+   */
+  private Vector2 gameSize;
+  
+  /**
+   * The random number generator for the flock
+   */
+  private GameRandom random;
+  
+  /**
+   * The player in the game
+   */
+  private Player player;
+  
+  /**
+   * The ProjectileListener listening for new projectiles to be fired by the flock
+   */
+  private ProjectileListener projectileListener;
+  
+  /**
+   * The GameListener listening for the game state to be changed
+   */
+  private GameListener gameListener;
+  
+  /**
+   * The force being added to a flock member during integration
+   */
+  private double forceX, forceY;
+  
+  /**
+   * The distance to apply the separation force
+   */
+  private final float SEPARATION_DISTANCE = 50;
+  
+  /**
+   * The distance to apply the alignment force
+   */
+  private final float ALIGNMENT_DISTANCE = 100;
+  
+  /**
+   * The distance to apply the cohesion force
+   */
+  private final float COHESION_DISTANCE = 150;
+  
+  /**
+   * The chance for the flock to randomly change it's AttackType behavior
+   */
+  private final float CHANGE_BEHAVIOR_CHANCE = .4f;
+  
+  /**
+   * The weight of the separation force
+   */
+  private final float SEPARATION_WEIGHT = 3f;
+  
+  /**
+   * The weight of the alignment force
+   */
+  private final float ALIGNMENT_WEIGHT = .01f;
+  
+  /**
+   * The weight of the cohesion force
+   */
+  private final float COHESION_WEIGHT = 1f;
+  
+  /**
+   * The weight of the player attack force
+   */
+  private final float ATTACK_WEIGHT = 1f;
+  
+  /**
+   * The maximum magnitude of a force that can be applied to a flock member
+   */
+  private final float MAX_FORCE = 85f;
+  
+  /**
+   * The size of a flock member on the screen
+   */
+  private final int MEMBER_SIZE = 20;
+  
+  /**
+   * Construct a new PackedFlock.
+   *
+   * @param player The player in the game
+   * @param size The initial size of the flock
+   * @param gameSize The size of the game boundaries
+   * @param projectileListener The projectile listener that will listen for new projectiles to be fired
+   * @param gameListener The game listener that will listen for changes in game states
+   */
+  public PackedFlock(
+      Player player,
+      int size,
+      Vector2 gameSize,
+      ProjectileListener projectileListener,
+      GameListener gameListener
+  ) {
+    this(player, size, gameSize, new Vector2(500, 500), projectileListener, gameListener);
+  }
+  
+  /**
+   * Construct a new PackedFlock.
+   *
+   * @param player The player in the game
+   * @param size The initial size of the flock
+   * @param gameSize The size of the game boundaries
+   * @param center The position the flock starts around
+   * @param projectileListener The projectile listener that will listen for new projectiles to be fired
+   * @param gameListener The game listener that will listen for changes in game states
+   */
+  public PackedFlock(
+      Player player,
+      int size,
+      Vector2 gameSize,
+      Vector2 center,
+      ProjectileListener projectileListener,
+      GameListener gameListener
+  ) {
+    this(player, size, gameSize, center, projectileListener, gameListener, new GameRandom());
+  }
+  
+  /**
+   * Construct a new PackedFlock.
+   *
+   * @param player The player in the game
+   * @param size The initial size of the flock
+   * @param gameSize The size of the game boundaries
+   * @param center The position the flock starts around
+   * @param projectileListener The projectile listener that will listen for new projectiles to be fired
+   * @param gameListener The game listener that will listen for changes in game states
+   * @param random The random number generator for the flock, which should not be shared
+   */
+  public PackedFlock(
+      Player player,
+      int size,
+      Vector2 gameSize,
+      Vector2 center,
+      ProjectileListener projectileListener,
+      GameListener gameListener,
+      GameRandom random
+  ) {
+    this.random = random;
+    this.player = player;
+    this.gameSize = gameSize;
+    this.projectileListener = projectileListener;
+    this.gameListener = gameListener;
+    originalSize = size;
+    origin = center;
+    grid = new SpatialGrid(gameSize, COHESION_DISTANCE);
+    cellStart = new int[grid.getCellCount() + 1];
+    allocate(size);
+    setupFlock(center, size);
+  }
+  
+  /**
+   * Allocate all member arrays with the given capacity.
+   *
+   * @param capacity The number of members the arrays can hold
+   */
+  private void allocate(int capacity) {
+    x = new double[capacity];
+    y = new double[capacity];
+    previousX = new double[capacity];
+    previousY = new double[capacity];
+    velocityX = new double[capacity];
+    velocityY = new double[capacity];
+    accelerationX = new double[capacity];
+    accelerationY = new double[capacity];
+    separationX = new double[capacity];
+    separationY = new double[capacity];
+    alignmentX = new double[capacity];
+    alignmentY = new double[capacity];
+    cohesionX = new double[capacity];
+    cohesionY = new double[capacity];
+    attackX = new double[capacity];
+    attackY = new double[capacity];
+    memberCell = new int[capacity];
+    removed = new boolean[capacity];
+    cellIndex = new int[capacity];
+    cellX = new double[capacity];
+    cellY = new double[capacity];
+    cellVelocityX = new double[capacity];
+    cellVelocityY = new double[capacity];
+  }
+  
+  /**
+   * Create all the new flock members.
+   *
+   * @param center The position to create the members around
+   * @param size The number of members to create
+   */
+  private void setupFlock(Vector2 center, int size) {
+    if (x.length < size) {
+      allocate(size);
+    }
+    this.size = size;
+    
+    for (int i = 0; i < size; i++) {
+      //scatter the flock members to nearby locations
+      x[i] = center.x + (int) (random.nextDouble() * 100);
+      y[i] = center.y + (int) (random.nextDouble() * 100);
+      previousX[i] = x[i];
+      previousY[i] = y[i];
+      velocityX[i] = 0;
+      velocityY[i] = 0;
+      accelerationX[i] = 0;
+      accelerationY[i] = 0;
+      removed[i] = false;
+    }
+    gridStale = true;
+    randomBehavior();
+  }
+  
+  /**
+   * Update the flock.
+   * This also updates all flock members.
+   * Update the attack type behavior if necessary.
+   *
+   * @param time The amount of time since the last update in seconds
+   */
+  @Override
+  public void update(float time) {
+    
+    long start = Metrics.start();
+    calculateForces();
+    Metrics.record(Phase.FLOCK_FORCES, start);
+    
+    if (random.nextDouble()/time < CHANGE_BEHAVIOR_CHANCE) {
+      randomBehavior();
+    }
+    
+    if (random.nextDouble()/time < attackType.getProjectileChance()) {
+      fireProjectile();
+    }
+    
+    //add force based on attack type
+    start = Metrics.start();
+    attackType.addForces(this, player);
+    Metrics.record(Phase.FLOCK_ATTACK, start);
+    
+    //update all members
+    start = Metrics.start();
+    double hitDistanceSqr = Math.pow(MEMBER_SIZE + player.SIZE, 2);
+    for (int i = 0; i < size; i++) {
+      updateMember(i, time);
+      double dx = x[i] - player.getX();
+      double dy = y[i] - player.getY();
+      if (dx*dx + dy*dy < hitDistanceSqr) {
+        gameListener.isOver();
+      }
+    }
+    gridStale = true;
+    
+    //the sort is timed by the flock's random number generator instead of a tick counter,
+    //so a flock restored from a saved state sorts on the same ticks as the original
+    if (reorderInterval > 0 && random.nextInt(reorderInterval) == 0) {
+      sortMembers();
+    }
+    Metrics.record(Phase.FLOCK_INTEGRATE, start);
+  }
+  
+  /**
+   * Sort the members by the Morton code of their position, so members close together are close together in the arrays.
+   * Positions are quantized to 16 bits on each axis, and the 32 bit codes are sorted with a radix sort,
+   * one byte per pass, so the whole sort is a few linear sweeps however the members are ordered.
+   * The sort is stable, so members with the same code keep their order.
+   * It should only be called between updates, after changes have been applied.
+   */
+  public void sortMembers() {
+    if (size < 2) {
+      return;
+    }
+    if (mortonCodes.length < size) {
+      mortonCodes = new int[x.length];
+      sortedCodes = new int[x.length];
+      order = new int[x.length];
+      sortedOrder = new int[x.length];
+      sortedValues = new double[x.length];
+    }
+    
+    double scaleX = 65536 / gameSize.x;
+    double scaleY = 65536 / gameSize.y;
+    for (int i = 0; i < size; i++) {
+      int column = Math.min(65535, Math.max(0, (int) (x[i] * scaleX)));
+      int row = Math.min(65535, Math.max(0, (int) (y[i] * scaleY)));
+      mortonCodes[i] = spreadBits(column) | spreadBits(row) << 1;
+      order[i] = i;
+    }
+    
+    //least significant byte first, swapping the copies after every pass
+    for (int shift = 0; shift < 32; shift += 8) {
+      Arrays.fill(radixCounts, 0);
+      for (int i = 0; i < size; i++) {
+        radixCounts[(mortonCodes[i] >>> shift & (RADIX - 1)) + 1]++;
+      }
+      //every member has the same digit, so this pass wouldn't move anything
+      if (radixCounts[(mortonCodes[0] >>> shift & (RADIX - 1)) + 1] == size) {
+        continue;
+      }
+      for (int digit = 1; digit <= RADIX; digit++) {
+        radixCounts[digit] += radixCounts[digit - 1];
+      }
+      for (int i = 0; i < size; i++) {
+        int slot = radixCounts[mortonCodes[i] >>> shift & (RADIX - 1)]++;
+        sortedCodes[slot] = mortonCodes[i];
+        sortedOrder[slot] = order[i];
+      }
+      int[] swap = mortonCodes;
+      mortonCodes = sortedCodes;
+      sortedCodes = swap;
+      swap = order;
+      order = sortedOrder;
+      sortedOrder = swap;
+    }
+    
+    //forces and attacks are calculated again before they are next used, so only the motion is moved
+    reorder(x);
+    reorder(y);
+    reorder(previousX);
+    reorder(previousY);
+    reorder(velocityX);
+    reorder(velocityY);
+    reorder(accelerationX);
+    reorder(accelerationY);
+    gridStale = true;
+  }
+  
+  /**
+   * Move the values of a member array into the order found by the last sort.
+   *
+   * @param values The member array
+   */
+  private void reorder(double[] values) {
+    for (int i = 0; i < size; i++) {
+      sortedValues[i] = values[order[i]];
+    }
+    System.arraycopy(sortedValues, 0, values, 0, size);
+  }
+  
+  /**
+   * Spread the lowest 16 bits of a value out to the even bits, for interleaving into a Morton code.
+   *
+   * @param value The value
+   * @return The lowest 16 bits of the value with a zero bit after each of them
+   */
+  private static int spreadBits(int value) {
+    value &= 0xffff;
+    value = (value | value << 8) & 0x00ff00ff;
+    value = (value | value << 4) & 0x0f0f0f0f;
+    value = (value | value << 2) & 0x33333333;
+    value = (value | value << 1) & 0x55555555;
+    return value;
+  }
+  
+  /**
+   * Set how often the members are sorted by Morton code, on average.
+   * Sorting changes which member each random number and projectile goes to,
+   * so recordings should be played back with the same interval they were made with.
+   *
+   * @param reorderInterval The average number of ticks between sorts, or 0 to never sort the members
+   */
+  public void setReorderInterval(int reorderInterval) {
+    this.reorderInterval = Math.max(0, reorderInterval);
+  }
+  
+  /**
+   * Group the member indices, positions, and velocities by cell,
+   * if members have changed since they were last grouped.
+   */
+  private void groupByCell() {
+    if (!gridStale) {
+      return;
+    }
+    gridStale = false;
+    
+    Arrays.fill(cellStart, 0);
+    for (int i = 0; i < size; i++) {
+      memberCell[i] = grid.getCell(x[i], y[i]);
+      cellStart[memberCell[i] + 1]++;
+    }
+    for (int cell = 1; cell < cellStart.length; cell++) {
+      cellStart[cell] += cellStart[cell - 1];
+    }
+    
+    //place the members, using cellStart as a cursor that is shifted back afterwards
+    for (int i = 0; i < size; i++) {
+      int slot = cellStart[memberCell[i]]++;
+      cellIndex[slot] = i;
+      cellX[slot] = x[i];
+      cellY[slot] = y[i];
+      cellVelocityX[slot] = velocityX[i];
+      cellVelocityY[slot] = velocityY[i];
+    }
+    for (int cell = cellStart.length - 1; cell > 0; cell--) {
+      cellStart[cell] = cellStart[cell - 1];
+    }
+    cellStart[0] = 0;
+  }
+  
+  /**
+   * Calculate the main three boids forces on all members in a single pass, without moving them.
+   * This is the first step of every update, and is public so it can be benchmarked on its own.
+   */
+  public void calculateForces() {
+    groupByCell();
+    
+    double separationDistanceSqr = SEPARATION_DISTANCE * SEPARATION_DISTANCE;
+    double alignmentDistanceSqr = ALIGNMENT_DISTANCE * ALIGNMENT_DISTANCE;
+    double cohesionDistanceSqr = COHESION_DISTANCE * COHESION_DISTANCE;
+    
+    for (int i = 0; i < size; i++) {
+      double positionX = x[i];
+      double positionY = y[i];
+      double sumSeparationX = 0, sumSeparationY = 0;
+      double sumVelocityX = 0, sumVelocityY = 0;
+      double sumOffsetX = 0, sumOffsetY = 0;
+      int alignmentNeighbors = 0;
+      int cohesionNeighbors = 0;
+      
+      for (int cell : grid.getNeighborCells(memberCell[i])) {
+        for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+          if (cellIndex[j] == i) {
+            continue;
+          }
+          
+          double dx = grid.wrapX(cellX[j] - positionX);
+          double dy = grid.wrapY(cellY[j] - positionY);
+          double distanceSqr = dx*dx + dy*dy;
+          
+          if (distanceSqr < separationDistanceSqr) {
+            double distance = Math.sqrt(distanceSqr);
+            sumSeparationX -= dx / distance * 200;
+            sumSeparationY -= dy / distance * 200;
+          }
+          if (distanceSqr < alignmentDistanceSqr) {
+            sumVelocityX += cellVelocityX[j];
+            sumVelocityY += cellVelocityY[j];
+            alignmentNeighbors++;
+          }
+          if (distanceSqr < cohesionDistanceSqr) {
+            sumOffsetX += dx;
+            sumOffsetY += dy;
+            cohesionNeighbors++;
+          }
+        }
+      }
+      
+      separationX[i] = sumSeparationX;
+      separationY[i] = sumSeparationY;
+      
+      if (alignmentNeighbors != 0) {
+        alignmentX[i] = sumVelocityX / alignmentNeighbors - velocityX[i];
+        alignmentY[i] = sumVelocityY / alignmentNeighbors - velocityY[i];
+      } else {
+        alignmentX[i] = 0;
+        alignmentY[i] = 0;
+      }
+      
+      if (cohesionNeighbors != 0) {
+        cohesionX[i] = sumOffsetX / cohesionNeighbors;
+        cohesionY[i] = sumOffsetY / cohesionNeighbors;
+      } else {
+        cohesionX[i] = 0;
+        cohesionY[i] = 0;
+      }
+    }
+  }
+  
+  /**
+   * Add the force toward the player to all members.
+   *
+   * @param player The player
+   */
+  void addForceToPlayer(Player player) {
+    double playerX = player.getX();
+    double playerY = player.getY();
+    for (int i = 0; i < size; i++) {
+      attackX[i] = playerX - x[i];
+      attackY[i] = playerY - y[i];
+    }
+  }
+  
+  /**
+   * Add the force away from the player to all members within range of the player.
+   *
+   * @param player The player
+   */
+  void addForceAwayFromPlayer(Player player) {
+    double playerX = player.getX();
+    double playerY = player.getY();
+    for (int i = 0; i < size; i++) {
+      double dx = x[i] - playerX;
+      double dy = y[i] - playerY;
+      if (dx*dx + dy*dy < 600 * 600) {
+        attackX[i] = dx;
+        attackY[i] = dy;
+      }
+    }
+  }
+  
+  /**
+   * Update a single flock member.
+   * Add all forces and compensate for their weights.
+   * Calculate the acceleration, velocity, and position of the flock member.
+   *
+   * @param i The index of the flock member
+   * @param time The amount of time since the last update in seconds
+   */
+  private void updateMember(int i, float time) {
+    
+    previousX[i] = x[i];
+    previousY[i] = y[i];
+    
+    //add all normalized forces with their weights
+    forceX = 0;
+    forceY = 0;
+    addNormalizedForce(separationX[i], separationY[i], SEPARATION_WEIGHT);
+    addNormalizedForce(alignmentX[i], alignmentY[i], ALIGNMENT_WEIGHT);
+    addNormalizedForce(cohesionX[i], cohesionY[i], COHESION_WEIGHT);
+    addNormalizedForce(attackX[i], attackY[i], ATTACK_WEIGHT);
+    addNormalizedForce(random.nextDouble() - .5f, random.nextDouble() - .5f, 1);
+    
+    //make sure the max force is not exceeded
+    double magnitude = Math.sqrt(forceX*forceX + forceY*forceY);
+    if (magnitude > MAX_FORCE) {
+      forceX *= MAX_FORCE/magnitude;
+      forceY *= MAX_FORCE/magnitude;
+    }
+    
+    //add the force to the acceleration
+    if (!(Double.isNaN(forceX) || Double.isNaN(forceY))) {
+      accelerationX[i] += forceX;
+      accelerationY[i] += forceY;
+    }
+    
+    //update position and velocity
+    x[i] += velocityX[i] * time;
+    y[i] += velocityY[i] * time;
+    velocityX[i] += accelerationX[i] * time;
+    velocityY[i] += accelerationY[i] * time;
+    double velocity = Math.sqrt(velocityX[i]*velocityX[i] + velocityY[i]*velocityY[i]);
+    if (velocity > speed) {
+      velocityX[i] *= speed/velocity;
+      velocityY[i] *= speed/velocity;
+    }
+    
+    //check if the flock member is out of bounds
+    if (x[i] > gameSize.x) {
+      x[i] -= gameSize.x;
+    }
+    if (x[i] < 0) {
+      x[i] += gameSize.x;
+    }
+    if (y[i] > gameSize.y) {
+      y[i] -= gameSize.y;
+    }
+    if (y[i] < 0) {
+      y[i] += gameSize.y;
+    }
+    
+    //reset forces
+    attackX[i] = 0;
+    attackY[i] = 0;
+  }
+  
+  /**
+   * Normalize a force and add it to the force being integrated with the given weight.
+   * Zero forces are skipped, and forces that cannot be normalized are added as NaN.
+   *
+   * @param fx The x component of the force
+   * @param fy The y component of the force
+   * @param weight The weight of the force
+   */
+  private void addNormalizedForce(double fx, double fy, float weight) {
+    if (fx == 0 && fy == 0) {
+      return;
+    }
+    double magnitude = Math.sqrt(fx*fx + fy*fy);
+    forceX += fx / magnitude * weight;
+    forceY += fy / magnitude * weight;
+  }
+  
+  /**
+   * Set the attack type behavior to a random attack type.
+   */
+  private void randomBehavior() {
+    attackType = AttackType.randomType(random);
+    speed = attackType.getSpeed();
+  }
+  
+  /**
+   * Fire a projectile from a random flock member.
+   */
+  private void fireProjectile() {
+    if (size == 0) {
+      return;
+    }
+    int i = random.nextInt(size);
+    double aimX = player.getX() - x[i];
+    double aimY = player.getY() - y[i];
+    double length = Math.sqrt(aimX*aimX + aimY*aimY);
+    projectileListener.addProjectile(x[i], y[i], aimX/length, aimY/length);
+  }
+  
+  /**
+   * Check if the given projectile intersects any flock members.
+   * Hit members are removed when changes are next applied.
+   *
+   * @param projectile The projectile to check against all flock members
+   * @return If the given projectile intersects any flock member
+   */
+  @Override
+  public boolean checkProjectile(Projectile projectile) {
+    double projectileX = projectile.getX();
+    double projectileY = projectile.getY();
+    double hitDistanceSqr = Math.pow(MEMBER_SIZE + Projectile.SIZE, 2);
+    boolean hit = false;
+    
+    for (int i = 0; i < size; i++) {
+      double dx = x[i] - projectileX;
+      double dy = y[i] - projectileY;
+      if (!removed[i] && dx*dx + dy*dy < hitDistanceSqr) {
+        removed[i] = true;
+        hit = true;
+      }
+    }
+    
+    return hit;
+  }
+  
+  /**
+   * Check all the given projectiles against the flock members.
+   * Each projectile is only checked against the members in the grid cells it overlaps.
+   * Projectiles already removed this tick, for being too old or out of bounds, are skipped.
+   * Hit members are removed together when changes are next applied.
+   *
+   * @param projectiles The projectiles to check against the flock members
+   * @param hits The collection to add the projectiles that hit a flock member to
+   * @return If any projectile intersects a flock member
+   */
+  @Override
+  public boolean checkProjectiles(Iterable<Projectile> projectiles, Collection<Projectile> hits) {
+    groupByCell();
+    boolean hit = false;
+    int checks = 0;
+    
+    for (Projectile projectile : projectiles) {
+      if (projectile.isRemoved()) {
+        continue;
+      }
+      double projectileX = projectile.getX();
+      double projectileY = projectile.getY();
+      double radius = MEMBER_SIZE + Projectile.SIZE;
+      double hitDistanceSqr = radius * radius;
+      int firstColumn = grid.getColumn(projectileX - radius);
+      int lastColumn = Math.min(grid.getColumn(projectileX + radius), firstColumn + grid.getColumns() - 1);
+      int firstRow = grid.getRow(projectileY - radius);
+      int lastRow = Math.min(grid.getRow(projectileY + radius), firstRow + grid.getRows() - 1);
+      
+      boolean projectileHit = false;
+      for (int row = firstRow; row <= lastRow; row++) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+          int cell = grid.getCell(column, row);
+          checks += cellStart[cell + 1] - cellStart[cell];
+          for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+            double dx = cellX[j] - projectileX;
+            double dy = cellY[j] - projectileY;
+            if (!removed[cellIndex[j]] && dx*dx + dy*dy < hitDistanceSqr) {
+              removed[cellIndex[j]] = true;
+              projectileHit = true;
+            }
+          }
+        }
+      }
+      
+      if (projectileHit) {
+        hits.add(projectile);
+        hit = true;
+      }
+    }
+    
+    Metrics.count(Counter.COLLISION_CHECKS, checks);
+    return hit;
+  }
+  
+  /**
+   * Remove all members that have been hit at once, keeping the remaining members in order.
+   */
+  @Override
+  public void applyChanges() {
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      if (removed[i]) {
+        removed[i] = false;
+        continue;
+      }
+      x[kept] = x[i];
+      y[kept] = y[i];
+      previousX[kept] = previousX[i];
+      previousY[kept] = previousY[i];
+      velocityX[kept] = velocityX[i];
+      velocityY[kept] = velocityY[i];
+      accelerationX[kept] = accelerationX[i];
+      accelerationY[kept] = accelerationY[i];
+      kept++;
+    }
+    if (kept != size) {
+      size = kept;
+      gridStale = true;
+    }
+  }
+  
+  /**
+   * Reset the flock and all it's members.
+   */
+  @Override
+  public void reset() {
+    setupFlock(origin, originalSize);
+  }
+  
+  /**
+   * Get the current number of flock members.
+   * @return The current number of flock members
+   */
+  @Override
+  public int getSize() {
+    return size;
+  }
+  
+  /**
+   * Get the current attack type behavior.
+   *
+   * @return The current attack type behavior
+   */
+  @Override
+  public AttackType getAttackType() {
+    return attackType;
+  }
+  
+  /**
+   * Write the state of the flock and all it's members to a buffer.
+   * This should only be called between updates, after changes have been applied.
+   *
+   * @param buffer The buffer to write to
+   */
+  @Override
+  public void writeState(ByteBuffer buffer) {
+    buffer.put((byte) attackType.ordinal());
+    buffer.putFloat(speed);
+    random.writeState(buffer);
+    buffer.putInt(size);
+    
+    //write each array as a block, so it can be copied in bulk
+    putDoubles(buffer, x);
+    putDoubles(buffer, y);
+    putDoubles(buffer, previousX);
+    putDoubles(buffer, previousY);
+    putDoubles(buffer, velocityX);
+    putDoubles(buffer, velocityY);
+    putDoubles(buffer, accelerationX);
+    putDoubles(buffer, accelerationY);
+  }
+  
+  /**
+   * Get the number of bytes {@link #writeState(ByteBuffer)} would write right now.
+   *
+   * @return The size of the state in bytes
+   */
+  @Override
+  public int getStateSize() {
+    return 1 + 4 + GameRandom.STATE_SIZE + 4 + size * 8 * 8;
+  }
+  
+  /**
+   * Write the values of the current members from an array to a buffer in one copy.
+   *
+   * @param buffer The buffer to write to
+   * @param values The array to write
+   */
+  private void putDoubles(ByteBuffer buffer, double[] values) {
+    buffer.asDoubleBuffer().put(values, 0, size);
+    buffer.position(buffer.position() + size * 8);
+  }
+  
+  /**
+   * Read the values of the current members from a buffer into an array in one copy.
+   *
+   * @param buffer The buffer to read from
+   * @param values The array to read into
+   */
+  private void getDoubles(ByteBuffer buffer, double[] values) {
+    buffer.asDoubleBuffer().get(values, 0, size);
+    buffer.position(buffer.position() + size * 8);
+  }
+  
+  /**
+   * Replace the flock and all it's members with a state written by {@link #writeState(ByteBuffer)}.
+   *
+   * @param buffer The buffer to read from
+   */
+  @Override
+  public void readState(ByteBuffer buffer) {
+    attackType = AttackType.values()[buffer.get()];
+    speed = buffer.getFloat();
+    random.readState(buffer);
+    int count = buffer.getInt();
+    if (count > x.length) {
+      allocate(count);
+    }
+    size = count;
+    getDoubles(buffer, x);
+    getDoubles(buffer, y);
+    getDoubles(buffer, previousX);
+    getDoubles(buffer, previousY);
+    getDoubles(buffer, velocityX);
+    getDoubles(buffer, velocityY);
+    getDoubles(buffer, accelerationX);
+    getDoubles(buffer, accelerationY);
+    Arrays.fill(attackX, 0, size, 0);
+    Arrays.fill(attackY, 0, size, 0);
+    Arrays.fill(removed, 0, size, false);
+    gridStale = true;
+  }
+  
+  /**
+   * Copy the flock into a frame to be drawn by the render thread.
+   *
+   * @param frame The frame being filled
+   */
+  @Override
+  public void writeFrame(FrameSnapshot frame) {
+    frame.setFlock(attackType.getColor(), MEMBER_SIZE);
+    for (int i = 0; i < size; i++) {
+      frame.addMember(previousX[i], previousY[i], x[i], y[i], velocityX[i], velocityY[i]);
+    }
+  }
+  
+}
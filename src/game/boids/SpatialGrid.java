@@ -0,0 +1,749 @@
+package game.boids;
+
+import game.vectors.Vector2;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid over the game boundaries used to find nearby flock members.
+ * The grid wraps around the edges of the game the same way flock members do,
+ * so members near one edge are neighbors of members near the opposite edge.
+ * <p>
+ * The grid is either rebuilt from scratch by sorting every member into its cell,
+ * or kept incrementally, with every member staying in its cell's bucket between ticks.
+ * Members only move buckets when they cross into another cell, which most don't since they move a few pixels a tick,
+ * and each move is a swap with the last member of the bucket. The positions and velocities are still copied
+ * out of the buckets every tick, but nothing has to be sorted again.
+ *
+ * @author tobymoszer
+ */
+public class SpatialGrid {
+  
+  /**
+   * The size of the game boundaries
+   */
+  private Vector2 gameSize;
+  
+  /**
+   * The number of columns and rows in the grid
+   */
+  private int columns, rows;
+  
+  /**
+   * The size of a single cell
+   */
+  private double cellWidth, cellHeight;
+  
+  /**
+   * The index of the first member of each cell in cellMembers.
+   * The members of cell i are at [cellStart[i], cellStart[i + 1]).
+   */
+  private int[] cellStart;
+  
+  /**
+   * All flock members, grouped by cell
+   */
+  private FlockMember[] cellMembers;
+  
+  /**
+   * The positions and velocities of the members when the grid was built, in the same order as cellMembers.
+   * Forces are calculated from these copies, so members can be updated while the forces are read.
+   */
+  private double[] cellX, cellY, cellVelocityX, cellVelocityY;
+  
+  /**
+   * The index of each member's flock in its FlockGroup, in the same order as cellMembers
+   */
+  private int[] cellFlock;
+  
+  /**
+   * The totals of the members in each cell, used to approximate a whole cell as a single member.
+   * Positions are totaled as offsets from the center of the cell, so members that wrapped are counted correctly.
+   */
+  private double[] cellTotalX, cellTotalY, cellTotalVelocityX, cellTotalVelocityY;
+  
+  /**
+   * The number of members currently in the grid
+   */
+  private int memberCount;
+  
+  /**
+   * The members and cells collected during a rebuild, before they are grouped by cell
+   */
+  private FlockMember[] unsortedMembers;
+  private int[] unsortedCells;
+  
+  /**
+   * The distinct cells surrounding each cell, including the cell itself
+   */
+  private int[][] neighborCells;
+  
+  /**
+   * If members are kept in the buckets of their cells between ticks instead of being sorted every rebuild
+   */
+  private boolean incremental = false;
+  
+  /**
+   * If every member in the grid is kept in a bucket, so members that changed cells can be moved
+   * instead of rebuilding the grid
+   */
+  private boolean tracking = false;
+  
+  /**
+   * The members kept in each cell when the grid is incremental, in no particular order
+   */
+  private FlockMember[][] buckets;
+  
+  /**
+   * The number of members in each bucket
+   */
+  private int[] bucketSizes;
+  
+  /**
+   * Construct a new SpatialGrid.
+   * Cells are never smaller than the given cell size,
+   * so all members within that distance are always in the surrounding cells.
+   *
+   * @param gameSize The size of the game boundaries
+   * @param cellSize The minimum size of a cell
+   */
+  public SpatialGrid(Vector2 gameSize, double cellSize) {
+    this.gameSize = gameSize;
+    columns = Math.max(1, (int) (gameSize.x / cellSize));
+    rows = Math.max(1, (int) (gameSize.y / cellSize));
+    cellWidth = gameSize.x / columns;
+    cellHeight = gameSize.y / rows;
+    cellStart = new int[columns * rows + 1];
+    cellTotalX = new double[columns * rows];
+    cellTotalY = new double[columns * rows];
+    cellTotalVelocityX = new double[columns * rows];
+    cellTotalVelocityY = new double[columns * rows];
+    cellMembers = new FlockMember[0];
+    cellX = new double[0];
+    cellY = new double[0];
+    cellVelocityX = new double[0];
+    cellVelocityY = new double[0];
+    cellFlock = new int[0];
+    unsortedMembers = new FlockMember[0];
+    unsortedCells = new int[0];
+    setupNeighborCells();
+  }
+  
+  /**
+   * Find the surrounding cells of every cell, wrapping around the edges.
+   * Small grids wrap onto themselves, so duplicate cells are skipped.
+   */
+  private void setupNeighborCells() {
+    neighborCells = new int[columns * rows][];
+    int[] found = new int[9];
+    
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        int count = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dx = -1; dx <= 1; dx++) {
+            int cell = Math.floorMod(row + dy, rows) * columns + Math.floorMod(column + dx, columns);
+            boolean duplicate = false;
+            for (int i = 0; i < count; i++) {
+              if (found[i] == cell) {
+                duplicate = true;
+                break;
+              }
+            }
+            if (!duplicate) {
+              found[count++] = cell;
+            }
+          }
+        }
+        neighborCells[row * columns + column] = Arrays.copyOf(found, count);
+      }
+    }
+  }
+  
+  /**
+   * Rebuild the grid from the given flock members.
+   * The members are only iterated once, so a concurrently modified list is still grouped consistently.
+   *
+   * @param members The flock members to put in the grid
+   */
+  public void rebuild(Iterable<FlockMember> members) {
+    memberCount = 0;
+    if (incremental) {
+      clearBuckets();
+      track(members);
+      refresh();
+      return;
+    }
+    collect(members);
+    groupByCell();
+  }
+  
+  /**
+   * Rebuild the grid from the members of several flocks, so they can all find each other.
+   *
+   * @param flocks The members of each flock to put in the grid
+   */
+  public void rebuildAll(List<? extends Iterable<FlockMember>> flocks) {
+    memberCount = 0;
+    if (incremental) {
+      clearBuckets();
+      for (Iterable<FlockMember> members : flocks) {
+        track(members);
+      }
+      refresh();
+      return;
+    }
+    for (Iterable<FlockMember> members : flocks) {
+      collect(members);
+    }
+    groupByCell();
+  }
+  
+  /**
+   * Collect members and their cells to be grouped by cell.
+   *
+   * @param members The flock members to put in the grid
+   */
+  private void collect(Iterable<FlockMember> members) {
+    for (FlockMember member : members) {
+      if (memberCount == unsortedMembers.length) {
+        int newLength = Math.max(16, memberCount * 2);
+        unsortedMembers = Arrays.copyOf(unsortedMembers, newLength);
+        unsortedCells = Arrays.copyOf(unsortedCells, newLength);
+      }
+      unsortedMembers[memberCount] = member;
+      unsortedCells[memberCount] = getCell(member.getX(), member.getY());
+      memberCount++;
+    }
+  }
+  
+  /**
+   * Group the collected members by cell, copying their positions and velocities.
+   */
+  private void groupByCell() {
+    ensureCapacity(unsortedMembers.length);
+    
+    //count the members in each cell, then turn the counts into start indices
+    Arrays.fill(cellStart, 0);
+    for (int i = 0; i < memberCount; i++) {
+      cellStart[unsortedCells[i] + 1]++;
+    }
+    for (int cell = 0; cell < columns * rows; cell++) {
+      cellStart[cell + 1] += cellStart[cell];
+    }
+    
+    //place the members, using cellStart as a cursor that is shifted back afterwards
+    Arrays.fill(cellTotalX, 0);
+    Arrays.fill(cellTotalY, 0);
+    Arrays.fill(cellTotalVelocityX, 0);
+    Arrays.fill(cellTotalVelocityY, 0);
+    for (int i = 0; i < memberCount; i++) {
+      int cell = unsortedCells[i];
+      int index = cellStart[cell]++;
+      FlockMember member = unsortedMembers[i];
+      cellMembers[index] = member;
+      cellX[index] = member.getX();
+      cellY[index] = member.getY();
+      cellVelocityX[index] = member.getVelocityX();
+      cellVelocityY[index] = member.getVelocityY();
+      cellFlock[index] = member.getFlock();
+      
+      cellTotalX[cell] += wrapX(cellX[index] - getCellCenterX(cell));
+      cellTotalY[cell] += wrapY(cellY[index] - getCellCenterY(cell));
+      cellTotalVelocityX[cell] += cellVelocityX[index];
+      cellTotalVelocityY[cell] += cellVelocityY[index];
+    }
+    for (int cell = columns * rows; cell > 0; cell--) {
+      cellStart[cell] = cellStart[cell - 1];
+    }
+    cellStart[0] = 0;
+    
+    //drop references to members that are no longer in the grid
+    Arrays.fill(cellMembers, memberCount, cellMembers.length, null);
+    Arrays.fill(unsortedMembers, 0, memberCount, null);
+  }
+  
+  /**
+   * Set if members are kept in the buckets of their cells between ticks, so the grid can be updated
+   * by only moving the members that changed cells. The members are put in buckets the next time the grid is rebuilt.
+   * Members in a bucket are in a different order than in their flock, so forces add up in a different order
+   * and come out slightly differently than with a grid that is rebuilt every time.
+   *
+   * @param incremental If the grid should be kept incrementally
+   */
+  public void setIncremental(boolean incremental) {
+    if (!incremental && buckets != null) {
+      clearBuckets();
+    }
+    this.incremental = incremental;
+    tracking = false;
+  }
+  
+  /**
+   * Check if members are kept in the buckets of their cells between ticks.
+   *
+   * @return If the grid is kept incrementally
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+  
+  /**
+   * Check if every member in the grid is kept in a bucket,
+   * so the grid can be updated with {@link #move(FlockMember)} and {@link #refresh()} instead of being rebuilt.
+   * This stays true until the grid stops being incremental.
+   *
+   * @return If members that changed cells can be moved
+   */
+  public boolean isTracking() {
+    return tracking;
+  }
+  
+  /**
+   * Move a member that changed cells during its last update into the bucket of its new cell.
+   * The member is swapped out of its old bucket, so this takes the same time however many members there are.
+   * Members of the same flock must be moved in the same order every time, so their buckets end up in the same order.
+   *
+   * @param member The member to move
+   */
+  void move(FlockMember member) {
+    if (!member.hasChangedCell()) {
+      return;
+    }
+    int cell = member.getGridCell();
+    int slot = member.getCellSlot();
+    int last = --bucketSizes[cell];
+    FlockMember swapped = buckets[cell][last];
+    buckets[cell][slot] = swapped;
+    swapped.setCellSlot(slot);
+    buckets[cell][last] = null;
+    addToBucket(member, member.getNextCell());
+  }
+  
+  /**
+   * Copy the positions and velocities of every member out of the buckets, grouped by cell.
+   * This is called after moving the members that changed cells.
+   */
+  public void refresh() {
+    memberCount = 0;
+    for (int cell = 0; cell < columns * rows; cell++) {
+      memberCount += bucketSizes[cell];
+    }
+    ensureCapacity(memberCount);
+    
+    int index = 0;
+    for (int cell = 0; cell < columns * rows; cell++) {
+      cellStart[cell] = index;
+      double centerX = getCellCenterX(cell);
+      double centerY = getCellCenterY(cell);
+      double totalX = 0, totalY = 0, totalVelocityX = 0, totalVelocityY = 0;
+      FlockMember[] bucket = buckets[cell];
+      for (int i = 0; i < bucketSizes[cell]; i++, index++) {
+        FlockMember member = bucket[i];
+        cellMembers[index] = member;
+        cellX[index] = member.getX();
+        cellY[index] = member.getY();
+        cellVelocityX[index] = member.getVelocityX();
+        cellVelocityY[index] = member.getVelocityY();
+        cellFlock[index] = member.getFlock();
+        
+        totalX += wrapX(cellX[index] - centerX);
+        totalY += wrapY(cellY[index] - centerY);
+        totalVelocityX += cellVelocityX[index];
+        totalVelocityY += cellVelocityY[index];
+      }
+      cellTotalX[cell] = totalX;
+      cellTotalY[cell] = totalY;
+      cellTotalVelocityX[cell] = totalVelocityX;
+      cellTotalVelocityY[cell] = totalVelocityY;
+    }
+    cellStart[columns * rows] = index;
+    
+    //drop references to members that are no longer in the grid
+    Arrays.fill(cellMembers, memberCount, cellMembers.length, null);
+  }
+  
+  /**
+   * Put members in the buckets of the cells they are in.
+   *
+   * @param members The flock members to put in the grid
+   */
+  private void track(Iterable<FlockMember> members) {
+    for (FlockMember member : members) {
+      addToBucket(member, getCell(member.getX(), member.getY()));
+    }
+    tracking = true;
+  }
+  
+  /**
+   * Add a member to the end of a cell's bucket.
+   *
+   * @param member The member
+   * @param cell The index of the cell
+   */
+  private void addToBucket(FlockMember member, int cell) {
+    FlockMember[] bucket = buckets[cell];
+    int size = bucketSizes[cell];
+    if (size == bucket.length) {
+      bucket = Arrays.copyOf(bucket, Math.max(4, size * 2));
+      buckets[cell] = bucket;
+    }
+    bucket[size] = member;
+    bucketSizes[cell] = size + 1;
+    member.keepInCell(this, cell, size);
+  }
+  
+  /**
+   * Empty every bucket, so the members in them no longer check which cell they are in.
+   */
+  private void clearBuckets() {
+    if (buckets == null) {
+      buckets = new FlockMember[columns * rows][];
+      bucketSizes = new int[columns * rows];
+      Arrays.fill(buckets, new FlockMember[0]);
+      return;
+    }
+    for (int cell = 0; cell < columns * rows; cell++) {
+      for (int i = 0; i < bucketSizes[cell]; i++) {
+        buckets[cell][i].keepInCell(null, -1, 0);
+        buckets[cell][i] = null;
+      }
+      bucketSizes[cell] = 0;
+    }
+  }
+  
+  /**
+   * Grow the arrays the members are copied into if they can't hold the given number of members.
+   *
+   * @param count The number of members
+   */
+  private void ensureCapacity(int count) {
+    if (cellMembers.length < count) {
+      cellMembers = new FlockMember[count];
+      cellX = new double[count];
+      cellY = new double[count];
+      cellVelocityX = new double[count];
+      cellVelocityY = new double[count];
+      cellFlock = new int[count];
+    }
+  }
+  
+  /**
+   * Get the cell containing the given position.
+   * Positions outside the game boundaries wrap around.
+   *
+   * @param x The x position
+   * @param y The y position
+   * @return The index of the cell
+   */
+  public int getCell(double x, double y) {
+    int column = Math.floorMod((int) Math.floor(x / cellWidth), columns);
+    int row = Math.floorMod((int) Math.floor(y / cellHeight), rows);
+    return row * columns + column;
+  }
+  
+  /**
+   * Get the number of cells in the grid.
+   *
+   * @return The number of cells
+   */
+  public int getCellCount() {
+    return columns * rows;
+  }
+  
+  /**
+   * Get the number of columns in the grid.
+   *
+   * @return The number of columns
+   */
+  public int getColumns() {
+    return columns;
+  }
+  
+  /**
+   * Get the number of rows in the grid.
+   *
+   * @return The number of rows
+   */
+  public int getRows() {
+    return rows;
+  }
+  
+  /**
+   * Get the width of a single cell.
+   *
+   * @return The width of a cell
+   */
+  public double getCellWidth() {
+    return cellWidth;
+  }
+  
+  /**
+   * Get the height of a single cell.
+   *
+   * @return The height of a cell
+   */
+  public double getCellHeight() {
+    return cellHeight;
+  }
+  
+  /**
+   * Get the column containing the given x position, without wrapping around the game boundaries.
+   *
+   * @param x The x position
+   * @return The column, which may be outside the grid
+   */
+  public int getColumn(double x) {
+    return (int) Math.floor(x / cellWidth);
+  }
+  
+  /**
+   * Get the row containing the given y position, without wrapping around the game boundaries.
+   *
+   * @param y The y position
+   * @return The row, which may be outside the grid
+   */
+  public int getRow(double y) {
+    return (int) Math.floor(y / cellHeight);
+  }
+  
+  /**
+   * Get the cell at the given column and row.
+   * Columns and rows outside the grid wrap around.
+   *
+   * @param column The column
+   * @param row The row
+   * @return The index of the cell
+   */
+  public int getCell(int column, int row) {
+    return Math.floorMod(row, rows) * columns + Math.floorMod(column, columns);
+  }
+  
+  /**
+   * Get the distinct cells surrounding the given cell, including the cell itself.
+   *
+   * @param cell The index of the cell
+   * @return The indices of the surrounding cells
+   */
+  public int[] getNeighborCells(int cell) {
+    return neighborCells[cell];
+  }
+  
+  /**
+   * Get the index of the first member in the given cell.
+   *
+   * @param cell The index of the cell
+   * @return The index of the first member in the cell
+   */
+  public int getCellStart(int cell) {
+    return cellStart[cell];
+  }
+  
+  /**
+   * Get the index after the last member in the given cell.
+   *
+   * @param cell The index of the cell
+   * @return The index after the last member in the cell
+   */
+  public int getCellEnd(int cell) {
+    return cellStart[cell + 1];
+  }
+  
+  /**
+   * Get the number of members in the given cell.
+   *
+   * @param cell The index of the cell
+   * @return The number of members in the cell
+   */
+  public int getCellMemberCount(int cell) {
+    return cellStart[cell + 1] - cellStart[cell];
+  }
+  
+  /**
+   * Get the x position of the center of the given cell.
+   *
+   * @param cell The index of the cell
+   * @return The x position of the center of the cell
+   */
+  public double getCellCenterX(int cell) {
+    return (cell % columns + .5) * cellWidth;
+  }
+  
+  /**
+   * Get the y position of the center of the given cell.
+   *
+   * @param cell The index of the cell
+   * @return The y position of the center of the cell
+   */
+  public double getCellCenterY(int cell) {
+    return (cell / columns + .5) * cellHeight;
+  }
+  
+  /**
+   * Get the total x offset of the members in the given cell from the center of the cell.
+   *
+   * @param cell The index of the cell
+   * @return The total x offset of the members
+   */
+  public double getCellTotalX(int cell) {
+    return cellTotalX[cell];
+  }
+  
+  /**
+   * Get the total y offset of the members in the given cell from the center of the cell.
+   *
+   * @param cell The index of the cell
+   * @return The total y offset of the members
+   */
+  public double getCellTotalY(int cell) {
+    return cellTotalY[cell];
+  }
+  
+  /**
+   * Get the total x velocity of the members in the given cell.
+   *
+   * @param cell The index of the cell
+   * @return The total x velocity of the members
+   */
+  public double getCellTotalVelocityX(int cell) {
+    return cellTotalVelocityX[cell];
+  }
+  
+  /**
+   * Get the total y velocity of the members in the given cell.
+   *
+   * @param cell The index of the cell
+   * @return The total y velocity of the members
+   */
+  public double getCellTotalVelocityY(int cell) {
+    return cellTotalVelocityY[cell];
+  }
+  
+  /**
+   * Get the member at the given index.
+   *
+   * @param index The index of the member, between a cell start and end
+   * @return The member at the index
+   */
+  public FlockMember getMember(int index) {
+    return cellMembers[index];
+  }
+  
+  /**
+   * Get the x position of the member at the given index when the grid was built.
+   *
+   * @param index The index of the member
+   * @return The x position of the member
+   */
+  public double getX(int index) {
+    return cellX[index];
+  }
+  
+  /**
+   * Get the y position of the member at the given index when the grid was built.
+   *
+   * @param index The index of the member
+   * @return The y position of the member
+   */
+  public double getY(int index) {
+    return cellY[index];
+  }
+  
+  /**
+   * Get the x velocity of the member at the given index when the grid was built.
+   *
+   * @param index The index of the member
+   * @return The x velocity of the member
+   */
+  public double getVelocityX(int index) {
+    return cellVelocityX[index];
+  }
+  
+  /**
+   * Get the y velocity of the member at the given index when the grid was built.
+   *
+   * @param index The index of the member
+   * @return The y velocity of the member
+   */
+  public double getVelocityY(int index) {
+    return cellVelocityY[index];
+  }
+  
+  /**
+   * Get the index of the flock of the member at the given index, in the FlockGroup sharing the grid.
+   *
+   * @param index The index of the member
+   * @return The index of the member's flock, or 0 if the grid isn't shared
+   */
+  public int getFlock(int index) {
+    return cellFlock[index];
+  }
+  
+  /**
+   * Get the number of members in the grid.
+   * Members are stored grouped by cell at indices [0, getMemberCount()).
+   *
+   * @return The number of members in the grid
+   */
+  public int getMemberCount() {
+    return memberCount;
+  }
+  
+  /**
+   * Get the shortest x distance between two positions, wrapping around the game boundaries.
+   *
+   * @param dx The x distance without wrapping
+   * @return The shortest x distance
+   */
+  public double wrapX(double dx) {
+    if (dx > gameSize.x / 2) {
+      return dx - gameSize.x;
+    }
+    if (dx < -gameSize.x / 2) {
+      return dx + gameSize.x;
+    }
+    return dx;
+  }
+  
+  /**
+   * Get the shortest y distance between two positions, wrapping around the game boundaries.
+   *
+   * @param dy The y distance without wrapping
+   * @return The shortest y distance
+   */
+  public double wrapY(double dy) {
+    if (dy > gameSize.y / 2) {
+      return dy - gameSize.y;
+    }
+    if (dy < -gameSize.y / 2) {
+      return dy + gameSize.y;
+    }
+    return dy;
+  }
+  
+  /**
+   * Get the shortest vector from one position to another, wrapping around the game boundaries.
+   *
+   * @param from The starting position
+   * @param to The ending position
+   * @return The shortest vector from the starting position to the ending position
+   */
+  public Vector2 offset(Vector2 from, Vector2 to) {
+    return offsetInto(from, to, new Vector2(0, 0));
+  }
+  
+  /**
+   * Set the given vector to the shortest vector from one position to another,
+   * wrapping around the game boundaries.
+   *
+   * @param from The starting position
+   * @param to The ending position
+   * @param out The vector to store the result in
+   * @return The given vector
+   */
+  public Vector2 offsetInto(Vector2 from, Vector2 to, Vector2 out) {
+    return out.set(wrapX(to.x - from.x), wrapY(to.y - from.y));
+  }
+  
+}
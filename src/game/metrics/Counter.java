@@ -0,0 +1,31 @@
+package game.metrics;
+
+/**
+ * The values counted once per tick.
+ *
+ * @author tobymoszer
+ */
+public enum Counter {
+  
+  /**
+   * The number of flock members
+   */
+  FLOCK_MEMBERS,
+  
+  /**
+   * The number of projectiles from the player and the flock
+   */
+  PROJECTILES,
+  
+  /**
+   * The number of projectile and flock member pairs checked for collisions
+   */
+  COLLISION_CHECKS,
+  
+  /**
+   * The number of bytes allocated by the thread running the tick
+   */
+  ALLOCATED_BYTES,
+  ;
+  
+}
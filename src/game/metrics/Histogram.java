@@ -0,0 +1,124 @@
+package game.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of positive values with logarithmic buckets, like an HdrHistogram.
+ * Every power of two is split into {@value #SUB_BUCKETS} linear buckets,
+ * so any value is counted within about 6% of its real value using a fixed amount of memory.
+ * Recording is lock free and can happen on any thread.
+ *
+ * @author tobymoszer
+ */
+public class Histogram {
+  
+  /**
+   * The number of bits used for the linear buckets in each power of two
+   */
+  private static final int SUB_BUCKET_BITS = 4;
+  
+  /**
+   * The number of linear buckets in each power of two
+   */
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  
+  /**
+   * The number of buckets needed to hold any positive long
+   */
+  static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  
+  /**
+   * The number of values counted in each bucket
+   */
+  private AtomicLongArray counts;
+  
+  /**
+   * Construct a new empty Histogram.
+   */
+  public Histogram() {
+    counts = new AtomicLongArray(BUCKETS);
+  }
+  
+  /**
+   * Count a value. Negative values are counted as 0.
+   *
+   * @param value The value to count
+   */
+  public void record(long value) {
+    counts.incrementAndGet(getBucket(Math.max(0, value)));
+  }
+  
+  /**
+   * Copy the count of every bucket.
+   *
+   * @param out The array to copy into, with a length of at least {@link #BUCKETS}
+   */
+  void copyCounts(long[] out) {
+    for (int i = 0; i < BUCKETS; i++) {
+      out[i] = counts.get(i);
+    }
+  }
+  
+  /**
+   * Get a snapshot of every value counted so far.
+   *
+   * @return The snapshot
+   */
+  public HistogramSnapshot getSnapshot() {
+    long[] copy = new long[BUCKETS];
+    copyCounts(copy);
+    return new HistogramSnapshot(copy);
+  }
+  
+  /**
+   * Forget every value counted so far.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+  }
+  
+  /**
+   * Get the bucket a value is counted in.
+   *
+   * @param value The positive value
+   * @return The index of the bucket
+   */
+  static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+  
+  /**
+   * Get the smallest value counted in a bucket.
+   *
+   * @param bucket The index of the bucket
+   * @return The smallest value in the bucket
+   */
+  static long getLowestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+  }
+  
+  /**
+   * Get the largest value counted in a bucket.
+   *
+   * @param bucket The index of the bucket
+   * @return The largest value in the bucket
+   */
+  static long getHighestValue(int bucket) {
+    if (bucket + 1 >= BUCKETS) {
+      return Long.MAX_VALUE;
+    }
+    return getLowestValue(bucket + 1) - 1;
+  }
+  
+}
@@ -0,0 +1,105 @@
+package game.metrics;
+
+/**
+ * The counts of a Histogram at one point in time, or the difference between two points in time.
+ *
+ * @author tobymoszer
+ */
+public class HistogramSnapshot {
+  
+  /**
+   * The number of values counted in each bucket
+   */
+  private long[] counts;
+  
+  /**
+   * The total number of values counted
+   */
+  private long count;
+  
+  /**
+   * Construct a new HistogramSnapshot.
+   *
+   * @param counts The number of values counted in each bucket, which is not copied
+   */
+  HistogramSnapshot(long[] counts) {
+    this.counts = counts;
+    for (long bucketCount : counts) {
+      count += bucketCount;
+    }
+  }
+  
+  /**
+   * Get a snapshot of the values counted between an older snapshot of the same histogram and this one.
+   *
+   * @param older The older snapshot
+   * @return The snapshot of the values counted in between
+   */
+  public HistogramSnapshot minus(HistogramSnapshot older) {
+    long[] newCounts = new long[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      newCounts[i] = counts[i] - older.counts[i];
+    }
+    return new HistogramSnapshot(newCounts);
+  }
+  
+  /**
+   * Get the number of values counted.
+   *
+   * @return The number of values
+   */
+  public long getCount() {
+    return count;
+  }
+  
+  /**
+   * Get the mean of the values counted, using the middle of each bucket.
+   *
+   * @return The mean, or 0 if nothing was counted
+   */
+  public double getMean() {
+    if (count == 0) {
+      return 0;
+    }
+    double total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        total += counts[i] * ((Histogram.getLowestValue(i) + (double) Histogram.getHighestValue(i)) / 2);
+      }
+    }
+    return total / count;
+  }
+  
+  /**
+   * Get the value that the given percentage of values are at or below.
+   *
+   * @param percentile The percentage, from 0 to 100
+   * @return The highest value of the bucket containing the percentile, or 0 if nothing was counted
+   */
+  public long getValueAtPercentile(double percentile) {
+    long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= target) {
+        return Histogram.getHighestValue(i);
+      }
+    }
+    return 0;
+  }
+  
+  /**
+   * Get the largest value counted.
+   *
+   * @return The highest value of the highest bucket with a value, or 0 if nothing was counted
+   */
+  public long getMax() {
+    for (int i = counts.length - 1; i >= 0; i--) {
+      if (counts[i] != 0) {
+        return Histogram.getHighestValue(i);
+      }
+    }
+    return 0;
+  }
+  
+}
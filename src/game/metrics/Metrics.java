@@ -0,0 +1,171 @@
+package game.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Timing and counting of every tick and frame.
+ * <p>
+ * Metrics are off unless the game is run with -Dflock.metrics=true.
+ * {@link #ENABLED} is a constant, so when metrics are off every {@code if (Metrics.ENABLED)} block
+ * is removed by the JIT compiler and costs nothing.
+ * When metrics are on, they are published as the JMX MXBean {@value #OBJECT_NAME},
+ * and also logged every few seconds if run with -Dflock.metrics.log=seconds.
+ * <p>
+ * Phases are timed like this:
+ * <pre>
+ *   long start = Metrics.start();
+ *   ...
+ *   Metrics.record(Phase.FLOCK_FORCES, start);
+ * </pre>
+ *
+ * @author tobymoszer
+ */
+public final class Metrics {
+  
+  /**
+   * If metrics are recorded
+   */
+  public static final boolean ENABLED = Boolean.getBoolean("flock.metrics");
+  
+  /**
+   * The name the MXBean is registered under
+   */
+  public static final String OBJECT_NAME = "game:type=Metrics";
+  
+  /**
+   * The time each phase takes in nanoseconds
+   */
+  private static final Histogram[] PHASES = new Histogram[Phase.values().length];
+  
+  /**
+   * The value of each counter every tick
+   */
+  private static final Histogram[] COUNTERS = new Histogram[Counter.values().length];
+  
+  /**
+   * The JVM's thread MXBean, used to measure allocations
+   */
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  
+  static {
+    for (int i = 0; i < PHASES.length; i++) {
+      PHASES[i] = new Histogram();
+    }
+    for (int i = 0; i < COUNTERS.length; i++) {
+      COUNTERS[i] = new Histogram();
+    }
+    if (ENABLED) {
+      register();
+    }
+  }
+  
+  private Metrics() {
+  
+  }
+  
+  /**
+   * Register the MXBean, and start logging if a log interval is set.
+   */
+  private static void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      System.err.println("Could not register metrics MXBean");
+      e.printStackTrace();
+    }
+    
+    int logInterval = Integer.getInteger("flock.metrics.log", 0);
+    if (logInterval > 0) {
+      ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-log");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.scheduleAtFixedRate(new MetricsLogger(), logInterval, logInterval, TimeUnit.SECONDS);
+    }
+  }
+  
+  /**
+   * Get the time to start timing a phase from.
+   *
+   * @return The current time in nanoseconds, or 0 if metrics are off
+   */
+  public static long start() {
+    return ENABLED ? System.nanoTime() : 0;
+  }
+  
+  /**
+   * Record the time a phase took.
+   *
+   * @param phase The phase
+   * @param start The time returned by {@link #start()} when the phase started
+   */
+  public static void record(Phase phase, long start) {
+    if (ENABLED) {
+      PHASES[phase.ordinal()].record(System.nanoTime() - start);
+    }
+  }
+  
+  /**
+   * Record the value of a counter for this tick.
+   *
+   * @param counter The counter
+   * @param value The value of the counter
+   */
+  public static void count(Counter counter, long value) {
+    if (ENABLED) {
+      COUNTERS[counter.ordinal()].record(value);
+    }
+  }
+  
+  /**
+   * Get the number of bytes allocated by the current thread so far.
+   *
+   * @return The number of bytes, or 0 if metrics are off or the JVM can't measure it
+   */
+  public static long getAllocatedBytes() {
+    if (ENABLED && THREADS instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+  
+  /**
+   * Get the histogram of the time a phase takes in nanoseconds.
+   *
+   * @param phase The phase
+   * @return The histogram of the phase
+   */
+  public static Histogram getHistogram(Phase phase) {
+    return PHASES[phase.ordinal()];
+  }
+  
+  /**
+   * Get the histogram of the value of a counter every tick.
+   *
+   * @param counter The counter
+   * @return The histogram of the counter
+   */
+  public static Histogram getHistogram(Counter counter) {
+    return COUNTERS[counter.ordinal()];
+  }
+  
+  /**
+   * Forget everything recorded so far.
+   */
+  public static void reset() {
+    for (Histogram histogram : PHASES) {
+      histogram.reset();
+    }
+    for (Histogram histogram : COUNTERS) {
+      histogram.reset();
+    }
+  }
+  
+}
@@ -0,0 +1,83 @@
+package game.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The MXBean publishing everything recorded since the metrics were last reset.
+ *
+ * @author tobymoszer
+ */
+class MetricsBean implements MetricsMXBean {
+  
+  @Override
+  public long getTicks() {
+    return Metrics.getHistogram(Phase.GAME_UPDATE).getSnapshot().getCount();
+  }
+  
+  @Override
+  public Map<String, Double> getMeanMicros() {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (Phase phase : Phase.values()) {
+      values.put(phase.name(), Metrics.getHistogram(phase).getSnapshot().getMean() / 1000);
+    }
+    return values;
+  }
+  
+  @Override
+  public Map<String, Double> getP50Micros() {
+    return getPercentileMicros(50);
+  }
+  
+  @Override
+  public Map<String, Double> getP99Micros() {
+    return getPercentileMicros(99);
+  }
+  
+  @Override
+  public Map<String, Double> getMaxMicros() {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (Phase phase : Phase.values()) {
+      values.put(phase.name(), Metrics.getHistogram(phase).getSnapshot().getMax() / 1000.0);
+    }
+    return values;
+  }
+  
+  @Override
+  public Map<String, Double> getMeanCounters() {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (Counter counter : Counter.values()) {
+      values.put(counter.name(), Metrics.getHistogram(counter).getSnapshot().getMean());
+    }
+    return values;
+  }
+  
+  @Override
+  public Map<String, Long> getMaxCounters() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    for (Counter counter : Counter.values()) {
+      values.put(counter.name(), Metrics.getHistogram(counter).getSnapshot().getMax());
+    }
+    return values;
+  }
+  
+  @Override
+  public void reset() {
+    Metrics.reset();
+  }
+  
+  /**
+   * Get the time of every phase at a percentile.
+   *
+   * @param percentile The percentile, from 0 to 100
+   * @return The time of each phase in microseconds
+   */
+  private Map<String, Double> getPercentileMicros(double percentile) {
+    Map<String, Double> values = new LinkedHashMap<>();
+    for (Phase phase : Phase.values()) {
+      values.put(phase.name(), Metrics.getHistogram(phase).getSnapshot().getValueAtPercentile(percentile) / 1000.0);
+    }
+    return values;
+  }
+  
+}
@@ -0,0 +1,69 @@
+package game.metrics;
+
+/**
+ * Logs a line with the ticks per second and the time of every phase since the last line.
+ *
+ * @author tobymoszer
+ */
+class MetricsLogger implements Runnable {
+  
+  /**
+   * The snapshots taken at the last log line
+   */
+  private HistogramSnapshot[] phases, counters;
+  
+  /**
+   * The time of the last log line in nanoseconds
+   */
+  private long lastTime;
+  
+  /**
+   * Construct a new MetricsLogger, starting from everything recorded so far.
+   */
+  MetricsLogger() {
+    phases = new HistogramSnapshot[Phase.values().length];
+    counters = new HistogramSnapshot[Counter.values().length];
+    for (Phase phase : Phase.values()) {
+      phases[phase.ordinal()] = Metrics.getHistogram(phase).getSnapshot();
+    }
+    for (Counter counter : Counter.values()) {
+      counters[counter.ordinal()] = Metrics.getHistogram(counter).getSnapshot();
+    }
+    lastTime = System.nanoTime();
+  }
+  
+  /**
+   * Log the metrics recorded since the last line.
+   */
+  @Override
+  public void run() {
+    long time = System.nanoTime();
+    double seconds = (time - lastTime) / 1000000000.0;
+    lastTime = time;
+    
+    StringBuilder line = new StringBuilder("metrics:");
+    for (Phase phase : Phase.values()) {
+      HistogramSnapshot current = Metrics.getHistogram(phase).getSnapshot();
+      HistogramSnapshot interval = current.minus(phases[phase.ordinal()]);
+      phases[phase.ordinal()] = current;
+      if (phase == Phase.GAME_UPDATE) {
+        line.append(String.format(" ticks/s=%.0f", interval.getCount() / seconds));
+      }
+      line.append(String.format(
+          " %s=%.0f/%.0f/%.0fus",
+          phase.name().toLowerCase(),
+          interval.getMean() / 1000,
+          interval.getValueAtPercentile(99) / 1000.0,
+          interval.getMax() / 1000.0
+      ));
+    }
+    for (Counter counter : Counter.values()) {
+      HistogramSnapshot current = Metrics.getHistogram(counter).getSnapshot();
+      HistogramSnapshot interval = current.minus(counters[counter.ordinal()]);
+      counters[counter.ordinal()] = current;
+      line.append(String.format(" %s=%.0f", counter.name().toLowerCase(), interval.getMean()));
+    }
+    System.out.println(line);
+  }
+  
+}
@@ -0,0 +1,29 @@
+package game.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics published over JMX.
+ * Times are in microseconds, and every map is keyed by the name of a phase or counter.
+ *
+ * @author tobymoszer
+ */
+public interface MetricsMXBean {
+  
+  long getTicks();
+  
+  Map<String, Double> getMeanMicros();
+  
+  Map<String, Double> getP50Micros();
+  
+  Map<String, Double> getP99Micros();
+  
+  Map<String, Double> getMaxMicros();
+  
+  Map<String, Double> getMeanCounters();
+  
+  Map<String, Long> getMaxCounters();
+  
+  void reset();
+  
+}
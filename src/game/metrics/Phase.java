@@ -0,0 +1,56 @@
+package game.metrics;
+
+/**
+ * The timed phases of a tick and a frame.
+ *
+ * @author tobymoszer
+ */
+public enum Phase {
+  
+  /**
+   * A whole call to Game.update
+   */
+  GAME_UPDATE,
+  
+  /**
+   * Calculating the boids forces of every flock member
+   */
+  FLOCK_FORCES,
+  
+  /**
+   * Adding the forces of the flock's attack type
+   */
+  FLOCK_ATTACK,
+  
+  /**
+   * Integrating the movement of every flock member
+   */
+  FLOCK_INTEGRATE,
+  
+  /**
+   * Moving every projectile
+   */
+  PROJECTILE_UPDATE,
+  
+  /**
+   * Checking projectiles against the flock and the player
+   */
+  COLLISION,
+  
+  /**
+   * Removing hit projectiles and applying every spawn and despawn
+   */
+  REMOVAL,
+  
+  /**
+   * Copying the game into a frame for the render thread
+   */
+  FRAME_SNAPSHOT,
+  
+  /**
+   * A whole frame drawn by GameCanvas.drawFrame
+   */
+  PAINT,
+  ;
+  
+}
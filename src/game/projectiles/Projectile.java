@@ -1,43 +1,51 @@
 package game.projectiles;
 
-import game.GameDrawable;
 import game.GameMovable;
 import game.vectors.Vector2;
 
-import java.awt.Color;
-import java.awt.Graphics;
+import java.nio.ByteBuffer;
 
 /**
  * A Projectile shot by any Game element.
  *
  * @author tobymoszer
  */
-public class Projectile implements GameMovable, GameDrawable {
+public class Projectile implements GameMovable {
   
   /**
    * The position of the projectile
    */
   private Vector2 position;
   
+  /**
+   * The position of the projectile before the last update
+   */
+  private Vector2 previousPosition;
+  
   /**
    * The direction the projectile is moving in
    */
   private Vector2 direction;
   
   /**
-   * The speed the projectile is traveling at
+   * The time the projectile has existed in seconds
    */
-  private final int SPEED = 500;
+  private float age = 0;
   
   /**
-   * The size of the projectile on the screen
+   * If the projectile has been removed from the game
    */
-  public final int SIZE = 10;
+  private boolean removed = false;
   
   /**
-   * The color of the projectile
+   * The speed the projectile is traveling at
    */
-  private Color color = Color.WHITE;
+  private final int SPEED = 500;
+  
+  /**
+   * The size of the projectile on the screen
+   */
+  public static final int SIZE = 10;
   
   /**
    * Construct a new projectile.
@@ -48,6 +56,7 @@ public class Projectile implements GameMovable, GameDrawable {
   public Projectile(Vector2 position, Vector2 direction) {
     this.position = position;
     this.direction = direction;
+    previousPosition = position.copy();
   }
   
   /**
@@ -57,7 +66,91 @@ public class Projectile implements GameMovable, GameDrawable {
    */
   @Override
   public void update(float time) {
-    position.add(direction.times(time).times(SPEED));
+    previousPosition.set(position);
+    position.addScaled(direction, time * SPEED);
+    age += time;
+  }
+  
+  /**
+   * Set up the projectile again, so it can be reused after being removed.
+   *
+   * @param x The x position
+   * @param y The y position
+   * @param directionX The x direction for the projectile to travel in
+   * @param directionY The y direction for the projectile to travel in
+   */
+  void set(double x, double y, double directionX, double directionY) {
+    position.set(x, y);
+    previousPosition.set(x, y);
+    direction.set(directionX, directionY);
+    age = 0;
+    removed = false;
+  }
+  
+  /**
+   * The number of bytes written by {@link #writeState(ByteBuffer)}
+   */
+  static final int STATE_SIZE = 52;
+  
+  /**
+   * Write the state of the projectile to a buffer.
+   *
+   * @param buffer The buffer to write to
+   */
+  void writeState(ByteBuffer buffer) {
+    position.write(buffer);
+    previousPosition.write(buffer);
+    direction.write(buffer);
+    buffer.putFloat(age);
+  }
+  
+  /**
+   * Read a state written by {@link #writeState(ByteBuffer)} from a buffer.
+   *
+   * @param buffer The buffer to read from
+   */
+  void readState(ByteBuffer buffer) {
+    position.read(buffer);
+    previousPosition.read(buffer);
+    direction.read(buffer);
+    age = buffer.getFloat();
+    removed = false;
+  }
+  
+  /**
+   * Get the time the projectile has existed.
+   *
+   * @return The age of the projectile in seconds
+   */
+  public float getAge() {
+    return age;
+  }
+  
+  /**
+   * Check if the projectile is completely outside of the given boundaries.
+   *
+   * @param bounds The size of the boundaries
+   * @return If the projectile is outside the boundaries
+   */
+  public boolean isOutside(Vector2 bounds) {
+    return position.x < -SIZE || position.y < -SIZE ||
+        position.x > bounds.x || position.y > bounds.y;
+  }
+  
+  /**
+   * Check if the projectile has been removed from the game.
+   *
+   * @return If the projectile has been removed
+   */
+  public boolean isRemoved() {
+    return removed;
+  }
+  
+  /**
+   * Mark the projectile as removed from the game.
+   */
+  void remove() {
+    removed = true;
   }
   
   /**
@@ -78,24 +171,38 @@ public class Projectile implements GameMovable, GameDrawable {
   }
   
   /**
-   * Paint the projectile on the screen.
+   * Get the x position of the projectile.
    *
-   * @param g The Graphics to paint to
+   * @return The projectile's x position
    */
-  @Override
-  public void paint(Graphics g) {
-    g.setColor(color);
-    g.fillOval((int) position.x, (int) position.y, SIZE, SIZE);
+  public double getX() {
+    return position.x;
+  }
+  
+  /**
+   * Get the y position of the projectile.
+   *
+   * @return The projectile's y position
+   */
+  public double getY() {
+    return position.y;
+  }
+  
+  /**
+   * Get the x position of the projectile before the last update.
+   *
+   * @return The projectile's previous x position
+   */
+  public double getPreviousX() {
+    return previousPosition.x;
   }
   
   /**
-   * Paint the projectile on the screen with the given color.
+   * Get the y position of the projectile before the last update.
    *
-   * @param g The Graphics to paint to
-   * @param color The Color to paint the projectile with
+   * @return The projectile's previous y position
    */
-  public void paint(Graphics g, Color color) {
-    g.setColor(color);
-    g.fillOval((int) position.x, (int) position.y, SIZE, SIZE);
+  public double getPreviousY() {
+    return previousPosition.y;
   }
 }
@@ -0,0 +1,198 @@
+package game.projectiles;
+
+import game.EntityStore;
+import game.ProjectileListener;
+import game.vectors.Vector2;
+
+import java.nio.ByteBuffer;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * All projectiles of one kind in the game.
+ * Projectiles that leave the game boundaries or live too long are culled,
+ * and removed projectiles are returned to a pool to be reused.
+ * New and removed projectiles are applied together when changes are applied.
+ *
+ * @author tobymoszer
+ */
+public class ProjectileManager implements ProjectileListener, Iterable<Projectile> {
+  
+  /**
+   * All projectiles in the game
+   */
+  private EntityStore<Projectile> projectiles;
+  
+  /**
+   * The pool removed projectiles are returned to and new projectiles are taken from
+   */
+  private ProjectilePool pool;
+  
+  /**
+   * The size of the game boundaries
+   */
+  private Vector2 gameSize;
+  
+  /**
+   * The maximum time a projectile can exist in seconds
+   */
+  private final float MAX_LIFETIME = 10;
+  
+  /**
+   * Construct a new ProjectileManager.
+   *
+   * @param gameSize The size of the game boundaries
+   */
+  public ProjectileManager(Vector2 gameSize) {
+    this(gameSize, new ProjectilePool());
+  }
+  
+  /**
+   * Construct a new ProjectileManager.
+   *
+   * @param gameSize The size of the game boundaries
+   * @param pool The pool to take new projectiles from and return removed projectiles to
+   */
+  public ProjectileManager(Vector2 gameSize, ProjectilePool pool) {
+    this.gameSize = gameSize;
+    this.pool = pool;
+    projectiles = new EntityStore<>(pool::free);
+  }
+  
+  /**
+   * Add a projectile.
+   *
+   * @param projectile The projectile to be added
+   */
+  @Override
+  public void addProjectile(Projectile projectile) {
+    projectiles.spawn(projectile);
+  }
+  
+  /**
+   * Add a projectile from the pool.
+   *
+   * @param x The x position the projectile is fired from
+   * @param y The y position the projectile is fired from
+   * @param directionX The x direction for the projectile to travel in
+   * @param directionY The y direction for the projectile to travel in
+   */
+  @Override
+  public void addProjectile(double x, double y, double directionX, double directionY) {
+    projectiles.spawn(pool.obtain(x, y, directionX, directionY));
+  }
+  
+  /**
+   * Update all projectiles, and remove the ones that have left the game boundaries or lived too long.
+   * Projectiles that have been removed are not updated.
+   *
+   * @param time The amount of time since the last update in seconds
+   */
+  public void update(float time) {
+    for (Projectile projectile : projectiles) {
+      if (projectile.isRemoved()) {
+        continue;
+      }
+      projectile.update(time);
+      if (projectile.getAge() > MAX_LIFETIME || projectile.isOutside(gameSize)) {
+        remove(projectile);
+      }
+    }
+  }
+  
+  /**
+   * Remove the given projectile when changes are next applied.
+   *
+   * @param projectile The projectile to remove
+   */
+  public void remove(Projectile projectile) {
+    projectile.remove();
+    projectiles.despawn(projectile);
+  }
+  
+  /**
+   * Remove the given projectiles when changes are next applied.
+   *
+   * @param removeProjectiles The projectiles to remove
+   */
+  public void remove(Collection<Projectile> removeProjectiles) {
+    for (Projectile projectile : removeProjectiles) {
+      remove(projectile);
+    }
+  }
+  
+  /**
+   * Remove all projectiles when changes are next applied.
+   */
+  public void clear() {
+    projectiles.clear();
+  }
+  
+  /**
+   * Add and remove all queued projectiles at once.
+   * Removed projectiles are returned to the pool.
+   */
+  public void applyChanges() {
+    projectiles.applyChanges();
+  }
+  
+  /**
+   * Write the state of all projectiles to a buffer.
+   * This should only be called between updates, after changes have been applied.
+   *
+   * @param buffer The buffer to write to
+   */
+  public void writeState(ByteBuffer buffer) {
+    buffer.putInt(projectiles.size());
+    for (Projectile projectile : projectiles) {
+      projectile.writeState(buffer);
+    }
+  }
+  
+  /**
+   * Get the number of bytes {@link #writeState(ByteBuffer)} would write right now.
+   *
+   * @return The size of the state in bytes
+   */
+  public int getStateSize() {
+    return 4 + projectiles.size() * Projectile.STATE_SIZE;
+  }
+  
+  /**
+   * Replace all projectiles with a state written by {@link #writeState(ByteBuffer)}.
+   *
+   * @param buffer The buffer to read from
+   */
+  public void readState(ByteBuffer buffer) {
+    projectiles.clear();
+    projectiles.applyChanges();
+    int count = buffer.getInt();
+    for (int i = 0; i < count; i++) {
+      Projectile projectile = pool.obtain(0, 0, 0, 0);
+      projectile.readState(buffer);
+      projectiles.spawn(projectile);
+    }
+    projectiles.applyChanges();
+  }
+  
+  /**
+   * Get the number of projectiles.
+   *
+   * @return The number of projectiles
+   */
+  public int size() {
+    return projectiles.size();
+  }
+  
+  /**
+   * Get an iterator over all projectiles, for use during the game update.
+   *
+   * @return An iterator over all projectiles
+   */
+  @Override
+  public Iterator<Projectile> iterator() {
+    return projectiles.iterator();
+  }
+  
+}
@@ -0,0 +1,64 @@
+package game.projectiles;
+
+import game.vectors.Vector2;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of projectiles that are no longer in the game,
+ * so new projectiles can reuse them instead of being allocated.
+ *
+ * @author tobymoszer
+ */
+public class ProjectilePool {
+  
+  /**
+   * The projectiles ready to be reused
+   */
+  private ArrayDeque<Projectile> free;
+  
+  /**
+   * Construct a new, empty ProjectilePool.
+   */
+  public ProjectilePool() {
+    free = new ArrayDeque<>();
+  }
+  
+  /**
+   * Get a projectile at the given position traveling in the given direction.
+   * A free projectile is reused if there is one, otherwise a new projectile is created.
+   *
+   * @param x The x position
+   * @param y The y position
+   * @param directionX The x direction for the projectile to travel in
+   * @param directionY The y direction for the projectile to travel in
+   * @return The projectile
+   */
+  public Projectile obtain(double x, double y, double directionX, double directionY) {
+    Projectile projectile = free.poll();
+    if (projectile == null) {
+      return new Projectile(new Vector2(x, y), new Vector2(directionX, directionY));
+    }
+    projectile.set(x, y, directionX, directionY);
+    return projectile;
+  }
+  
+  /**
+   * Return a projectile that is no longer in the game to the pool.
+   *
+   * @param projectile The projectile to reuse
+   */
+  public void free(Projectile projectile) {
+    free.push(projectile);
+  }
+  
+  /**
+   * Get the number of projectiles ready to be reused.
+   *
+   * @return The number of free projectiles
+   */
+  public int getFreeCount() {
+    return free.size();
+  }
+  
+}
@@ -0,0 +1,211 @@
+package game.random;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fast, seeded random number generator for the simulation.
+ * This uses the SplitMix64 algorithm, the same one used by java.util.SplittableRandom,
+ * but its state can be read and restored so a running simulation can be saved and replayed.
+ * <p>
+ * A GameRandom is not thread safe. Each flock, flock member, or worker thread should
+ * {@link #split()} its own generator instead of sharing one, which keeps runs reproducible
+ * no matter which thread does the work.
+ *
+ * @author tobymoszer
+ */
+public class GameRandom {
+  
+  /**
+   * The default gamma, an odd number close to 2^64 divided by the golden ratio
+   */
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  
+  /**
+   * The scale that turns the top 53 bits of a long into a double in [0, 1)
+   */
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+  
+  /**
+   * The scale that turns the top 24 bits of a long into a float in [0, 1)
+   */
+  private static final float FLOAT_UNIT = 0x1.0p-24f;
+  
+  /**
+   * The number of bytes written by {@link #writeState(ByteBuffer)}
+   */
+  public static final int STATE_SIZE = 16;
+  
+  /**
+   * The current state, advanced by gamma every time a number is generated
+   */
+  private long seed;
+  
+  /**
+   * The odd amount the state is advanced by, which differs between split generators
+   */
+  private long gamma;
+  
+  /**
+   * Construct a new GameRandom seeded from the current time.
+   * Use {@link #GameRandom(long)} instead when the numbers need to be reproducible.
+   */
+  public GameRandom() {
+    this(mix64(System.nanoTime()));
+  }
+  
+  /**
+   * Construct a new GameRandom from the given seed.
+   * Generators with the same seed always produce the same numbers.
+   *
+   * @param seed The seed
+   */
+  public GameRandom(long seed) {
+    this(seed, GOLDEN_GAMMA);
+  }
+  
+  /**
+   * Construct a new GameRandom from the given state.
+   *
+   * @param seed The current state
+   * @param gamma The odd amount the state is advanced by
+   */
+  public GameRandom(long seed, long gamma) {
+    this.seed = seed;
+    this.gamma = gamma | 1;
+  }
+  
+  /**
+   * Create a new generator whose numbers are independent of this one.
+   * This advances this generator, so splitting is reproducible as well.
+   *
+   * @return The new generator
+   */
+  public GameRandom split() {
+    return new GameRandom(nextLong(), mixGamma(nextSeed()));
+  }
+  
+  /**
+   * Get a random long.
+   *
+   * @return A random long
+   */
+  public long nextLong() {
+    return mix64(nextSeed());
+  }
+  
+  /**
+   * Get a random int between 0 (inclusive) and the given bound (exclusive).
+   *
+   * @param bound The upper bound, which must be positive
+   * @return A random int in [0, bound)
+   */
+  public int nextInt(int bound) {
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive");
+    }
+    return (int) ((nextLong() >>> 33) * bound >>> 31);
+  }
+  
+  /**
+   * Get a random double between 0 (inclusive) and 1 (exclusive).
+   *
+   * @return A random double in [0, 1)
+   */
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+  
+  /**
+   * Get a random float between 0 (inclusive) and 1 (exclusive).
+   *
+   * @return A random float in [0, 1)
+   */
+  public float nextFloat() {
+    return (nextLong() >>> 40) * FLOAT_UNIT;
+  }
+  
+  /**
+   * Get the current state of the generator, to be restored with {@link #setState(long, long)}.
+   *
+   * @return The current state
+   */
+  public long getSeed() {
+    return seed;
+  }
+  
+  /**
+   * Get the amount the state is advanced by, to be restored with {@link #setState(long, long)}.
+   *
+   * @return The odd amount the state is advanced by
+   */
+  public long getGamma() {
+    return gamma;
+  }
+  
+  /**
+   * Restore a state read from {@link #getSeed()} and {@link #getGamma()}.
+   *
+   * @param seed The current state
+   * @param gamma The odd amount the state is advanced by
+   */
+  public void setState(long seed, long gamma) {
+    this.seed = seed;
+    this.gamma = gamma | 1;
+  }
+  
+  /**
+   * Write the state of the generator to a buffer.
+   *
+   * @param buffer The buffer to write to
+   */
+  public void writeState(ByteBuffer buffer) {
+    buffer.putLong(seed);
+    buffer.putLong(gamma);
+  }
+  
+  /**
+   * Read a state written by {@link #writeState(ByteBuffer)} from a buffer.
+   *
+   * @param buffer The buffer to read from
+   */
+  public void readState(ByteBuffer buffer) {
+    setState(buffer.getLong(), buffer.getLong());
+  }
+  
+  /**
+   * Advance the state.
+   *
+   * @return The new state
+   */
+  private long nextSeed() {
+    return seed += gamma;
+  }
+  
+  /**
+   * Scramble the bits of a state into a random number.
+   *
+   * @param z The state
+   * @return The random number
+   */
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+  
+  /**
+   * Scramble the bits of a state into a gamma for a split generator.
+   * Gammas with too few bit transitions produce poor numbers, so those are flipped.
+   *
+   * @param z The state
+   * @return An odd gamma
+   */
+  private static long mixGamma(long z) {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    z = (z ^ (z >>> 33)) | 1L;
+    int transitions = Long.bitCount(z ^ (z >>> 1));
+    return (transitions < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+  }
+  
+}
@@ -0,0 +1,85 @@
+package game.render;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+
+/**
+ * The pre-rendered sprites of a boid in one color,
+ * a circle with a small circle in front of it indicating it's direction.
+ *
+ * @author tobymoszer
+ */
+public class BoidSprite {
+  
+  /**
+   * The sprites of the body and the direction indicator
+   */
+  private Image body, indicator;
+  
+  /**
+   * The size of the boid's body
+   */
+  private int size;
+  
+  /**
+   * The color of the boid, as RGB
+   */
+  private int rgb;
+  
+  /**
+   * Construct a new BoidSprite.
+   *
+   * @param color The color of the boid
+   * @param size The size of the boid's body
+   */
+  BoidSprite(Color color, int size) {
+    this.size = size;
+    rgb = color.getRGB();
+    body = SpriteCache.getCircle(color, size);
+    indicator = SpriteCache.getCircle(color, size/3);
+  }
+  
+  /**
+   * Draw the boid.
+   *
+   * @param g The Graphics to draw to
+   * @param x The x position of the boid's body
+   * @param y The y position of the boid's body
+   * @param velocityX The x velocity of the boid
+   * @param velocityY The y velocity of the boid
+   */
+  public void draw(Graphics g, int x, int y, double velocityX, double velocityY) {
+    g.drawImage(body, x, y, null);
+    
+    double scale = size * 1.5 / Math.sqrt(velocityX*velocityX + velocityY*velocityY);
+    g.drawImage(
+        indicator,
+        (int) (x + velocityX * scale) + size/2,
+        (int) (y + velocityY * scale) + size/2,
+        null
+    );
+  }
+  
+  /**
+   * Draw the boid with a software renderer, in the same place as {@link #draw(Graphics, int, int, double, double)}.
+   *
+   * @param renderer The renderer to draw with
+   * @param x The x position of the boid's body
+   * @param y The y position of the boid's body
+   * @param velocityX The x velocity of the boid
+   * @param velocityY The y velocity of the boid
+   */
+  void draw(SoftwareRenderer renderer, int x, int y, double velocityX, double velocityY) {
+    renderer.addCircle(x, y, size, rgb);
+    
+    double scale = size * 1.5 / Math.sqrt(velocityX*velocityX + velocityY*velocityY);
+    renderer.addCircle(
+        (int) (x + velocityX * scale) + size/2,
+        (int) (y + velocityY * scale) + size/2,
+        size/3,
+        rgb
+    );
+  }
+  
+}
@@ -0,0 +1,18 @@
+package game.render;
+
+/**
+ * An object that draws the frames of a FrameRenderer.
+ *
+ * @author tobymoszer
+ */
+public interface FrameListener {
+  
+  /**
+   * Draw a frame.
+   *
+   * @param frame The latest frame published by the simulation
+   * @param alpha How far between the previous and current tick to draw, from 0 to 1
+   */
+  void drawFrame(FrameSnapshot frame, float alpha);
+  
+}
@@ -0,0 +1,79 @@
+package game.render;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A render loop drawing the latest frame published by the simulation, on its own thread.
+ * Frames are taken from a TripleBuffer, so rendering never waits for a tick to finish
+ * and a slow frame never holds up the simulation.
+ *
+ * @author tobymoszer
+ */
+public class FrameRenderer implements Runnable {
+  
+  /**
+   * The listener that draws every frame
+   */
+  private FrameListener listener;
+  
+  /**
+   * The frames published by the simulation
+   */
+  private TripleBuffer<FrameSnapshot> frames;
+  
+  /**
+   * The minimum time between frames in nanoseconds
+   */
+  private long frameLength;
+  
+  /**
+   * If the loop should keep running
+   */
+  private volatile boolean running;
+  
+  /**
+   * Construct a new FrameRenderer.
+   *
+   * @param listener The listener that draws every frame
+   * @param frames The frames published by the simulation
+   * @param frameRate The maximum number of frames per second
+   */
+  public FrameRenderer(FrameListener listener, TripleBuffer<FrameSnapshot> frames, int frameRate) {
+    this.listener = listener;
+    this.frames = frames;
+    this.frameLength = 1000000000L / frameRate;
+  }
+  
+  /**
+   * Run the loop until it is stopped.
+   */
+  @Override
+  public void run() {
+    running = true;
+    long nextFrame = System.nanoTime();
+    
+    while (running) {
+      FrameSnapshot frame = frames.acquire();
+      long time = System.nanoTime();
+      
+      //the same frame is drawn again if no tick finished since the last one, but further interpolated
+      if (!frame.isEmpty()) {
+        listener.drawFrame(frame, frame.getAlpha(time));
+      }
+      
+      nextFrame = Math.max(nextFrame + frameLength, time);
+      long wait = nextFrame - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+    }
+  }
+  
+  /**
+   * Stop the loop after the current frame.
+   */
+  public void stop() {
+    running = false;
+  }
+  
+}
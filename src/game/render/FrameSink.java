@@ -0,0 +1,44 @@
+package game.render;
+
+import java.awt.Color;
+import java.awt.Image;
+
+/**
+ * Something a FrameSnapshot draws onto.
+ * The snapshot decides what is visible and where it goes, so every sink draws the same things in the same order.
+ *
+ * @author tobymoszer
+ */
+interface FrameSink {
+  
+  /**
+   * Draw a boid.
+   *
+   * @param sprite The sprites of the boid's color and size
+   * @param x The x position of the boid's body
+   * @param y The y position of the boid's body
+   * @param velocityX The x velocity of the boid
+   * @param velocityY The y velocity of the boid
+   */
+  void drawBoid(BoidSprite sprite, int x, int y, double velocityX, double velocityY);
+  
+  /**
+   * Draw a filled circle.
+   *
+   * @param x The x position of the top left corner
+   * @param y The y position of the top left corner
+   * @param size The diameter of the circle
+   * @param color The color of the circle
+   */
+  void drawCircle(int x, int y, int size, Color color);
+  
+  /**
+   * Draw a sprite.
+   *
+   * @param sprite The sprite
+   * @param x The x position of the top left corner
+   * @param y The y position of the top left corner
+   */
+  void drawSprite(Image sprite, int x, int y);
+  
+}
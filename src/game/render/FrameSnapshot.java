@@ -0,0 +1,467 @@
+package game.render;
+
+import game.projectiles.Projectile;
+import game.vectors.Vector2;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Everything needed to draw one frame of the game, copied out of the game at the end of a tick.
+ * <p>
+ * The simulation thread fills a snapshot while it owns it and then hands it to the render thread
+ * through a {@link TripleBuffer}, so the renderer never reads the game while it is being updated.
+ * Positions are packed into float arrays, and the arrays are reused every time the snapshot is filled.
+ *
+ * @author tobymoszer
+ */
+public class FrameSnapshot {
+  
+  /**
+   * The number of floats stored for each flock member:
+   * previous x and y, current x and y, and x and y velocity
+   */
+  private static final int MEMBER_STRIDE = 6;
+  
+  /**
+   * The number of floats stored for each projectile and the player:
+   * previous x and y, and current x and y
+   */
+  private static final int POSITION_STRIDE = 4;
+  
+  /**
+   * How far past its position a boid can be drawn, as a multiple of its size.
+   * The direction indicator is drawn one and a half sizes in front of the body.
+   */
+  private static final int BOID_REACH = 3;
+  
+  /**
+   * The size of the game boundaries
+   */
+  private double gameWidth, gameHeight;
+  
+  /**
+   * The color of each flock
+   */
+  private Color[] flockColors = new Color[1];
+  
+  /**
+   * The size of a member of each flock on the screen
+   */
+  private int[] memberSizes = new int[1];
+  
+  /**
+   * The index of the first member of each flock.
+   * The members of flock i are from flockStarts[i] to the start of the next flock.
+   */
+  private int[] flockStarts = new int[1];
+  
+  /**
+   * The number of flocks
+   */
+  private int flockCount;
+  
+  /**
+   * The packed flock members, MEMBER_STRIDE floats each
+   */
+  private float[] members = new float[0];
+  
+  /**
+   * The number of flock members
+   */
+  private int memberCount;
+  
+  /**
+   * The colors of the player and flock projectiles
+   */
+  private Color playerProjectileColor, flockProjectileColor;
+  
+  /**
+   * The packed player and flock projectiles, POSITION_STRIDE floats each
+   */
+  private float[] playerProjectiles = new float[0], flockProjectiles = new float[0];
+  
+  /**
+   * The number of player and flock projectiles
+   */
+  private int playerProjectileCount, flockProjectileCount;
+  
+  /**
+   * The player sprite
+   */
+  private Image playerImage;
+  
+  /**
+   * The previous and current position of the player
+   */
+  private float[] player = new float[POSITION_STRIDE];
+  
+  /**
+   * The time the snapshot was published with System.nanoTime, or 0 if it hasn't been filled yet
+   */
+  private long time;
+  
+  /**
+   * How far between the previous and current tick the snapshot was published, from 0 to 1
+   */
+  private float alpha;
+  
+  /**
+   * The length of a tick in nanoseconds
+   */
+  private long tickLength;
+  
+  /**
+   * The area being drawn, set at the start of each paint. Anything entirely outside of it is skipped.
+   */
+  private int viewLeft, viewTop, viewRight, viewBottom;
+  
+  /**
+   * Draws the snapshot onto a Graphics, reused for every paint
+   */
+  private final GraphicsSink graphicsSink = new GraphicsSink();
+  
+  /**
+   * Clear the snapshot before filling it again.
+   *
+   * @param gameSize The size of the game boundaries
+   */
+  public void clear(Vector2 gameSize) {
+    gameWidth = gameSize.x;
+    gameHeight = gameSize.y;
+    memberCount = 0;
+    flockCount = 0;
+    playerProjectileCount = 0;
+    flockProjectileCount = 0;
+  }
+  
+  /**
+   * Start a new flock, which the members added next belong to.
+   *
+   * @param color The color of the flock
+   * @param memberSize The size of a flock member on the screen
+   */
+  public void setFlock(Color color, int memberSize) {
+    if (flockCount == flockStarts.length) {
+      flockColors = Arrays.copyOf(flockColors, flockCount * 2);
+      memberSizes = Arrays.copyOf(memberSizes, flockCount * 2);
+      flockStarts = Arrays.copyOf(flockStarts, flockCount * 2);
+    }
+    flockColors[flockCount] = color;
+    memberSizes[flockCount] = memberSize;
+    flockStarts[flockCount] = memberCount;
+    flockCount++;
+  }
+  
+  /**
+   * Add a member to the last flock started.
+   * Flock members that wrapped around the screen in the last update are drawn at their current position.
+   *
+   * @param previousX The x position before the last update
+   * @param previousY The y position before the last update
+   * @param x The current x position
+   * @param y The current y position
+   * @param velocityX The x velocity
+   * @param velocityY The y velocity
+   */
+  public void addMember(double previousX, double previousY, double x, double y, double velocityX, double velocityY) {
+    if (Math.abs(x - previousX) >= gameWidth / 2 || Math.abs(y - previousY) >= gameHeight / 2) {
+      previousX = x;
+      previousY = y;
+    }
+    
+    int index = memberCount * MEMBER_STRIDE;
+    members = ensureCapacity(members, index + MEMBER_STRIDE);
+    members[index] = (float) previousX;
+    members[index + 1] = (float) previousY;
+    members[index + 2] = (float) x;
+    members[index + 3] = (float) y;
+    members[index + 4] = (float) velocityX;
+    members[index + 5] = (float) velocityY;
+    memberCount++;
+  }
+  
+  /**
+   * Set the colors projectiles are drawn with.
+   *
+   * @param player The color of player projectiles
+   * @param flock The color of flock projectiles
+   */
+  public void setProjectileColors(Color player, Color flock) {
+    playerProjectileColor = player;
+    flockProjectileColor = flock;
+  }
+  
+  /**
+   * Add a projectile shot by the player.
+   *
+   * @param previousX The x position before the last update
+   * @param previousY The y position before the last update
+   * @param x The current x position
+   * @param y The current y position
+   */
+  public void addPlayerProjectile(double previousX, double previousY, double x, double y) {
+    int index = playerProjectileCount * POSITION_STRIDE;
+    playerProjectiles = ensureCapacity(playerProjectiles, index + POSITION_STRIDE);
+    setPosition(playerProjectiles, index, previousX, previousY, x, y);
+    playerProjectileCount++;
+  }
+  
+  /**
+   * Add a projectile shot by the flock.
+   *
+   * @param previousX The x position before the last update
+   * @param previousY The y position before the last update
+   * @param x The current x position
+   * @param y The current y position
+   */
+  public void addFlockProjectile(double previousX, double previousY, double x, double y) {
+    int index = flockProjectileCount * POSITION_STRIDE;
+    flockProjectiles = ensureCapacity(flockProjectiles, index + POSITION_STRIDE);
+    setPosition(flockProjectiles, index, previousX, previousY, x, y);
+    flockProjectileCount++;
+  }
+  
+  /**
+   * Set the player.
+   *
+   * @param image The player sprite, already scaled to the player's size
+   * @param previousX The x position before the last update
+   * @param previousY The y position before the last update
+   * @param x The current x position
+   * @param y The current y position
+   */
+  public void setPlayer(Image image, double previousX, double previousY, double x, double y) {
+    playerImage = image;
+    setPosition(player, 0, previousX, previousY, x, y);
+  }
+  
+  /**
+   * Mark the snapshot as filled, just before it is published.
+   *
+   * @param time The time the snapshot is published with System.nanoTime
+   * @param alpha How far between the previous and current tick the snapshot is published, from 0 to 1
+   * @param tickLength The length of a tick in nanoseconds
+   */
+  public void setTime(long time, float alpha, long tickLength) {
+    this.time = time == 0 ? 1 : time;
+    this.alpha = alpha;
+    this.tickLength = tickLength;
+  }
+  
+  /**
+   * Check if the snapshot has been filled.
+   *
+   * @return If the snapshot has never been filled
+   */
+  public boolean isEmpty() {
+    return time == 0;
+  }
+  
+  /**
+   * Get how far between the previous and current tick to draw the snapshot at the given time.
+   * This keeps moving after the snapshot is published, until it reaches the current tick.
+   *
+   * @param now The time the snapshot is drawn with System.nanoTime
+   * @return How far between the previous and current tick to draw, from 0 to 1
+   */
+  public float getAlpha(long now) {
+    return Math.min(1, alpha + (float) (now - time) / tickLength);
+  }
+  
+  /**
+   * Draw the snapshot, interpolated between the previous and current tick.
+   * Only what is inside the clip of the Graphics is drawn, or inside the game boundaries if it has no clip.
+   *
+   * @param g The Graphics to draw to
+   * @param alpha How far between the previous and current tick to draw, from 0 to 1
+   */
+  public void paint(Graphics g, float alpha) {
+    Rectangle clip = g.getClipBounds();
+    if (clip != null) {
+      setViewport(clip.x, clip.y, clip.x + clip.width, clip.y + clip.height);
+    } else {
+      setViewport(0, 0, (int) Math.ceil(gameWidth), (int) Math.ceil(gameHeight));
+    }
+    graphicsSink.g = g;
+    paint(graphicsSink, alpha);
+    graphicsSink.g = null;
+  }
+  
+  /**
+   * Draw the snapshot onto a sink for an image, interpolated between the previous and current tick.
+   * Only what is inside the image is drawn.
+   *
+   * @param sink The sink to draw onto
+   * @param width The width of the image
+   * @param height The height of the image
+   * @param alpha How far between the previous and current tick to draw, from 0 to 1
+   */
+  void paint(FrameSink sink, int width, int height, float alpha) {
+    setViewport(0, 0, width, height);
+    paint(sink, alpha);
+  }
+  
+  /**
+   * Draw everything inside the area being drawn onto a sink, interpolated between the previous and current tick.
+   * Both ways of drawing go through here, so they draw the same things in the same place and order.
+   *
+   * @param sink The sink to draw onto
+   * @param alpha How far between the previous and current tick to draw, from 0 to 1
+   */
+  private void paint(FrameSink sink, float alpha) {
+    for (int flock = 0; flock < flockCount; flock++) {
+      int end = flock + 1 < flockCount ? flockStarts[flock + 1] : memberCount;
+      if (end == flockStarts[flock]) {
+        continue;
+      }
+      BoidSprite sprite = SpriteCache.getBoid(flockColors[flock], memberSizes[flock]);
+      int reach = memberSizes[flock] * BOID_REACH;
+      for (int i = flockStarts[flock] * MEMBER_STRIDE; i < end * MEMBER_STRIDE; i += MEMBER_STRIDE) {
+        int x = (int) Vector2.interpolate(members[i], members[i + 2], alpha);
+        int y = (int) Vector2.interpolate(members[i + 1], members[i + 3], alpha);
+        if (isVisible(x, y, reach, reach)) {
+          sink.drawBoid(sprite, x, y, members[i + 4], members[i + 5]);
+        }
+      }
+    }
+    
+    paintProjectiles(sink, playerProjectiles, playerProjectileCount, playerProjectileColor, alpha);
+    paintProjectiles(sink, flockProjectiles, flockProjectileCount, flockProjectileColor, alpha);
+    
+    int playerX = (int) Vector2.interpolate(player[0], player[2], alpha);
+    int playerY = (int) Vector2.interpolate(player[1], player[3], alpha);
+    if (playerImage != null && isVisible(playerX, playerY, playerImage.getWidth(null), playerImage.getHeight(null))) {
+      sink.drawSprite(playerImage, playerX, playerY);
+    }
+  }
+  
+  /**
+   * Set the area being drawn.
+   *
+   * @param left The first column
+   * @param top The first row
+   * @param right The column after the last column
+   * @param bottom The row after the last row
+   */
+  private void setViewport(int left, int top, int right, int bottom) {
+    viewLeft = left;
+    viewTop = top;
+    viewRight = right;
+    viewBottom = bottom;
+  }
+  
+  /**
+   * Check if anything drawn at a position could be inside the area being drawn.
+   *
+   * @param x The x position it is drawn at
+   * @param y The y position it is drawn at
+   * @param width How far from the position it can be drawn horizontally
+   * @param height How far from the position it can be drawn vertically
+   * @return If it could be inside the area being drawn
+   */
+  private boolean isVisible(int x, int y, int width, int height) {
+    return x + width > viewLeft && y + height > viewTop && x - width < viewRight && y - height < viewBottom;
+  }
+  
+  /**
+   * Draw packed projectiles of one color.
+   *
+   * @param sink The sink to draw onto
+   * @param projectiles The packed projectiles
+   * @param count The number of projectiles
+   * @param color The color of the projectiles
+   * @param alpha How far between the previous and current tick to draw, from 0 to 1
+   */
+  private void paintProjectiles(FrameSink sink, float[] projectiles, int count, Color color, float alpha) {
+    for (int i = 0; i < count * POSITION_STRIDE; i += POSITION_STRIDE) {
+      int x = (int) Vector2.interpolate(projectiles[i], projectiles[i + 2], alpha);
+      int y = (int) Vector2.interpolate(projectiles[i + 1], projectiles[i + 3], alpha);
+      if (isVisible(x, y, Projectile.SIZE, Projectile.SIZE)) {
+        sink.drawCircle(x, y, Projectile.SIZE, color);
+      }
+    }
+  }
+  
+  /**
+   * Store a previous and current position in a packed array.
+   *
+   * @param array The packed array
+   * @param index The index to store the position at
+   * @param previousX The x position before the last update
+   * @param previousY The y position before the last update
+   * @param x The current x position
+   * @param y The current y position
+   */
+  private static void setPosition(float[] array, int index, double previousX, double previousY, double x, double y) {
+    array[index] = (float) previousX;
+    array[index + 1] = (float) previousY;
+    array[index + 2] = (float) x;
+    array[index + 3] = (float) y;
+  }
+  
+  /**
+   * Grow a packed array if it can't hold the given number of floats.
+   *
+   * @param array The packed array
+   * @param length The number of floats it needs to hold
+   * @return The array, or a larger copy of it
+   */
+  private static float[] ensureCapacity(float[] array, int length) {
+    if (length <= array.length) {
+      return array;
+    }
+    return Arrays.copyOf(array, Math.max(length, array.length * 2));
+  }
+  
+  /**
+   * Draws onto a Graphics with pre-rendered sprites.
+   */
+  private static class GraphicsSink implements FrameSink {
+    
+    /**
+     * The Graphics being drawn to, only set while a snapshot is being drawn
+     */
+    private Graphics g;
+    
+    /**
+     * The color of the last circle drawn.
+     * Projectiles come in runs of one color, so the circle sprite is only looked up again when it changes.
+     */
+    private Color circleColor;
+    
+    /**
+     * The size of the last circle drawn
+     */
+    private int circleSize;
+    
+    /**
+     * The sprite of the last circle drawn
+     */
+    private Image circle;
+    
+    @Override
+    public void drawBoid(BoidSprite sprite, int x, int y, double velocityX, double velocityY) {
+      sprite.draw(g, x, y, velocityX, velocityY);
+    }
+    
+    @Override
+    public void drawCircle(int x, int y, int size, Color color) {
+      if (color != circleColor || size != circleSize) {
+        circleColor = color;
+        circleSize = size;
+        circle = SpriteCache.getCircle(color, size);
+      }
+      g.drawImage(circle, x, y, null);
+    }
+    
+    @Override
+    public void drawSprite(Image sprite, int x, int y) {
+      g.drawImage(sprite, x, y, null);
+    }
+  }
+  
+}
@@ -0,0 +1,579 @@
+package game.render;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws frames by writing pixels straight into the int array of an image, instead of through Java2D.
+ * <p>
+ * Drawing a frame queues every circle and sprite in the order they would be painted,
+ * then fills the image in horizontal strips. Each strip copies its rows of the background
+ * and fills the rows of every circle that crosses it, one row at a time with {@link Arrays#fill},
+ * so a frame costs one pass over the pixels and a few array fills per circle, and it is blitted once.
+ * Strips don't share any pixels, so large frames are filled on several threads at once.
+ * <p>
+ * Optionally only the tiles drawn over in the current or last frame are repainted,
+ * since the rest of the image still holds the background from before.
+ * <p>
+ * Nothing here needs a screen, so frames can also be drawn and saved without one.
+ *
+ * @author tobymoszer
+ */
+public class SoftwareRenderer {
+  
+  /**
+   * The image frames are drawn into
+   */
+  private BufferedImage image;
+  
+  /**
+   * The pixels of the image, as RGB
+   */
+  private int[] pixels;
+  
+  /**
+   * The size of the image
+   */
+  private int width, height;
+  
+  /**
+   * The pixels of the background, or null to clear to the background color
+   */
+  private int[] background;
+  
+  /**
+   * The color cleared to if there is no background image, as RGB
+   */
+  private int backgroundColor = 0;
+  
+  /**
+   * The queued circles, with the position of the top left corner, diameter, and color of each
+   */
+  private int[] circleX = new int[64], circleY = new int[64], circleSize = new int[64], circleColor = new int[64];
+  
+  /**
+   * The number of queued circles
+   */
+  private int circleCount;
+  
+  /**
+   * The queued sprites, drawn after every circle
+   */
+  private int[][] spritePixels = new int[4][];
+  private int[] spriteX = new int[4], spriteY = new int[4], spriteWidth = new int[4], spriteHeight = new int[4];
+  
+  /**
+   * The number of queued sprites
+   */
+  private int spriteCount;
+  
+  /**
+   * The first and last column filled in each row of a circle, by diameter
+   */
+  private int[][] spanStarts = new int[0][], spanEnds = new int[0][];
+  
+  /**
+   * The ARGB pixels of each sprite drawn so far
+   */
+  private Map<Image, int[]> spriteCache = new WeakHashMap<>();
+  
+  /**
+   * The pool used to fill strips in parallel
+   */
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+  
+  /**
+   * The number of circles below which the whole frame is filled on the calling thread
+   */
+  private int parallelThreshold = 2000;
+  
+  /**
+   * Queues what frames draw onto this renderer
+   */
+  private final FrameSink sink = new RendererSink();
+  
+  /**
+   * The number of rows each parallel task fills without splitting further
+   */
+  private final int STRIP_HEIGHT = 32;
+  
+  /**
+   * The width and height of the tiles tracked when only changed areas are repainted
+   */
+  private final int TILE_SIZE = 32;
+  
+  /**
+   * The number of tiles across the image
+   */
+  private int columns;
+  
+  /**
+   * If only the tiles drawn over in this frame or the last one are repainted
+   */
+  private boolean dirtyRepaint = false;
+  
+  /**
+   * If every tile has to be repainted in the next frame, because the background changed
+   */
+  private boolean repaintAll = true;
+  
+  /**
+   * Which tiles are drawn over in this frame and the last one, row by row
+   */
+  private boolean[] drawn, previousDrawn;
+  
+  /**
+   * Which tiles are repainted in this frame, row by row
+   */
+  private boolean[] dirty;
+  
+  /**
+   * Construct a new SoftwareRenderer.
+   *
+   * @param width The width of the frames
+   * @param height The height of the frames
+   */
+  public SoftwareRenderer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+    int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+    drawn = new boolean[columns * rows];
+    previousDrawn = new boolean[columns * rows];
+    dirty = new boolean[columns * rows];
+  }
+  
+  /**
+   * Set the image every frame is drawn over.
+   *
+   * @param backgroundImage The background image, drawn at the top left corner, or null for none
+   */
+  public void setBackground(Image backgroundImage) {
+    repaintAll = true;
+    if (backgroundImage == null) {
+      background = null;
+      return;
+    }
+    BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics g = copy.getGraphics();
+    g.setColor(new Color(backgroundColor));
+    g.fillRect(0, 0, width, height);
+    g.drawImage(backgroundImage, 0, 0, null);
+    g.dispose();
+    background = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+  }
+  
+  /**
+   * Set the color every frame is cleared to if there is no background image.
+   *
+   * @param color The background color
+   */
+  public void setBackgroundColor(Color color) {
+    backgroundColor = color.getRGB() & 0xffffff;
+    repaintAll = true;
+  }
+  
+  /**
+   * Set if only the areas drawn over in this frame or the last one are repainted,
+   * instead of the whole image. Everything else is left as it was, which is just the background.
+   * This saves copying the background every frame when little of the screen is covered.
+   *
+   * @param dirtyRepaint If only changed areas should be repainted
+   */
+  public void setDirtyRepaint(boolean dirtyRepaint) {
+    this.dirtyRepaint = dirtyRepaint;
+    repaintAll = true;
+  }
+  
+  /**
+   * Draw a frame of the game into the image, interpolated between the previous and current tick.
+   *
+   * @param frame The frame to draw
+   * @param alpha How far between the previous and current tick to draw, from 0 to 1
+   */
+  public void render(FrameSnapshot frame, float alpha) {
+    circleCount = 0;
+    spriteCount = 0;
+    if (dirtyRepaint) {
+      boolean[] swap = previousDrawn;
+      previousDrawn = drawn;
+      drawn = swap;
+      Arrays.fill(drawn, false);
+    }
+    frame.paint(sink, width, height, alpha);
+    
+    if (dirtyRepaint) {
+      for (int i = 0; i < dirty.length; i++) {
+        dirty[i] = repaintAll || drawn[i] || previousDrawn[i];
+      }
+      repaintAll = false;
+    }
+    
+    if (circleCount < parallelThreshold) {
+      fill(0, height);
+    } else {
+      pool.invoke(new StripTask(0, height));
+    }
+    
+    //drop references to sprites that are no longer drawn
+    Arrays.fill(spritePixels, 0, spriteCount, null);
+  }
+  
+  /**
+   * Queue a filled circle, drawn the same as {@link Graphics#fillOval} with the given size.
+   *
+   * @param x The x position of the top left corner
+   * @param y The y position of the top left corner
+   * @param size The diameter of the circle
+   * @param rgb The color of the circle, as RGB
+   */
+  void addCircle(int x, int y, int size, int rgb) {
+    if (size <= 0 || x >= width || y >= height || x + size <= 0 || y + size <= 0) {
+      return;
+    }
+    if (circleCount == circleX.length) {
+      int length = circleCount * 2;
+      circleX = Arrays.copyOf(circleX, length);
+      circleY = Arrays.copyOf(circleY, length);
+      circleSize = Arrays.copyOf(circleSize, length);
+      circleColor = Arrays.copyOf(circleColor, length);
+    }
+    circleX[circleCount] = x;
+    circleY[circleCount] = y;
+    circleSize[circleCount] = size;
+    circleColor[circleCount] = rgb & 0xffffff;
+    circleCount++;
+    createSpans(size);
+    if (dirtyRepaint) {
+      markDrawn(x, y, size, size);
+    }
+  }
+  
+  /**
+   * Queue a sprite, blended over everything drawn before it by its alpha.
+   *
+   * @param sprite The sprite
+   * @param x The x position of the top left corner
+   * @param y The y position of the top left corner
+   */
+  void addSprite(Image sprite, int x, int y) {
+    if (sprite == null) {
+      return;
+    }
+    int width = sprite.getWidth(null);
+    int height = sprite.getHeight(null);
+    if (x >= this.width || y >= this.height || x + width <= 0 || y + height <= 0) {
+      return;
+    }
+    if (spriteCount == spritePixels.length) {
+      int length = spriteCount * 2;
+      spritePixels = Arrays.copyOf(spritePixels, length);
+      spriteX = Arrays.copyOf(spriteX, length);
+      spriteY = Arrays.copyOf(spriteY, length);
+      spriteWidth = Arrays.copyOf(spriteWidth, length);
+      spriteHeight = Arrays.copyOf(spriteHeight, length);
+    }
+    spritePixels[spriteCount] = spriteCache.computeIfAbsent(sprite, SoftwareRenderer::getPixels);
+    spriteX[spriteCount] = x;
+    spriteY[spriteCount] = y;
+    spriteWidth[spriteCount] = width;
+    spriteHeight[spriteCount] = height;
+    spriteCount++;
+    if (dirtyRepaint) {
+      markDrawn(x, y, width, height);
+    }
+  }
+  
+  /**
+   * Mark the tiles under an area that is drawn over in this frame.
+   * The area must be at least partly inside the image.
+   *
+   * @param x The x position of the top left corner
+   * @param y The y position of the top left corner
+   * @param width The width of the area
+   * @param height The height of the area
+   */
+  private void markDrawn(int x, int y, int width, int height) {
+    int left = Math.max(0, x) / TILE_SIZE;
+    int right = (Math.min(this.width, x + width) - 1) / TILE_SIZE;
+    int top = Math.max(0, y) / TILE_SIZE;
+    int bottom = (Math.min(this.height, y + height) - 1) / TILE_SIZE;
+    for (int row = top; row <= bottom; row++) {
+      for (int column = left; column <= right; column++) {
+        drawn[row * columns + column] = true;
+      }
+    }
+  }
+  
+  /**
+   * Fill a strip of rows with the background and every queued circle and sprite that crosses it.
+   * When only changed areas are repainted, the background is only restored in the repainted tiles,
+   * and everything queued is inside them.
+   *
+   * @param top The first row
+   * @param bottom The row after the last row
+   */
+  private void fill(int top, int bottom) {
+    if (!dirtyRepaint) {
+      clear(top * width, bottom * width);
+    } else {
+      for (int row = top; row < bottom; row++) {
+        int tiles = row / TILE_SIZE * columns;
+        for (int column = 0; column < columns; column++) {
+          if (!dirty[tiles + column]) {
+            continue;
+          }
+          //neighboring tiles are restored together
+          int first = column;
+          while (column + 1 < columns && dirty[tiles + column + 1]) {
+            column++;
+          }
+          clear(row * width + first * TILE_SIZE, row * width + Math.min(width, (column + 1) * TILE_SIZE));
+        }
+      }
+    }
+    
+    for (int i = 0; i < circleCount; i++) {
+      int y = circleY[i];
+      int size = circleSize[i];
+      if (y >= bottom || y + size <= top) {
+        continue;
+      }
+      int x = circleX[i];
+      int rgb = circleColor[i];
+      int[] starts = spanStarts[size];
+      int[] ends = spanEnds[size];
+      for (int row = Math.max(top, y); row < Math.min(bottom, y + size); row++) {
+        int start = Math.max(0, x + starts[row - y]);
+        int end = Math.min(width, x + ends[row - y]);
+        if (start < end) {
+          Arrays.fill(pixels, row * width + start, row * width + end, rgb);
+        }
+      }
+    }
+    
+    for (int i = 0; i < spriteCount; i++) {
+      blendSprite(i, top, bottom);
+    }
+  }
+  
+  /**
+   * Restore a range of pixels to the background.
+   *
+   * @param start The index of the first pixel
+   * @param end The index after the last pixel
+   */
+  private void clear(int start, int end) {
+    if (background != null) {
+      System.arraycopy(background, start, pixels, start, end - start);
+    } else {
+      Arrays.fill(pixels, start, end, backgroundColor);
+    }
+  }
+  
+  /**
+   * Blend the rows of a queued sprite that are within a strip.
+   *
+   * @param sprite The index of the queued sprite
+   * @param top The first row of the strip
+   * @param bottom The row after the last row of the strip
+   */
+  private void blendSprite(int sprite, int top, int bottom) {
+    int[] source = spritePixels[sprite];
+    int x = spriteX[sprite];
+    int y = spriteY[sprite];
+    int spriteWidth = this.spriteWidth[sprite];
+    int firstColumn = Math.max(0, x);
+    int lastColumn = Math.min(width, x + spriteWidth);
+    
+    for (int row = Math.max(top, y); row < Math.min(bottom, y + spriteHeight[sprite]); row++) {
+      int sourceRow = (row - y) * spriteWidth - x;
+      int targetRow = row * width;
+      for (int column = firstColumn; column < lastColumn; column++) {
+        int argb = source[sourceRow + column];
+        int alpha = argb >>> 24;
+        if (alpha == 255) {
+          pixels[targetRow + column] = argb & 0xffffff;
+        } else if (alpha != 0) {
+          int under = pixels[targetRow + column];
+          int red = blend((argb >> 16) & 0xff, (under >> 16) & 0xff, alpha);
+          int green = blend((argb >> 8) & 0xff, (under >> 8) & 0xff, alpha);
+          int blue = blend(argb & 0xff, under & 0xff, alpha);
+          pixels[targetRow + column] = red << 16 | green << 8 | blue;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Blend one color channel over another.
+   *
+   * @param over The channel drawn on top
+   * @param under The channel underneath
+   * @param alpha The alpha of the channel on top, from 0 to 255
+   * @return The blended channel
+   */
+  private static int blend(int over, int under, int alpha) {
+    return (over * alpha + under * (255 - alpha) + 127) / 255;
+  }
+  
+  /**
+   * Find the columns filled in each row of a circle of the given diameter, if they haven't been found yet.
+   * A column is filled if its center is inside the circle.
+   *
+   * @param size The diameter of the circle
+   */
+  private void createSpans(int size) {
+    if (size < spanStarts.length && spanStarts[size] != null) {
+      return;
+    }
+    if (size >= spanStarts.length) {
+      spanStarts = Arrays.copyOf(spanStarts, size + 1);
+      spanEnds = Arrays.copyOf(spanEnds, size + 1);
+    }
+    
+    int[] starts = new int[size];
+    int[] ends = new int[size];
+    double radius = size / 2.0;
+    for (int row = 0; row < size; row++) {
+      double dy = row + .5 - radius;
+      double halfWidth = Math.sqrt(Math.max(0, radius * radius - dy * dy));
+      starts[row] = (int) Math.ceil(radius - halfWidth - .5);
+      ends[row] = (int) Math.floor(radius + halfWidth - .5) + 1;
+    }
+    spanStarts[size] = starts;
+    spanEnds[size] = ends;
+  }
+  
+  /**
+   * Get the ARGB pixels of an image.
+   *
+   * @param image The image
+   * @return The pixels, row by row
+   */
+  private static int[] getPixels(Image image) {
+    int width = image.getWidth(null);
+    int height = image.getHeight(null);
+    BufferedImage argb;
+    if (image instanceof BufferedImage) {
+      argb = (BufferedImage) image;
+    } else {
+      argb = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      Graphics g = argb.getGraphics();
+      g.drawImage(image, 0, 0, null);
+      g.dispose();
+    }
+    return argb.getRGB(0, 0, width, height, null, 0, width);
+  }
+  
+  /**
+   * Get the image frames are drawn into.
+   * It is changed by every call to {@link #render}, so it should only be drawn or saved in between.
+   *
+   * @return The image
+   */
+  public BufferedImage getImage() {
+    return image;
+  }
+  
+  /**
+   * Get the width of the frames.
+   *
+   * @return The width in pixels
+   */
+  public int getWidth() {
+    return width;
+  }
+  
+  /**
+   * Get the height of the frames.
+   *
+   * @return The height in pixels
+   */
+  public int getHeight() {
+    return height;
+  }
+  
+  /**
+   * Set the number of circles below which the whole frame is filled on the calling thread.
+   *
+   * @param parallelThreshold The number of circles, or Integer.MAX_VALUE to never fill in parallel
+   */
+  public void setParallelThreshold(int parallelThreshold) {
+    this.parallelThreshold = parallelThreshold;
+  }
+  
+  /**
+   * Set the pool used to fill strips in parallel.
+   *
+   * @param pool The pool to fill strips in
+   */
+  public void setForkJoinPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+  
+  /**
+   * Queues everything a frame draws onto the renderer.
+   */
+  private class RendererSink implements FrameSink {
+    
+    @Override
+    public void drawBoid(BoidSprite sprite, int x, int y, double velocityX, double velocityY) {
+      sprite.draw(SoftwareRenderer.this, x, y, velocityX, velocityY);
+    }
+    
+    @Override
+    public void drawCircle(int x, int y, int size, Color color) {
+      addCircle(x, y, size, color.getRGB());
+    }
+    
+    @Override
+    public void drawSprite(Image sprite, int x, int y) {
+      addSprite(sprite, x, y);
+    }
+  }
+  
+  /**
+   * A task filling a range of rows, split in half until the range is a single strip.
+   */
+  @SuppressWarnings("serial")
+  private class StripTask extends RecursiveAction {
+    
+    /**
+     * The range of rows
+     */
+    private int top, bottom;
+    
+    /**
+     * Construct a new StripTask.
+     *
+     * @param top The first row
+     * @param bottom The row after the last row
+     */
+    StripTask(int top, int bottom) {
+      this.top = top;
+      this.bottom = bottom;
+    }
+    
+    @Override
+    protected void compute() {
+      if (bottom - top <= STRIP_HEIGHT) {
+        fill(top, bottom);
+      } else {
+        int middle = (top + bottom) >>> 1;
+        invokeAll(new StripTask(top, middle), new StripTask(middle, bottom));
+      }
+    }
+  }
+  
+}
@@ -0,0 +1,118 @@
+package game.render;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-rendered sprites, shared by everything that paints the game.
+ * <p>
+ * Sprites are created once for each color and size, in the format of the screen,
+ * so Java2D can keep them in video memory and draw them with a single blit
+ * instead of rasterizing a shape every time.
+ *
+ * @author tobymoszer
+ */
+public final class SpriteCache {
+  
+  /**
+   * The boid sprites, by color and size
+   */
+  private static final Map<Color, Map<Integer, BoidSprite>> BOIDS = new ConcurrentHashMap<>();
+  
+  /**
+   * The circle sprites, by color and size
+   */
+  private static final Map<Color, Map<Integer, Image>> CIRCLES = new ConcurrentHashMap<>();
+  
+  private SpriteCache() {
+    
+  }
+  
+  /**
+   * Get the boid sprite for the given color and size.
+   *
+   * @param color The color of the boid
+   * @param size The size of the boid's body
+   * @return The boid sprite
+   */
+  public static BoidSprite getBoid(Color color, int size) {
+    return BOIDS.computeIfAbsent(color, c -> new ConcurrentHashMap<>())
+        .computeIfAbsent(size, s -> new BoidSprite(color, s));
+  }
+  
+  /**
+   * Get a filled circle sprite for the given color and size.
+   * The circle is drawn the same as {@link Graphics#fillOval} with the given size.
+   *
+   * @param color The color of the circle
+   * @param size The diameter of the circle
+   * @return The circle sprite
+   */
+  public static Image getCircle(Color color, int size) {
+    return CIRCLES.computeIfAbsent(color, c -> new ConcurrentHashMap<>())
+        .computeIfAbsent(size, s -> {
+          BufferedImage image = createImage(s, s);
+          Graphics g = image.getGraphics();
+          g.setColor(color);
+          g.fillOval(0, 0, s, s);
+          g.dispose();
+          return image;
+        });
+  }
+  
+  /**
+   * Scale an image to the given size once, so it isn't scaled every time it's drawn.
+   *
+   * @param image The image to scale
+   * @param width The width to scale to
+   * @param height The height to scale to
+   * @return The scaled image
+   */
+  public static Image createScaled(Image image, int width, int height) {
+    BufferedImage scaled = createImage(width, height, Transparency.TRANSLUCENT);
+    Graphics2D g = scaled.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(image, 0, 0, width, height, null);
+    g.dispose();
+    return scaled;
+  }
+  
+  /**
+   * Create an empty image with fully transparent or opaque pixels.
+   *
+   * @param width The width of the image
+   * @param height The height of the image
+   * @return The image
+   */
+  static BufferedImage createImage(int width, int height) {
+    return createImage(width, height, Transparency.BITMASK);
+  }
+  
+  /**
+   * Create an empty image in the format of the screen, or a plain ARGB image if there is no screen.
+   *
+   * @param width The width of the image
+   * @param height The height of the image
+   * @param transparency The transparency of the image, from {@link Transparency}
+   * @return The image
+   */
+  private static BufferedImage createImage(int width, int height, int transparency) {
+    if (GraphicsEnvironment.isHeadless()) {
+      return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+    GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+        .getDefaultScreenDevice()
+        .getDefaultConfiguration();
+    return configuration.createCompatibleImage(width, height, transparency);
+  }
+  
+}
@@ -0,0 +1,96 @@
+package game.render;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A lock-free triple buffer passing the latest value from one producer thread to one consumer thread.
+ * <p>
+ * The producer fills the back buffer and publishes it, swapping it with the middle buffer.
+ * The consumer acquires the latest value by swapping its front buffer with the middle buffer,
+ * if something new has been published since.
+ * The producer and consumer always own different buffers, so neither ever waits for the other
+ * or sees a buffer that is only partly filled. Values the consumer is too slow to read are skipped.
+ *
+ * @param <T> The type of the buffers
+ * @author tobymoszer
+ */
+public class TripleBuffer<T> {
+  
+  /**
+   * The bits of the middle state holding the index of the middle buffer
+   */
+  private static final int INDEX_MASK = 3;
+  
+  /**
+   * The bit of the middle state set when the middle buffer was published and hasn't been acquired yet
+   */
+  private static final int FRESH = 4;
+  
+  /**
+   * The three buffers
+   */
+  private final Object[] buffers;
+  
+  /**
+   * The index of the middle buffer, and if it is fresh
+   */
+  private final AtomicInteger middle;
+  
+  /**
+   * The index of the buffer owned by the producer
+   */
+  private int back;
+  
+  /**
+   * The index of the buffer owned by the consumer
+   */
+  private int front;
+  
+  /**
+   * Construct a new TripleBuffer.
+   *
+   * @param factory Creates each of the three buffers
+   */
+  public TripleBuffer(Supplier<T> factory) {
+    buffers = new Object[] {factory.get(), factory.get(), factory.get()};
+    back = 0;
+    middle = new AtomicInteger(1);
+    front = 2;
+  }
+  
+  /**
+   * Get the buffer owned by the producer, to be filled before it is published.
+   * This must only be called by the producer thread.
+   *
+   * @return The back buffer
+   */
+  @SuppressWarnings("unchecked")
+  public T getBack() {
+    return (T) buffers[back];
+  }
+  
+  /**
+   * Publish the back buffer to the consumer, and take a new back buffer.
+   * This must only be called by the producer thread.
+   */
+  public void publish() {
+    back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+  }
+  
+  /**
+   * Get the latest published buffer.
+   * If nothing was published since the last call, the same buffer is returned again.
+   * This must only be called by the consumer thread.
+   *
+   * @return The front buffer
+   */
+  @SuppressWarnings("unchecked")
+  public T acquire() {
+    if ((middle.get() & FRESH) != 0) {
+      front = middle.getAndSet(front) & INDEX_MASK;
+    }
+    return (T) buffers[front];
+  }
+  
+}
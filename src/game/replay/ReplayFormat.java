@@ -0,0 +1,132 @@
+package game.replay;
+
+import game.Game;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The constants and encodings shared by the replay recorder and player.
+ * <p>
+ * A replay starts with a header: the magic number, the version, if the flocks are packed,
+ * the initial size of each flock, the number of flocks, the flock options, the game size, the seed,
+ * and the full state of the game when recording started.
+ * After the header is a record for every tick that had inputs or changes.
+ * Each record starts with the number of ticks skipped since the last record and a byte of flags,
+ * followed by the data for each flag in the order the flags are declared.
+ * The replay ends with a record with the END flag, whose skipped ticks finish the replay.
+ *
+ * @author tobymoszer
+ */
+final class ReplayFormat {
+  
+  /**
+   * The first four bytes of every replay, "FLRP"
+   */
+  static final int MAGIC = 0x464c5250;
+  
+  /**
+   * The version of the replay format
+   */
+  static final byte VERSION = 4;
+  
+  /**
+   * The record changes the length of the tick, followed by the new length as a float
+   */
+  static final int TIME = 1;
+  
+  /**
+   * The record resets the game before the tick
+   */
+  static final int RESET = 1 << 1;
+  
+  /**
+   * The record changes the player direction, followed by the new direction as two doubles
+   */
+  static final int DIRECTION = 1 << 2;
+  
+  /**
+   * The record has player shots, followed by the number of shots and the position each is aimed at
+   */
+  static final int SHOOT = 1 << 3;
+  
+  /**
+   * The record changes the flock's attack type during the tick, followed by the new attack type
+   */
+  static final int ATTACK_TYPE = 1 << 4;
+  
+  /**
+   * The record ends the replay
+   */
+  static final int END = 1 << 7;
+  
+  private ReplayFormat() {
+  
+  }
+  
+  /**
+   * Write a long using as few bytes as possible, 7 bits at a time.
+   * Small positive numbers take a single byte.
+   *
+   * @param buffer The buffer to write to
+   * @param value The value to write
+   */
+  static void putVarLong(ByteBuffer buffer, long value) {
+    while ((value & ~0x7fL) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+  
+  /**
+   * Read a long written by {@link #putVarLong(ByteBuffer, long)}.
+   *
+   * @param buffer The buffer to read from
+   * @return The value read
+   */
+  static long getVarLong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Malformed variable length number in replay");
+  }
+  
+  /**
+   * Map a signed number to an unsigned one, so numbers close to zero stay small.
+   *
+   * @param value The signed value
+   * @return The unsigned value
+   */
+  static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+  
+  /**
+   * Undo {@link #zigzag(long)}.
+   *
+   * @param value The unsigned value
+   * @return The signed value
+   */
+  static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+  
+  /**
+   * Write the full state of a game to a new buffer that is just large enough.
+   *
+   * @param game The game to write
+   * @return The buffer, ready to be read
+   */
+  static ByteBuffer writeState(Game game) {
+    ByteBuffer state = ByteBuffer.allocate(game.getStateSize());
+    game.writeState(state);
+    state.flip();
+    return state;
+  }
+  
+}
@@ -0,0 +1,359 @@
+package game.replay;
+
+import game.Game;
+import game.boids.AttackType;
+import game.boids.FlockOptions;
+import game.vectors.Vector2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Plays back a replay written by a {@link ReplayRecorder}, driving a new game without a screen as fast as possible.
+ * The state of the game is saved every few ticks while playing,
+ * so seeking back, or forward to a tick that has been played before, only simulates from the nearest checkpoint.
+ *
+ * @author tobymoszer
+ */
+public class ReplayPlayer {
+  
+  /**
+   * The whole replay
+   */
+  private ByteBuffer replay;
+  
+  /**
+   * The game being played back
+   */
+  private Game game;
+  
+  /**
+   * The number of ticks between checkpoints
+   */
+  private int checkpointInterval;
+  
+  /**
+   * The saved checkpoints by the tick they were saved before
+   */
+  private TreeMap<Long, Checkpoint> checkpoints;
+  
+  /**
+   * The position of the next record in the replay
+   */
+  private int position;
+  
+  /**
+   * The next tick to be played
+   */
+  private long tick;
+  
+  /**
+   * The tick and flags of the next record
+   */
+  private long nextRecordTick;
+  private int nextFlags;
+  
+  /**
+   * The length of each tick in seconds
+   */
+  private float time;
+  
+  /**
+   * The position of the last whole number shot, which the next one is read relative to
+   */
+  private long lastShotX, lastShotY;
+  
+  /**
+   * The direction read from the replay, reused every record
+   */
+  private Vector2 direction;
+  
+  /**
+   * The default number of ticks between checkpoints
+   */
+  public static final int DEFAULT_CHECKPOINT_INTERVAL = 1200;
+  
+  /**
+   * Construct a new ReplayPlayer that saves a checkpoint every {@value #DEFAULT_CHECKPOINT_INTERVAL} ticks.
+   *
+   * @param channel The channel to read the replay from
+   * @throws IOException If the replay can't be read
+   */
+  public ReplayPlayer(ReadableByteChannel channel) throws IOException {
+    this(channel, DEFAULT_CHECKPOINT_INTERVAL);
+  }
+  
+  /**
+   * Construct a new ReplayPlayer.
+   * The whole replay is read from the channel, and the game is set up in the state it was recorded from.
+   *
+   * @param channel The channel to read the replay from
+   * @param checkpointInterval The number of ticks between checkpoints
+   * @throws IOException If the replay can't be read
+   */
+  public ReplayPlayer(ReadableByteChannel channel, int checkpointInterval) throws IOException {
+    this(readAll(channel), checkpointInterval);
+  }
+  
+  /**
+   * Construct a new ReplayPlayer from a replay that has already been read.
+   *
+   * @param replay The replay, from its start to its end
+   * @param checkpointInterval The number of ticks between checkpoints
+   */
+  public ReplayPlayer(ByteBuffer replay, int checkpointInterval) {
+    this.replay = replay.duplicate();
+    this.checkpointInterval = checkpointInterval;
+    checkpoints = new TreeMap<>();
+    direction = new Vector2(0, 0);
+    
+    ByteBuffer header = this.replay;
+    if (header.getInt() != ReplayFormat.MAGIC) {
+      throw new IllegalArgumentException("Not a replay");
+    }
+    byte version = header.get();
+    if (version != ReplayFormat.VERSION) {
+      throw new IllegalArgumentException("Unsupported replay version " + version);
+    }
+    boolean packedFlock = header.get() != 0;
+    int flockSize = (int) ReplayFormat.getVarLong(header);
+    int flockCount = (int) ReplayFormat.getVarLong(header);
+    FlockOptions flockOptions = FlockOptions.read(header);
+    Vector2 size = new Vector2(header.getDouble(), header.getDouble());
+    long seed = header.getLong();
+    int stateLength = (int) ReplayFormat.getVarLong(header);
+    
+    game = new Game(size, packedFlock, flockSize, flockCount, seed, flockOptions);
+    ByteBuffer state = header.slice();
+    state.limit(stateLength);
+    game.readState(state);
+    header.position(header.position() + stateLength);
+    
+    position = header.position();
+    readRecordStart(0);
+    saveCheckpoint();
+  }
+  
+  /**
+   * Read everything from a channel.
+   *
+   * @param channel The channel to read
+   * @return A buffer with everything that was read, ready to be read
+   * @throws IOException If the channel can't be read
+   */
+  private static ByteBuffer readAll(ReadableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    while (channel.read(buffer) >= 0) {
+      if (!buffer.hasRemaining()) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+  
+  /**
+   * Play the next tick.
+   *
+   * @return If a tick was played, or false if the replay has ended
+   */
+  public boolean step() {
+    AttackType attackType = null;
+    if (tick == nextRecordTick) {
+      if ((nextFlags & ReplayFormat.END) != 0) {
+        return false;
+      }
+      attackType = readRecord();
+    }
+    
+    game.update(time);
+    if (attackType != null && game.getAttackType() != attackType) {
+      throw new IllegalStateException(
+          "Replay desynchronized at tick " + tick + ": expected " + attackType + " but was " + game.getAttackType()
+      );
+    }
+    tick++;
+    
+    if (tick % checkpointInterval == 0 && !checkpoints.containsKey(tick)) {
+      saveCheckpoint();
+    }
+    return true;
+  }
+  
+  /**
+   * Play every remaining tick.
+   *
+   * @return The number of ticks played
+   */
+  public long play() {
+    long start = tick;
+    while (step()) {
+      //keep playing until the end
+    }
+    return tick - start;
+  }
+  
+  /**
+   * Move the game to just before the given tick is played.
+   * The game is restored from the latest checkpoint before the tick if that is closer than the current tick,
+   * then played forward. Seeking past the end stops at the end.
+   *
+   * @param target The tick to seek to
+   */
+  public void seek(long target) {
+    Map.Entry<Long, Checkpoint> checkpoint = checkpoints.floorEntry(target);
+    if (checkpoint != null && (target < tick || checkpoint.getKey() > tick)) {
+      restore(checkpoint.getValue());
+    }
+    while (tick < target && step()) {
+      //keep playing until the target is reached
+    }
+  }
+  
+  /**
+   * Apply the inputs of the next record to the game, then read the start of the record after it.
+   *
+   * @return The attack type the flock should have after the tick, or null if it doesn't change
+   */
+  private AttackType readRecord() {
+    ByteBuffer record = replay;
+    record.position(position);
+    int flags = nextFlags;
+    AttackType attackType = null;
+    
+    if ((flags & ReplayFormat.TIME) != 0) {
+      time = record.getFloat();
+    }
+    if ((flags & ReplayFormat.RESET) != 0) {
+      game.reset();
+    }
+    if ((flags & ReplayFormat.DIRECTION) != 0) {
+      game.setPlayerDirection(direction.read(record));
+    }
+    if ((flags & ReplayFormat.SHOOT) != 0) {
+      long shotCount = ReplayFormat.getVarLong(record);
+      for (long i = 0; i < shotCount; i++) {
+        readShot(record);
+      }
+    }
+    if ((flags & ReplayFormat.ATTACK_TYPE) != 0) {
+      attackType = AttackType.values()[record.get()];
+    }
+    
+    position = record.position();
+    readRecordStart(tick + 1);
+    return attackType;
+  }
+  
+  /**
+   * Read the position a shot was aimed at, and make the player shoot at it.
+   *
+   * @param record The record to read from
+   */
+  private void readShot(ByteBuffer record) {
+    long x = ReplayFormat.getVarLong(record);
+    if ((x & 1) != 0) {
+      game.playerShoot(record.getDouble(), record.getDouble());
+      return;
+    }
+    lastShotX += ReplayFormat.unzigzag(x >>> 1);
+    lastShotY += ReplayFormat.unzigzag(ReplayFormat.getVarLong(record));
+    game.playerShoot(lastShotX, lastShotY);
+  }
+  
+  /**
+   * Read the number of skipped ticks and the flags of the next record.
+   *
+   * @param firstTick The first tick the next record can be for, which skipped ticks are counted from
+   */
+  private void readRecordStart(long firstTick) {
+    replay.position(position);
+    nextRecordTick = firstTick + ReplayFormat.getVarLong(replay);
+    nextFlags = replay.get() & 0xff;
+    position = replay.position();
+  }
+  
+  /**
+   * Save the game and the position in the replay before the next tick.
+   */
+  private void saveCheckpoint() {
+    Checkpoint checkpoint = new Checkpoint();
+    checkpoint.state = ReplayFormat.writeState(game);
+    checkpoint.position = position;
+    checkpoint.tick = tick;
+    checkpoint.nextRecordTick = nextRecordTick;
+    checkpoint.nextFlags = nextFlags;
+    checkpoint.time = time;
+    checkpoint.lastShotX = lastShotX;
+    checkpoint.lastShotY = lastShotY;
+    checkpoints.put(tick, checkpoint);
+  }
+  
+  /**
+   * Restore the game and the position in the replay from a checkpoint.
+   *
+   * @param checkpoint The checkpoint to restore
+   */
+  private void restore(Checkpoint checkpoint) {
+    game.readState(checkpoint.state.duplicate());
+    position = checkpoint.position;
+    tick = checkpoint.tick;
+    nextRecordTick = checkpoint.nextRecordTick;
+    nextFlags = checkpoint.nextFlags;
+    time = checkpoint.time;
+    lastShotX = checkpoint.lastShotX;
+    lastShotY = checkpoint.lastShotY;
+  }
+  
+  /**
+   * Get the game being played back.
+   *
+   * @return The game
+   */
+  public Game getGame() {
+    return game;
+  }
+  
+  /**
+   * Get the next tick to be played.
+   *
+   * @return The number of ticks played since the start of the replay
+   */
+  public long getTick() {
+    return tick;
+  }
+  
+  /**
+   * Check if every tick of the replay has been played.
+   *
+   * @return If the replay has ended
+   */
+  public boolean isFinished() {
+    return tick == nextRecordTick && (nextFlags & ReplayFormat.END) != 0;
+  }
+  
+  /**
+   * The saved state of the game and the replay before a tick.
+   */
+  private static class Checkpoint {
+    
+    private ByteBuffer state;
+    
+    private int position;
+    
+    private long tick, nextRecordTick;
+    
+    private int nextFlags;
+    
+    private float time;
+    
+    private long lastShotX, lastShotY;
+  }
+  
+}
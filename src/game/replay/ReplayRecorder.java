@@ -0,0 +1,324 @@
+package game.replay;
+
+import game.Game;
+import game.InputListener;
+import game.boids.AttackType;
+import game.vectors.Vector2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Records every input given to a game to a compact binary stream, so it can be replayed later.
+ * Only ticks with inputs or changes are written, and shots are delta encoded,
+ * so a game with a fixed tick length and few inputs takes only a few bytes per second.
+ * See {@link ReplayFormat} for the layout of the stream.
+ * <p>
+ * Every method is synchronized, so the recording can be closed from another thread, like a shutdown hook,
+ * while the game thread is giving inputs or writing a tick.
+ *
+ * @author tobymoszer
+ */
+public class ReplayRecorder implements InputListener, Closeable {
+  
+  /**
+   * The game being recorded
+   */
+  private Game game;
+  
+  /**
+   * The channel the replay is written to
+   */
+  private WritableByteChannel channel;
+  
+  /**
+   * The buffer records are written to before they are written to the channel
+   */
+  private ByteBuffer buffer;
+  
+  /**
+   * The number of ticks recorded so far
+   */
+  private long tick;
+  
+  /**
+   * The tick after the last written record
+   */
+  private long nextRecordTick;
+  
+  /**
+   * The length of the last written tick
+   */
+  private float time = Float.NaN;
+  
+  /**
+   * The direction given since the last tick, and the last direction that was written
+   */
+  private Vector2 direction, recordedDirection;
+  
+  /**
+   * If a direction was given since the last tick
+   */
+  private boolean directionGiven;
+  
+  /**
+   * The positions of the shots given since the last tick, as pairs of x and y
+   */
+  private double[] shots;
+  
+  /**
+   * The number of shots given since the last tick
+   */
+  private int shotCount;
+  
+  /**
+   * If the game was reset at the start of this tick
+   */
+  private boolean reset;
+  
+  /**
+   * The last written attack type
+   */
+  private AttackType attackType;
+  
+  /**
+   * The position of the last written whole number shot, which the next one is written relative to
+   */
+  private long lastShotX, lastShotY;
+  
+  /**
+   * If the recording has been stopped
+   */
+  private boolean closed;
+  
+  /**
+   * The size of the buffer records are written to
+   */
+  private final int BUFFER_SIZE = 1 << 16;
+  
+  /**
+   * Start recording a game.
+   * The game's current state is written first, so recording can start at any point between updates.
+   *
+   * @param game The game to record
+   * @param channel The channel to write the replay to
+   * @throws IOException If the header can't be written
+   */
+  public ReplayRecorder(Game game, WritableByteChannel channel) throws IOException {
+    this.game = game;
+    this.channel = channel;
+    direction = new Vector2(0, 0);
+    recordedDirection = new Vector2(Double.NaN, Double.NaN);
+    shots = new double[16];
+    attackType = game.getAttackType();
+    
+    ByteBuffer state = ReplayFormat.writeState(game);
+    buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, state.remaining() + 64 + game.getFlockOptions().getSize()));
+    Vector2 size = game.getSize();
+    buffer.putInt(ReplayFormat.MAGIC);
+    buffer.put(ReplayFormat.VERSION);
+    buffer.put((byte) (game.isPackedFlock() ? 1 : 0));
+    ReplayFormat.putVarLong(buffer, game.getInitialFlockSize());
+    ReplayFormat.putVarLong(buffer, game.getFlockCount());
+    game.getFlockOptions().write(buffer);
+    buffer.putDouble(size.x);
+    buffer.putDouble(size.y);
+    buffer.putLong(game.getSeed());
+    ReplayFormat.putVarLong(buffer, state.remaining());
+    buffer.put(state);
+    flush();
+    
+    game.setInputListener(this);
+  }
+  
+  /**
+   * Record a change of the player's direction.
+   * Only the last direction given before a tick is written, and only if it changed.
+   *
+   * @param direction The direction for the player to travel in
+   */
+  @Override
+  public synchronized void setPlayerDirection(Vector2 direction) {
+    this.direction.set(direction);
+    directionGiven = true;
+  }
+  
+  /**
+   * Record a player shot.
+   *
+   * @param x The x position the shot was aimed at
+   * @param y The y position the shot was aimed at
+   */
+  @Override
+  public synchronized void playerShoot(double x, double y) {
+    if (shotCount * 2 == shots.length) {
+      shots = Arrays.copyOf(shots, shots.length * 2);
+    }
+    shots[shotCount * 2] = x;
+    shots[shotCount * 2 + 1] = y;
+    shotCount++;
+  }
+  
+  /**
+   * Record that the game was reset at the start of this tick.
+   */
+  @Override
+  public synchronized void reset() {
+    reset = true;
+  }
+  
+  /**
+   * Write a record for the tick that just finished, if anything happened in it.
+   *
+   * @param time The length of the tick in seconds
+   */
+  @Override
+  public synchronized void update(float time) {
+    if (closed) {
+      return;
+    }
+    
+    int flags = 0;
+    if (Float.floatToIntBits(time) != Float.floatToIntBits(this.time)) {
+      flags |= ReplayFormat.TIME;
+    }
+    if (reset) {
+      flags |= ReplayFormat.RESET;
+    }
+    if (directionGiven && !(direction.x == recordedDirection.x && direction.y == recordedDirection.y)) {
+      flags |= ReplayFormat.DIRECTION;
+    }
+    if (shotCount > 0) {
+      flags |= ReplayFormat.SHOOT;
+    }
+    AttackType newAttackType = game.getAttackType();
+    if (newAttackType != attackType) {
+      flags |= ReplayFormat.ATTACK_TYPE;
+    }
+    
+    if (flags != 0) {
+      ensureRemaining(64 + shotCount * 20);
+      writeRecordStart(flags);
+      if ((flags & ReplayFormat.TIME) != 0) {
+        buffer.putFloat(time);
+        this.time = time;
+      }
+      if ((flags & ReplayFormat.DIRECTION) != 0) {
+        direction.write(buffer);
+        recordedDirection.set(direction);
+      }
+      if ((flags & ReplayFormat.SHOOT) != 0) {
+        ReplayFormat.putVarLong(buffer, shotCount);
+        for (int i = 0; i < shotCount; i++) {
+          writeShot(shots[i * 2], shots[i * 2 + 1]);
+        }
+      }
+      if ((flags & ReplayFormat.ATTACK_TYPE) != 0) {
+        buffer.put((byte) newAttackType.ordinal());
+        attackType = newAttackType;
+      }
+    }
+    
+    reset = false;
+    directionGiven = false;
+    shotCount = 0;
+    tick++;
+  }
+  
+  /**
+   * Write the number of ticks skipped since the last record, and the flags of the new record.
+   *
+   * @param flags The flags of the record
+   */
+  private void writeRecordStart(int flags) {
+    ReplayFormat.putVarLong(buffer, tick - nextRecordTick);
+    buffer.put((byte) flags);
+    nextRecordTick = tick + 1;
+  }
+  
+  /**
+   * Write the position a shot was aimed at.
+   * Whole number positions, like mouse clicks, are written relative to the last one.
+   * Other positions are written exactly.
+   *
+   * @param x The x position the shot was aimed at
+   * @param y The y position the shot was aimed at
+   */
+  private void writeShot(double x, double y) {
+    if (x == (int) x && y == (int) y) {
+      ReplayFormat.putVarLong(buffer, ReplayFormat.zigzag((long) x - lastShotX) << 1);
+      ReplayFormat.putVarLong(buffer, ReplayFormat.zigzag((long) y - lastShotY));
+      lastShotX = (long) x;
+      lastShotY = (long) y;
+    } else {
+      ReplayFormat.putVarLong(buffer, 1);
+      buffer.putDouble(x);
+      buffer.putDouble(y);
+    }
+  }
+  
+  /**
+   * Make sure the buffer has room for the given number of bytes, flushing or growing it if needed.
+   *
+   * @param bytes The number of bytes needed
+   */
+  private void ensureRemaining(int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return;
+    }
+    try {
+      flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (buffer.remaining() < bytes) {
+      buffer = ByteBuffer.allocate(bytes);
+    }
+  }
+  
+  /**
+   * Write everything in the buffer to the channel.
+   *
+   * @throws IOException If the channel can't be written to
+   */
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+  
+  /**
+   * Get the number of ticks recorded so far.
+   *
+   * @return The number of ticks recorded
+   */
+  public synchronized long getTick() {
+    return tick;
+  }
+  
+  /**
+   * Stop recording, end the replay, and close the channel.
+   * This can be called from any thread, like a shutdown hook.
+   *
+   * @throws IOException If the replay can't be written
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    game.setInputListener(null);
+    ensureRemaining(16);
+    writeRecordStart(ReplayFormat.END);
+    flush();
+    channel.close();
+  }
+  
+}
@@ -0,0 +1,210 @@
+package game.snapshot;
+
+import game.Game;
+import game.boids.FlockOptions;
+import game.vectors.Vector2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves and restores the whole state of a game to a file through a memory mapped buffer.
+ * The state is copied straight between the game and the mapped file, without any intermediate buffers,
+ * so even a very large flock is saved or restored in milliseconds.
+ * <p>
+ * A snapshot starts with a header of {@value #HEADER_SIZE} bytes and the flock options:
+ * <pre>
+ *  0  int     magic number "FLSN"
+ *  4  int     version
+ *  8  int     header size
+ * 12  int     flags, 1 if the flock is packed
+ * 16  int     initial flock size
+ * 20  int     flock count, 0 in snapshots from before there could be several flocks
+ * 24  double  game width
+ * 32  double  game height
+ * 40  long    seed
+ * 48  long    state size
+ * 56  long    CRC32 of the state
+ * 64          flock options written by {@link FlockOptions#write(ByteBuffer)}
+ * </pre>
+ * followed by the state written by {@link Game#writeState(ByteBuffer)}, starting at the header size.
+ * Version 1 snapshots have no flock options, and were all saved with the default ones.
+ *
+ * @author tobymoszer
+ */
+public class SnapshotFile {
+  
+  /**
+   * The first four bytes of every snapshot, "FLSN"
+   */
+  private static final int MAGIC = 0x464c534e;
+  
+  /**
+   * The version of the snapshot format
+   */
+  private static final int VERSION = 2;
+  
+  /**
+   * The size of the header in bytes, before the flock options
+   */
+  public static final int HEADER_SIZE = 64;
+  
+  /**
+   * The flag set if the flock is packed
+   */
+  private static final int PACKED_FLOCK = 1;
+  
+  private SnapshotFile() {
+  
+  }
+  
+  /**
+   * Save the state of a game to a file, replacing the file if it exists.
+   * This should only be called between updates.
+   *
+   * @param game The game to save
+   * @param path The file to save to
+   * @throws IOException If the file can't be written
+   */
+  public static void write(Game game, Path path) throws IOException {
+    int stateSize = game.getStateSize();
+    FlockOptions options = game.getFlockOptions();
+    int headerSize = HEADER_SIZE + options.getSize();
+    try (FileChannel channel = FileChannel.open(
+        path,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING
+    )) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize + stateSize);
+      
+      ByteBuffer state = buffer.slice(headerSize, stateSize);
+      game.writeState(state);
+      CRC32 crc = new CRC32();
+      crc.update(state.flip());
+      
+      Vector2 size = game.getSize();
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(headerSize);
+      buffer.putInt(game.isPackedFlock() ? PACKED_FLOCK : 0);
+      buffer.putInt(game.getInitialFlockSize());
+      buffer.putInt(game.getFlockCount());
+      buffer.putDouble(size.x);
+      buffer.putDouble(size.y);
+      buffer.putLong(game.getSeed());
+      buffer.putLong(stateSize);
+      buffer.putLong(crc.getValue());
+      options.write(buffer);
+      buffer.force();
+    }
+  }
+  
+  /**
+   * Create a new game from a snapshot.
+   *
+   * @param path The file to read from
+   * @return The new game, in the state it was saved in
+   * @throws IOException If the file can't be read or isn't a valid snapshot
+   */
+  public static Game read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = map(channel);
+      boolean packedFlock = (buffer.getInt(12) & PACKED_FLOCK) != 0;
+      int flockSize = buffer.getInt(16);
+      int flockCount = Math.max(1, buffer.getInt(20));
+      Vector2 size = new Vector2(buffer.getDouble(24), buffer.getDouble(32));
+      long seed = buffer.getLong(40);
+      
+      Game game = new Game(size, packedFlock, flockSize, flockCount, seed, getFlockOptions(buffer));
+      game.readState(getState(buffer));
+      return game;
+    }
+  }
+  
+  /**
+   * Restore an existing game from a snapshot.
+   * The game must have the same size, flock storage, flock count, and flock options as the saved game.
+   * This should only be called between updates.
+   *
+   * @param game The game to restore
+   * @param path The file to read from
+   * @throws IOException If the file can't be read or isn't a valid snapshot
+   */
+  public static void restore(Game game, Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = map(channel);
+      boolean packedFlock = (buffer.getInt(12) & PACKED_FLOCK) != 0;
+      int flockCount = Math.max(1, buffer.getInt(20));
+      Vector2 size = game.getSize();
+      boolean sameGame = packedFlock == game.isPackedFlock() && flockCount == game.getFlockCount()
+          && buffer.getDouble(24) == size.x && buffer.getDouble(32) == size.y
+          && getFlockOptions(buffer).equals(game.getFlockOptions());
+      if (!sameGame) {
+        throw new IllegalArgumentException("Snapshot was saved from a different kind of game");
+      }
+      game.readState(getState(buffer));
+    }
+  }
+  
+  /**
+   * Map a snapshot file and check its header.
+   *
+   * @param channel The channel of the file
+   * @return The whole file
+   * @throws IOException If the file can't be mapped or isn't a valid snapshot
+   */
+  private static MappedByteBuffer map(FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_SIZE) {
+      throw new IOException("Snapshot is too small");
+    }
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a snapshot");
+    }
+    if (buffer.getInt(4) < 1 || buffer.getInt(4) > VERSION) {
+      throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+    }
+    if (buffer.getInt(8) + buffer.getLong(48) != channel.size()) {
+      throw new IOException("Snapshot is truncated");
+    }
+    return buffer;
+  }
+  
+  /**
+   * Get the flock options from a mapped snapshot.
+   *
+   * @param buffer The whole snapshot
+   * @return The flock options the game was saved with
+   */
+  private static FlockOptions getFlockOptions(MappedByteBuffer buffer) {
+    if (buffer.getInt(4) < 2) {
+      return FlockOptions.DEFAULT;
+    }
+    return FlockOptions.read(buffer.slice(HEADER_SIZE, buffer.getInt(8) - HEADER_SIZE));
+  }
+  
+  /**
+   * Get the state from a mapped snapshot, checking that it hasn't been corrupted.
+   *
+   * @param buffer The whole snapshot
+   * @return The state, ready to be read
+   * @throws IOException If the state doesn't match its checksum
+   */
+  private static ByteBuffer getState(MappedByteBuffer buffer) throws IOException {
+    ByteBuffer state = buffer.slice(buffer.getInt(8), (int) buffer.getLong(48));
+    CRC32 crc = new CRC32();
+    crc.update(state.duplicate());
+    if (crc.getValue() != buffer.getLong(56)) {
+      throw new IOException("Snapshot is corrupted");
+    }
+    return state;
+  }
+  
+}
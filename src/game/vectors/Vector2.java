@@ -1,5 +1,9 @@
 package game.vectors;
 
+import game.random.GameRandom;
+
+import java.nio.ByteBuffer;
+
 /**
  * Vector Library
  * CSCI 5611 Vector 2 Library [Example]
@@ -24,6 +28,18 @@ public class Vector2 {
     y = 0;
   }
   
+  public Vector2 set(double x, double y) {
+    this.x = x;
+    this.y = y;
+    return this;
+  }
+  
+  public Vector2 set(Vector2 rhs) {
+    x = rhs.x;
+    y = rhs.y;
+    return this;
+  }
+  
   public double length() {
     return Math.sqrt(x*x+y*y);
   }
@@ -41,6 +57,15 @@ public class Vector2 {
     y += rhs.y;
   }
   
+  public Vector2 plusInto(Vector2 rhs, Vector2 out) {
+    return out.set(x+rhs.x, y+rhs.y);
+  }
+  
+  public void addScaled(Vector2 rhs, double scale) {
+    x += rhs.x*scale;
+    y += rhs.y*scale;
+  }
+  
   public Vector2 minus(Vector2 rhs) {
     return new Vector2(x-rhs.x, y-rhs.y);
   }
@@ -50,6 +75,10 @@ public class Vector2 {
     y -= rhs.y;
   }
   
+  public Vector2 minusInto(Vector2 rhs, Vector2 out) {
+    return out.set(x-rhs.x, y-rhs.y);
+  }
+  
   public Vector2 times(double rhs) {
     return new Vector2(x*rhs, y*rhs);
   }
@@ -59,6 +88,10 @@ public class Vector2 {
     y *= rhs;
   }
   
+  public Vector2 timesInto(double rhs, Vector2 out) {
+    return out.set(x*rhs, y*rhs);
+  }
+  
   public Vector2 divide(double rhs) {
     return new Vector2(x/rhs, y/rhs);
   }
@@ -68,6 +101,10 @@ public class Vector2 {
     y /= rhs;
   }
   
+  public Vector2 divideInto(double rhs, Vector2 out) {
+    return out.set(x/rhs, y/rhs);
+  }
+  
   public void clampToLength(double maxL) {
     double magnitude = Math.sqrt(x*x + y*y);
     if (magnitude > maxL){
@@ -77,9 +114,9 @@ public class Vector2 {
   }
   
   public void setToLength(double newL) {
-    double magnitude = Math.sqrt(x*x + y*y);
-    x *= newL/magnitude;
-    y *= newL/magnitude;
+    double scale = newL/Math.sqrt(x*x + y*y);
+    x *= scale;
+    y *= scale;
   }
   
   public void normalize() {
@@ -93,16 +130,37 @@ public class Vector2 {
     return new Vector2(x/magnitude, y/magnitude);
   }
   
+  public Vector2 normalizedInto(Vector2 out) {
+    double magnitude = Math.sqrt(x*x + y*y);
+    return out.set(x/magnitude, y/magnitude);
+  }
+  
   public double distanceTo(Vector2 rhs) {
     double dx = rhs.x - x;
     double dy = rhs.y - y;
     return (double) Math.sqrt(dx*dx + dy*dy);
   }
   
+  public double distanceSqTo(Vector2 rhs) {
+    double dx = rhs.x - x;
+    double dy = rhs.y - y;
+    return dx*dx + dy*dy;
+  }
+  
+  public double distanceSqTo(double x, double y) {
+    double dx = x - this.x;
+    double dy = y - this.y;
+    return dx*dx + dy*dy;
+  }
+  
   public Vector2 copy() {
     return new Vector2(x, y);
   }
   
+  public Vector2 copyInto(Vector2 out) {
+    return out.set(x, y);
+  }
+  
   public boolean equals(Vector2 other) {
     return x == other.x && y == other.y;
   }
@@ -119,6 +177,17 @@ public class Vector2 {
     return Math.atan(y/x);
   }
   
+  public void write(ByteBuffer buffer) {
+    buffer.putDouble(x);
+    buffer.putDouble(y);
+  }
+  
+  public Vector2 read(ByteBuffer buffer) {
+    x = buffer.getDouble();
+    y = buffer.getDouble();
+    return this;
+  }
+  
   public static Vector2 interpolate(Vector2 a, Vector2 b, double t) {
     return a.plus((b.minus(a)).times(t));
   }
@@ -135,13 +204,15 @@ public class Vector2 {
     return b.times(a.x*b.x + a.y*b.y);
   }
   
-  public static Vector2 randomVector(double size) {
-    Vector2 vec = new Vector2(
-        Math.random() - .5f,
-        Math.random() - .5f
-    );
-    vec.setToLength(size);
-    return vec;
+  public static Vector2 randomVector(double size, GameRandom random) {
+    return new Vector2(0, 0).setToRandom(size, random);
+  }
+  
+  public Vector2 setToRandom(double size, GameRandom random) {
+    x = random.nextDouble() - .5f;
+    y = random.nextDouble() - .5f;
+    setToLength(size);
+    return this;
   }
   
   public static Vector2 zero() {
@@ -0,0 +1,398 @@
+package panel;
+
+import game.Game;
+import game.LoopListener;
+import game.metrics.Metrics;
+import game.metrics.Phase;
+import game.render.FrameListener;
+import game.render.FrameSnapshot;
+import game.render.SoftwareRenderer;
+import game.render.TripleBuffer;
+import game.vectors.Vector2;
+
+import javax.imageio.ImageIO;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.MouseInfo;
+import java.awt.Toolkit;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A Canvas that keeps track of keyboard and mouse inputs,
+ * as well as renders the game.
+ * <p>
+ * The game is updated on the game loop's thread, which copies the game into a FrameSnapshot for every frame
+ * and publishes it through a TripleBuffer. A FrameRenderer on its own thread draws the latest published frame,
+ * so the game is never read while it is being updated and neither thread waits for the other.
+ * <p>
+ * The canvas is actively rendered instead of waiting for Swing to repaint it.
+ * Frames are drawn into the video memory back buffers of a BufferStrategy and flipped onto the screen,
+ * and the background is kept in a VolatileImage so it's copied within video memory every frame.
+ *
+ * @author tobymoszer
+ */
+@SuppressWarnings("serial")
+public class GameCanvas extends Canvas implements KeyListener, MouseListener, LoopListener, FrameListener {
+  
+  /**
+   * The number of buffers in the buffer strategy
+   */
+  private final int BUFFERS = 2;
+  
+  /**
+   * Which keys are currently held down
+   */
+  private boolean w, a, s, d = false;
+  
+  /**
+   * If the player should shoot
+   */
+  private boolean playerShoot = false;
+  
+  /**
+   * The game
+   */
+  private Game game;
+  
+  /**
+   * The direction the player is traveling in, reused every update
+   */
+  private Vector2 direction = new Vector2(0, 0);
+  
+  /**
+   * The background image
+   */
+  private BufferedImage background;
+  
+  /**
+   * The background image in video memory, which may be lost and have to be drawn again
+   */
+  private VolatileImage acceleratedBackground;
+  
+  /**
+   * The buffers frames are rendered into, created the first time a frame is rendered
+   */
+  private BufferStrategy strategy;
+  
+  /**
+   * The frames passed from the game loop to the renderer
+   */
+  private TripleBuffer<FrameSnapshot> frames;
+  
+  /**
+   * The length of a tick in nanoseconds
+   */
+  private long tickLength = 1;
+  
+  /**
+   * If frames are drawn by writing pixels directly instead of through Java2D
+   */
+  private boolean softwareRendering = false;
+  
+  /**
+   * The renderer used for software rendering, created for the size of the canvas when it's first needed
+   */
+  private SoftwareRenderer softwareRenderer;
+  
+  /**
+   * If the software renderer only repaints the areas that changed since the last frame
+   */
+  private boolean dirtyRepaint = false;
+  
+  /**
+   * Constructs a new canvas.
+   *
+   * @param game The game that the canvas will contain
+   * @param frames The frames passed from the game loop to the renderer
+   */
+  public GameCanvas(Game game, TripleBuffer<FrameSnapshot> frames) {
+    this.game = game;
+    this.frames = frames;
+    
+    //frames are only drawn by render, never by the AWT
+    setIgnoreRepaint(true);
+    setBackground(Color.BLACK);
+    
+    //load in background image
+    try {
+      background = ImageIO.read(new File("sprites/background.png"));
+    } catch (IOException e) {
+      System.err.println("Could not load background image");
+      e.printStackTrace();
+    }
+  }
+  
+  /**
+   * Update the game and apply the keyboard and mouse inputs.
+   *
+   * @param time The time since the previous update in seconds
+   */
+  @Override
+  public void update(float time) {
+    
+    tickLength = (long) (time * 1000000000L);
+    game.update(time);
+    
+    if (w) {
+      if (a) {
+        direction.set(-1, -1).normalize();
+      } else if (d) {
+        direction.set(1, -1).normalize();
+      } else if (!s) {
+        direction.set(0, -1);
+      }
+    } else if (a) {
+      if (s) {
+        direction.set(-1, 1).normalize();
+      } else if (!d) {
+        direction.set(-1, 0);
+      }
+    } else if (s) {
+      if (d) {
+        direction.set(1, 1).normalize();
+      } else {
+        direction.set(0, 1);
+      }
+    } else if (d) {
+      direction.set(1, 0);
+    } else {
+      direction.set(0, 0);
+    }
+    game.setPlayerDirection(direction);
+    
+    if (playerShoot) {
+      playerShoot = false;
+      game.playerShoot(MouseInfo.getPointerInfo().getLocation());
+    }
+  }
+  
+  /**
+   * Copy the game into the back frame and publish it to the renderer.
+   * This is called on the game loop's thread, so the game isn't updated while it is copied.
+   *
+   * @param alpha How far between the previous and current update the frame is published
+   */
+  @Override
+  public void render(float alpha) {
+    FrameSnapshot frame = frames.getBack();
+    game.writeFrame(frame);
+    frame.setTime(System.nanoTime(), alpha, tickLength);
+    frames.publish();
+  }
+  
+  /**
+   * Draw a frame of the game, interpolated between the previous and current update.
+   * Nothing is drawn until the canvas is on the screen.
+   *
+   * @param frame The latest frame published by the game loop
+   * @param alpha How far between the previous and current update to paint, from 0 to 1
+   */
+  @Override
+  public void drawFrame(FrameSnapshot frame, float alpha) {
+    if (!isDisplayable()) {
+      return;
+    }
+    if (strategy == null) {
+      createBufferStrategy(BUFFERS);
+      strategy = getBufferStrategy();
+    }
+    
+    long start = Metrics.start();
+    if (softwareRendering) {
+      renderSoftware(frame, alpha);
+    }
+    
+    //the buffers live in video memory, so the frame is drawn again if they are lost while drawing
+    do {
+      do {
+        Graphics g = strategy.getDrawGraphics();
+        try {
+          if (softwareRendering) {
+            g.drawImage(softwareRenderer.getImage(), 0, 0, null);
+          } else {
+            //anything outside the canvas is skipped instead of being clipped by Java2D
+            g.setClip(0, 0, getWidth(), getHeight());
+            paintBackground(g);
+            frame.paint(g, alpha);
+          }
+        } finally {
+          g.dispose();
+        }
+      } while (strategy.contentsRestored());
+      strategy.show();
+    } while (strategy.contentsLost());
+    Toolkit.getDefaultToolkit().sync();
+    
+    Metrics.record(Phase.PAINT, start);
+  }
+  
+  /**
+   * Draw a frame into the software renderer's image, which is then blitted in one call.
+   *
+   * @param frame The frame to draw
+   * @param alpha How far between the previous and current update to paint, from 0 to 1
+   */
+  private void renderSoftware(FrameSnapshot frame, float alpha) {
+    BufferedImage image = softwareRenderer == null ? null : softwareRenderer.getImage();
+    if (image == null || image.getWidth() != getWidth() || image.getHeight() != getHeight()) {
+      softwareRenderer = new SoftwareRenderer(getWidth(), getHeight());
+      softwareRenderer.setBackgroundColor(getBackground());
+      softwareRenderer.setBackground(background);
+      softwareRenderer.setDirtyRepaint(dirtyRepaint);
+    }
+    softwareRenderer.render(frame, alpha);
+  }
+  
+  /**
+   * Set if frames are drawn by writing pixels directly instead of through Java2D.
+   * Software rendering draws large flocks faster when Java2D can't use the graphics card.
+   *
+   * @param softwareRendering If frames should be drawn with the software renderer
+   */
+  public void setSoftwareRendering(boolean softwareRendering) {
+    this.softwareRendering = softwareRendering;
+  }
+  
+  /**
+   * Set if software rendering only repaints the areas that changed since the last frame.
+   * This has no effect unless frames are drawn with the software renderer.
+   *
+   * @param dirtyRepaint If only changed areas should be repainted
+   */
+  public void setDirtyRepaint(boolean dirtyRepaint) {
+    this.dirtyRepaint = dirtyRepaint;
+    if (softwareRenderer != null) {
+      softwareRenderer.setDirtyRepaint(dirtyRepaint);
+    }
+  }
+  
+  /**
+   * Paint the background image from video memory,
+   * copying it into video memory again if it was lost.
+   *
+   * @param g The Graphics to paint to
+   */
+  private void paintBackground(Graphics g) {
+    if (background == null) {
+      g.setColor(getBackground());
+      g.fillRect(0, 0, getWidth(), getHeight());
+      return;
+    }
+    
+    GraphicsConfiguration configuration = getGraphicsConfiguration();
+    int status = VolatileImage.IMAGE_INCOMPATIBLE;
+    if (acceleratedBackground != null) {
+      status = acceleratedBackground.validate(configuration);
+    }
+    if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+      acceleratedBackground = configuration.createCompatibleVolatileImage(
+          background.getWidth(),
+          background.getHeight()
+      );
+      copyBackground();
+    } else if (status == VolatileImage.IMAGE_RESTORED) {
+      copyBackground();
+    }
+    
+    g.drawImage(acceleratedBackground, 0, 0, null);
+  }
+  
+  /**
+   * Copy the background image into video memory.
+   */
+  private void copyBackground() {
+    Graphics g = acceleratedBackground.getGraphics();
+    g.drawImage(background, 0, 0, null);
+    g.dispose();
+  }
+  
+  @Override
+  public void keyTyped(KeyEvent e) {
+  
+  }
+  
+  /**
+   * Gets keys pressed and sets movement and reset functionality.
+   *
+   * @param e The KeyEvent
+   */
+  @Override
+  public void keyPressed(KeyEvent e) {
+    if (e.getKeyChar() == 'r') {
+      game.reset();
+    }
+    if (e.getKeyChar() == 'w') {
+      w = true;
+    }
+    if (e.getKeyChar() == 'a') {
+      a = true;
+    }
+    if (e.getKeyChar() == 's') {
+      s = true;
+    }
+    if (e.getKeyChar() == 'd') {
+      d = true;
+    }
+  }
+  
+  /**
+   * Gets keys released and sets movement functionality.
+   *
+   * @param e The KeyEvent
+   */
+  @Override
+  public void keyReleased(KeyEvent e) {
+    if (e.getKeyChar() == 'w') {
+      w = false;
+    }
+    if (e.getKeyChar() == 'a') {
+      a = false;
+    }
+    if (e.getKeyChar() == 's') {
+      s = false;
+    }
+    if (e.getKeyChar() == 'd') {
+      d = false;
+    }
+  }
+  
+  @Override
+  public void mouseClicked(MouseEvent e) {
+  
+  }
+  
+  /**
+   * Sets the playerShoot boolean when the mouse is clicked.
+   *
+   * @param e The MouseEvent
+   */
+  @Override
+  public void mousePressed(MouseEvent e) {
+    playerShoot = true;
+  }
+  
+  @Override
+  public void mouseReleased(MouseEvent e) {
+  
+  }
+  
+  @Override
+  public void mouseEntered(MouseEvent e) {
+  
+  }
+  
+  @Override
+  public void mouseExited(MouseEvent e) {
+  
+  }
+}